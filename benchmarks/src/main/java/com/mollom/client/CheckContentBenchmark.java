@@ -0,0 +1,82 @@
+package com.mollom.client;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures end-to-end checkContent() throughput against MollomStubServer,
+ * with 1, 8, and 64 threads sharing a single client.
+ *
+ * The stub answers every request immediately, so
+ * the results reflect the overhead of the client and the HTTP stack: building
+ * and signing the request, connection pooling, and response parsing. Run with
+ * the GC profiler to see the allocations per request:
+ *
+ *   java -jar target/benchmarks.jar CheckContentBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckContentBenchmark {
+  private MollomStubServer server;
+  private MollomClient client;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    server = new MollomStubServer().start();
+    client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withConnectionPooling(true)
+        .withMaxConnections(64)
+        .withMaxConnectionsPerRoute(64)
+        .withRetries(0)
+        .build("publicKey", "privateKey");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    client.destroy();
+    server.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Content checkContent1Thread() throws MollomException {
+    return checkContent();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Content checkContent8Threads() throws MollomException {
+    return checkContent();
+  }
+
+  @Benchmark
+  @Threads(64)
+  public Content checkContent64Threads() throws MollomException {
+    return checkContent();
+  }
+
+  private Content checkContent() throws MollomException {
+    Content content = Payloads.content();
+    client.checkContent(content);
+    return content;
+  }
+}
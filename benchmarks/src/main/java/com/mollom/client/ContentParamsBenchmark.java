@@ -0,0 +1,47 @@
+package com.mollom.client;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the form parameters of a checkContent request, and
+ * building, encoding, and signing them like a transport does before handing
+ * the body to the HTTP client.
+ *
+ * Run with the GC profiler to see the allocations per request:
+ *
+ *   java -jar target/benchmarks.jar ContentParamsBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentParamsBenchmark {
+  private final Content content = Payloads.content();
+  private final OAuthSigner signer = new OAuthSigner("publicKey", "privateKey");
+  private final ResourceUris resourceUris = new ResourceUris(URI.create("http://rest.mollom.com/v1/"));
+
+  @Benchmark
+  public FormParams buildContentParams() {
+    return MollomClient.contentParams(content);
+  }
+
+  @Benchmark
+  public String encodeContentRequest() {
+    ResourceUris.Resource resource = resourceUris.get("content");
+    FormEncoder body = FormEncoder.forBody().addAll(MollomClient.contentParams(content));
+    return signer.sign("POST", resource.signatureBaseUri, FormEncoder.forQuery(), body);
+  }
+}
@@ -0,0 +1,36 @@
+package com.mollom.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures classifying content locally while Mollom is unreachable; runs on
+ * every content check during an outage, so it must stay in the microseconds
+ * and must not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FallbackClassifierBenchmark {
+  private final FallbackClassifier classifier = new FallbackClassifier();
+  private final Content content = Payloads.content();
+
+  @Benchmark
+  public Content classify() {
+    classifier.recordPost(content);
+    classifier.classify(content, null, null);
+    return content;
+  }
+}
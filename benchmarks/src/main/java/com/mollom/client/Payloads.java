@@ -0,0 +1,85 @@
+package com.mollom.client;
+
+/**
+ * Realistic Mollom API response payloads.
+ */
+final class Payloads {
+
+  /**
+   * Response of a checkContent() request with all checks enabled.
+   */
+  static final String CONTENT_RESPONSE = "<?xml version=\"1.0\"?>\n"
+      + "<response>\n"
+      + "  <code>200</code>\n"
+      + "  <content>\n"
+      + "    <id>130614c7d1a8bd1e5b</id>\n"
+      + "    <spamScore>0.92</spamScore>\n"
+      + "    <spamClassification>spam</spamClassification>\n"
+      + "    <profanityScore>0.0</profanityScore>\n"
+      + "    <qualityScore>0.15</qualityScore>\n"
+      + "    <reason>some</reason>\n"
+      + "    <languages>\n"
+      + "      <language>\n"
+      + "        <languageCode>en</languageCode>\n"
+      + "        <languageScore>0.98</languageScore>\n"
+      + "      </language>\n"
+      + "    </languages>\n"
+      + "    <authorIp>192.168.1.1</authorIp>\n"
+      + "    <authorName>John Doe</authorName>\n"
+      + "    <authorMail>john@example.com</authorMail>\n"
+      + "    <authorUrl>http://example.com</authorUrl>\n"
+      + "    <postTitle>Great deals</postTitle>\n"
+      + "    <postBody>Please find attached your Advice containing information on your transactions "
+      + "of last working day with the bank. Please do not reply to this e-mail address. If you have "
+      + "any queries, please contact our Customer Services.</postBody>\n"
+      + "    <contextUrl>http://example.com/blog/article</contextUrl>\n"
+      + "    <contextTitle>Article</contextTitle>\n"
+      + "  </content>\n"
+      + "</response>\n";
+
+  /**
+   * Response of a listing of a page of 100 blacklist entries.
+   */
+  static final String BLACKLIST_RESPONSE = blacklistResponse(100);
+
+  /**
+   * @return A content to check, like a typical blog comment.
+   */
+  static Content content() {
+    Content content = new Content();
+    content.setAuthorIp("192.168.1.1");
+    content.setAuthorName("John Doe");
+    content.setAuthorMail("john@example.com");
+    content.setAuthorUrl("http://example.com");
+    content.setPostTitle("Great deals");
+    content.setPostBody("Please find attached your Advice containing information on your transactions "
+        + "of last working day with the bank. Please do not reply to this e-mail address. If you have "
+        + "any queries, please contact our Customer Services.");
+    content.setContextUrl("http://example.com/blog/article");
+    content.setContextTitle("Article");
+    content.setChecks(Check.SPAM, Check.QUALITY, Check.PROFANITY, Check.LANGUAGE);
+    return content;
+  }
+
+  private static String blacklistResponse(int count) {
+    StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<response>\n  <code>200</code>\n  <list>\n");
+    for (int i = 0; i < count; i++) {
+      xml.append("    <entry>\n")
+          .append("      <id>").append(1000 + i).append("</id>\n")
+          .append("      <created>1370000000</created>\n")
+          .append("      <status>1</status>\n")
+          .append("      <value>cheap-pills-").append(i).append(".example.com</value>\n")
+          .append("      <reason>spam</reason>\n")
+          .append("      <context>links</context>\n")
+          .append("      <match>contains</match>\n")
+          .append("      <note>Reported by moderator</note>\n")
+          .append("    </entry>\n");
+    }
+    return xml.append("  </list>\n  <listCount>").append(count).append("</listCount>\n")
+        .append("  <listOffset>0</listOffset>\n  <listTotal>").append(count).append("</listTotal>\n")
+        .append("</response>\n").toString();
+  }
+
+  private Payloads() {
+  }
+}
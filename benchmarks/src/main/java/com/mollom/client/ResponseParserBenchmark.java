@@ -0,0 +1,49 @@
+package com.mollom.client;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures response decoding under contention.
+ *
+ * All benchmark threads share a single ResponseParser, like all threads share
+ * a single MollomClient. Run with an increasing thread count to verify that
+ * throughput scales with the number of cores:
+ *
+ *   java -jar target/benchmarks.jar ResponseParserBenchmark -t 1
+ *   java -jar target/benchmarks.jar ResponseParserBenchmark -t 4
+ *   java -jar target/benchmarks.jar ResponseParserBenchmark -t max
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseParserBenchmark {
+  private final ResponseParser parser = new ResponseParser();
+  private final byte[] contentResponse = Payloads.CONTENT_RESPONSE.getBytes(StandardCharsets.UTF_8);
+  private final byte[] blacklistResponse = Payloads.BLACKLIST_RESPONSE.getBytes(StandardCharsets.UTF_8);
+
+  @Benchmark
+  public Content parseContent() throws MollomException {
+    return parser.parseBody(new ByteArrayInputStream(contentResponse), "content", Content.class);
+  }
+
+  @Benchmark
+  public List<BlacklistEntry> parseBlacklist() throws MollomException {
+    return parser.parseList(new ByteArrayInputStream(blacklistResponse), "entry", BlacklistEntry.class);
+  }
+}
@@ -0,0 +1,52 @@
+package com.mollom.client;
+
+/**
+ * Aborts a request in progress from another thread; e.g., the losing request
+ * of a hedged pair, so that it does not hold its connection until it
+ * completes.
+ *
+ * The transport registers how to abort the request once it was sent; a request
+ * that was aborted before is aborted as soon as it registers.
+ *
+ * Thread-safe.
+ */
+class AbortHandle {
+  // Both guarded by this.
+  private Runnable action;
+  private boolean aborted;
+
+  /**
+   * Registers how to abort the request; runs the action at once if the request
+   * was aborted already.
+   */
+  void onAbort(Runnable action) {
+    synchronized (this) {
+      if (!aborted) {
+        this.action = action;
+        return;
+      }
+    }
+    action.run();
+  }
+
+  /**
+   * Aborts the request; the transport fails it with an IOException.
+   */
+  void abort() {
+    Runnable action;
+    synchronized (this) {
+      if (aborted) {
+        return;
+      }
+      aborted = true;
+      action = this.action;
+    }
+    if (action != null) {
+      action.run();
+    }
+  }
+
+  synchronized boolean isAborted() {
+    return aborted;
+  }
+}
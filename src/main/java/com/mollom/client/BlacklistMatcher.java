@@ -0,0 +1,304 @@
+package com.mollom.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches content against a set of blacklist entries in a single pass.
+ *
+ * All entry values are compiled into one Aho-Corasick automaton, so that the
+ * cost of matching a field only depends on the length of the field, not on the
+ * number of blacklist entries. Matching is case-insensitive.
+ *
+ * Immutable and thread-safe.
+ */
+class BlacklistMatcher {
+
+  // Content fields that blacklist entries can match in.
+  static final int POST_TITLE = 1;
+  static final int POST_BODY = 1 << 1;
+  static final int AUTHOR_NAME = 1 << 2;
+  static final int AUTHOR_MAIL = 1 << 3;
+  static final int AUTHOR_URL = 1 << 4;
+  static final int AUTHOR_IP = 1 << 5;
+  static final int AUTHOR_ID = 1 << 6;
+  static final int LINKS = 1 << 7;
+
+  private static final int AUTHOR = AUTHOR_NAME | AUTHOR_MAIL | AUTHOR_URL | AUTHOR_IP | AUTHOR_ID;
+  private static final int ALL_FIELDS = POST_TITLE | POST_BODY | AUTHOR | LINKS;
+
+  private static final String[] LINK_PREFIXES = { "http://", "https://", "www." };
+
+  private static final BlacklistEntry[] NO_ENTRIES = new BlacklistEntry[0];
+  private static final int[] NO_OUTPUTS = new int[0];
+
+  // Compiled entries; outputs refer to entries by index.
+  private final BlacklistEntry[] entries;
+  private final int[] entryFields;
+  private final int[] entryLengths;
+  private final boolean[] entryExact;
+
+  // The automaton. Node 0 is the root. Transitions of each node are sorted by
+  // character for binary search.
+  private final char[][] transitionChars;
+  private final int[][] transitionTargets;
+  private final int[] failure;
+  private final int[][] outputs;
+
+  /**
+   * Compiles the enabled entries of the given blacklist.
+   */
+  BlacklistMatcher(Collection<BlacklistEntry> blacklist) {
+    List<BlacklistEntry> enabled = new ArrayList<>();
+    for (BlacklistEntry entry : blacklist) {
+      if (entry.isEnabled() && entry.getValue() != null && !entry.getValue().isEmpty()) {
+        enabled.add(entry);
+      }
+    }
+    entries = enabled.toArray(NO_ENTRIES);
+    entryFields = new int[entries.length];
+    entryLengths = new int[entries.length];
+    entryExact = new boolean[entries.length];
+
+    // Build the trie.
+    List<Map<Character, Integer>> trie = new ArrayList<>();
+    List<List<Integer>> trieOutputs = new ArrayList<>();
+    trie.add(new HashMap<Character, Integer>());
+    trieOutputs.add(new ArrayList<Integer>());
+    for (int i = 0; i < entries.length; i++) {
+      String value = entries[i].getValue();
+      entryFields[i] = fieldsOf(entries[i].getContext());
+      entryLengths[i] = value.length();
+      entryExact[i] = entries[i].getMatch() == BlacklistMatchPrecision.EXACT;
+
+      int node = 0;
+      for (int j = 0; j < value.length(); j++) {
+        char c = Character.toLowerCase(value.charAt(j));
+        Integer next = trie.get(node).get(c);
+        if (next == null) {
+          next = trie.size();
+          trie.add(new HashMap<Character, Integer>());
+          trieOutputs.add(new ArrayList<Integer>());
+          trie.get(node).put(c, next);
+        }
+        node = next;
+      }
+      trieOutputs.get(node).add(i);
+    }
+
+    int nodeCount = trie.size();
+    transitionChars = new char[nodeCount][];
+    transitionTargets = new int[nodeCount][];
+    for (int node = 0; node < nodeCount; node++) {
+      Map<Character, Integer> transitions = trie.get(node);
+      char[] chars = new char[transitions.size()];
+      int k = 0;
+      for (Character c : transitions.keySet()) {
+        chars[k++] = c;
+      }
+      Arrays.sort(chars);
+      int[] targets = new int[chars.length];
+      for (k = 0; k < chars.length; k++) {
+        targets[k] = transitions.get(chars[k]);
+      }
+      transitionChars[node] = chars;
+      transitionTargets[node] = targets;
+    }
+
+    // Compute failure links breadth-first, merging the outputs of each node's
+    // failure node into its own outputs.
+    failure = new int[nodeCount];
+    int[] queue = new int[nodeCount];
+    int head = 0;
+    int tail = 0;
+    for (int target : transitionTargets[0]) {
+      queue[tail++] = target;
+    }
+    while (head < tail) {
+      int node = queue[head++];
+      for (int k = 0; k < transitionChars[node].length; k++) {
+        char c = transitionChars[node][k];
+        int child = transitionTargets[node][k];
+        int fallback = failure[node];
+        while (fallback != 0 && transition(fallback, c) < 0) {
+          fallback = failure[fallback];
+        }
+        int target = transition(fallback, c);
+        failure[child] = target >= 0 && target != child ? target : 0;
+        trieOutputs.get(child).addAll(trieOutputs.get(failure[child]));
+        queue[tail++] = child;
+      }
+    }
+
+    outputs = new int[nodeCount][];
+    for (int node = 0; node < nodeCount; node++) {
+      List<Integer> nodeOutputs = trieOutputs.get(node);
+      if (nodeOutputs.isEmpty()) {
+        outputs[node] = NO_OUTPUTS;
+      } else {
+        outputs[node] = new int[nodeOutputs.size()];
+        for (int k = 0; k < nodeOutputs.size(); k++) {
+          outputs[node][k] = nodeOutputs.get(k);
+        }
+      }
+    }
+  }
+
+  /**
+   * Matches the given content.
+   *
+   * @return The first matching blacklist entry, or null if none matched.
+   */
+  BlacklistEntry match(Content content) {
+    if (entries.length == 0) {
+      return null;
+    }
+    BlacklistEntry entry = match(content.getPostTitle(), POST_TITLE);
+    if (entry == null) {
+      entry = match(content.getPostBody(), POST_BODY);
+    }
+    if (entry == null) {
+      entry = match(content.getAuthorName(), AUTHOR_NAME);
+    }
+    if (entry == null) {
+      entry = match(content.getAuthorMail(), AUTHOR_MAIL);
+    }
+    if (entry == null) {
+      entry = match(content.getAuthorUrl(), AUTHOR_URL | LINKS);
+    }
+    if (entry == null) {
+      entry = match(content.getAuthorIp(), AUTHOR_IP);
+    }
+    if (entry == null) {
+      entry = match(content.getAuthorId(), AUTHOR_ID);
+    }
+    if (entry == null && content.getPostBody() != null) {
+      for (String link : extractLinks(content.getPostBody())) {
+        entry = match(link, LINKS);
+        if (entry != null) {
+          break;
+        }
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Matches a single field value.
+   *
+   * @param field The content fields the text belongs to.
+   */
+  BlacklistEntry match(String text, int field) {
+    if (text == null) {
+      return null;
+    }
+    int node = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = Character.toLowerCase(text.charAt(i));
+      int next;
+      while ((next = transition(node, c)) < 0 && node != 0) {
+        node = failure[node];
+      }
+      node = next < 0 ? 0 : next;
+      for (int index : outputs[node]) {
+        if ((entryFields[index] & field) == 0) {
+          continue;
+        }
+        if (entryExact[index] && !isWordBounded(text, i + 1 - entryLengths[index], i + 1)) {
+          continue;
+        }
+        return entries[index];
+      }
+    }
+    return null;
+  }
+
+  private int transition(int node, char c) {
+    int k = Arrays.binarySearch(transitionChars[node], c);
+    return k < 0 ? -1 : transitionTargets[node][k];
+  }
+
+  /**
+   * @return Whether the given range of text is enclosed by word boundaries.
+   */
+  private static boolean isWordBounded(String text, int start, int end) {
+    return (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+        && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
+  }
+
+  /**
+   * @return The content fields a blacklist entry context matches in.
+   */
+  static int fieldsOf(Context context) {
+    switch (context) {
+      case AUTHOR:
+        return AUTHOR;
+      case AUTHORIP:
+        return AUTHOR_IP;
+      case AUTHORID:
+        return AUTHOR_ID;
+      case AUTHORNAME:
+        return AUTHOR_NAME;
+      case AUTHORMAIL:
+        return AUTHOR_MAIL;
+      case POST:
+        return POST_TITLE | POST_BODY;
+      case POSTTITLE:
+        return POST_TITLE;
+      case LINKS:
+        return LINKS;
+      case ALLFIELDS:
+      default:
+        return ALL_FIELDS;
+    }
+  }
+
+  /**
+   * Extracts the absolute links (http://, https://, www.) of a post body.
+   */
+  static List<String> extractLinks(String text) {
+    List<String> links = new ArrayList<>();
+    int i = 0;
+    while (i < text.length()) {
+      int start = indexOfLink(text, i);
+      if (start < 0) {
+        break;
+      }
+      int end = start;
+      while (end < text.length() && !isLinkTerminator(text.charAt(end))) {
+        end++;
+      }
+      links.add(text.substring(start, end));
+      i = end;
+    }
+    return links;
+  }
+
+  private static int indexOfLink(String text, int from) {
+    int start = -1;
+    for (String prefix : LINK_PREFIXES) {
+      int index = indexOfIgnoreCase(text, prefix, from);
+      if (index >= 0 && (start < 0 || index < start)) {
+        start = index;
+      }
+    }
+    return start;
+  }
+
+  private static int indexOfIgnoreCase(String text, String prefix, int from) {
+    for (int i = from; i <= text.length() - prefix.length(); i++) {
+      if (text.regionMatches(true, i, prefix, 0, prefix.length())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isLinkTerminator(char c) {
+    return Character.isWhitespace(c) || c == '"' || c == '\'' || c == '<' || c == '>';
+  }
+}
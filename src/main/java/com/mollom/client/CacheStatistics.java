@@ -0,0 +1,68 @@
+package com.mollom.client;
+
+/**
+ * Snapshot of the statistics of the classification cache.
+ *
+ * @see MollomClient#getClassificationCacheStatistics()
+ */
+public class CacheStatistics {
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final int size;
+  private final int maximumSize;
+
+  CacheStatistics(long hitCount, long missCount, long evictionCount, int size, int maximumSize) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.size = size;
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * @return The number of checks answered from the cache.
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return The number of cacheable checks that were sent to Mollom.
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return The ratio of hits to all cache lookups, or 0 without lookups.
+   */
+  public double getHitRate() {
+    long lookups = hitCount + missCount;
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+  /**
+   * @return The number of classifications evicted due to size or expiry.
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return The current number of cached classifications.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStatistics[hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount
+        + ", size=" + size + "/" + maximumSize + "]";
+  }
+}
@@ -0,0 +1,20 @@
+package com.mollom.client;
+
+/**
+ * Receives the progress of a batch of content checks.
+ *
+ * Listeners are called on the threads checking the content, after each check;
+ * they should return quickly and must be thread-safe.
+ *
+ * @see MollomClient#checkContents(java.util.Collection, int, CheckProgressListener)
+ */
+public interface CheckProgressListener {
+
+  /**
+   * @param result The outcome of the completed check.
+   * @param completedCount The number of completed checks of the batch,
+   *   including this one.
+   * @param totalCount The number of contents of the batch.
+   */
+  void onChecked(ContentCheckResult result, int completedCount, int totalCount);
+}
@@ -0,0 +1,177 @@
+package com.mollom.client;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stops sending requests to the Mollom service while it is unavailable.
+ *
+ * The breaker records the outcome of the last requests in a sliding window.
+ * If the rate of failed or slow requests in a full window reaches its
+ * threshold, the breaker opens and requests fail immediately. After a wait
+ * duration, the breaker lets a few trial requests pass (half-open); it closes
+ * if all of them succeed, and opens again otherwise.
+ */
+class CircuitBreaker {
+  private final static Logger logger = Logger.getLogger("com.mollom.client.CircuitBreaker");
+
+  private static final int HALF_OPEN_PERMITTED_CALLS = 3;
+
+  private static final byte FAILED = 1;
+  private static final byte SLOW = 2;
+
+  private final int failureRateThreshold;
+  private final long slowCallDurationNanos;
+  private final int slowCallRateThreshold;
+  private final long openDurationNanos;
+  private final CircuitBreakerListener listener;
+
+  // Guarded by this; volatile for the lock-free fast path of open breakers.
+  private volatile CircuitBreakerState state = CircuitBreakerState.CLOSED;
+  private volatile long openedAt;
+
+  // Ring buffer of the outcomes of the last calls; guarded by this.
+  private final byte[] window;
+  private int windowIndex;
+  private int windowCount;
+  private int failedCount;
+  private int slowCount;
+
+  // Trial calls of the half-open state; guarded by this.
+  private int halfOpenPermits;
+  private int halfOpenSuccesses;
+
+  /**
+   * @param windowSize The number of calls in the sliding window.
+   * @param failureRateThreshold The percentage of failed calls at which the
+   *   breaker opens.
+   * @param slowCallDuration The duration (ms) above which a call is slow.
+   * @param slowCallRateThreshold The percentage of slow calls at which the
+   *   breaker opens.
+   * @param openDuration The time (ms) the breaker stays open.
+   * @param listener Receives state transitions, or null.
+   */
+  CircuitBreaker(int windowSize, int failureRateThreshold, int slowCallDuration, int slowCallRateThreshold,
+      int openDuration, CircuitBreakerListener listener) {
+    this.window = new byte[windowSize];
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallDurationNanos = slowCallDuration * 1000000L;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.openDurationNanos = openDuration * 1000000L;
+    this.listener = listener;
+  }
+
+  CircuitBreakerState getState() {
+    return state;
+  }
+
+  /**
+   * Acquires permission to send a request.
+   *
+   * Every permitted call must be followed by a call to record().
+   *
+   * @return Whether the request may be sent.
+   */
+  boolean tryAcquire() {
+    CircuitBreakerState currentState = state;
+    if (currentState == CircuitBreakerState.CLOSED) {
+      return true;
+    }
+    if (currentState == CircuitBreakerState.OPEN && System.nanoTime() - openedAt < openDurationNanos) {
+      return false;
+    }
+
+    CircuitBreakerState previousState;
+    CircuitBreakerState newState;
+    boolean permitted;
+    synchronized (this) {
+      previousState = state;
+      if (state == CircuitBreakerState.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+        state = CircuitBreakerState.HALF_OPEN;
+        halfOpenPermits = HALF_OPEN_PERMITTED_CALLS;
+        halfOpenSuccesses = 0;
+      }
+      if (state == CircuitBreakerState.HALF_OPEN) {
+        permitted = halfOpenPermits > 0;
+        if (permitted) {
+          halfOpenPermits--;
+        }
+      } else {
+        permitted = state == CircuitBreakerState.CLOSED;
+      }
+      newState = state;
+    }
+    notifyTransition(previousState, newState);
+    return permitted;
+  }
+
+  /**
+   * Records the outcome of a permitted call.
+   *
+   * @param success Whether the Mollom service responded with a status below
+   *   500.
+   * @param durationNanos The duration of the call.
+   */
+  void record(boolean success, long durationNanos) {
+    boolean slow = durationNanos > slowCallDurationNanos;
+    CircuitBreakerState previousState;
+    CircuitBreakerState newState;
+    synchronized (this) {
+      previousState = state;
+      if (state == CircuitBreakerState.HALF_OPEN) {
+        if (!success || slow) {
+          open();
+        } else if (++halfOpenSuccesses >= HALF_OPEN_PERMITTED_CALLS) {
+          close();
+        }
+      } else if (state == CircuitBreakerState.CLOSED) {
+        byte outcome = (byte) ((success ? 0 : FAILED) | (slow ? SLOW : 0));
+        if (windowCount == window.length) {
+          byte evicted = window[windowIndex];
+          failedCount -= evicted & FAILED;
+          slowCount -= (evicted & SLOW) >> 1;
+        } else {
+          windowCount++;
+        }
+        window[windowIndex] = outcome;
+        windowIndex = (windowIndex + 1) % window.length;
+        failedCount += outcome & FAILED;
+        slowCount += (outcome & SLOW) >> 1;
+
+        if (windowCount == window.length
+            && (failedCount * 100 >= failureRateThreshold * windowCount
+            || slowCount * 100 >= slowCallRateThreshold * windowCount)) {
+          open();
+        }
+      }
+      // Outcomes of calls that were permitted before the breaker opened are
+      // ignored.
+      newState = state;
+    }
+    notifyTransition(previousState, newState);
+  }
+
+  private void open() {
+    openedAt = System.nanoTime();
+    state = CircuitBreakerState.OPEN;
+  }
+
+  private void close() {
+    windowIndex = 0;
+    windowCount = 0;
+    failedCount = 0;
+    slowCount = 0;
+    state = CircuitBreakerState.CLOSED;
+  }
+
+  private void notifyTransition(CircuitBreakerState fromState, CircuitBreakerState toState) {
+    if (fromState == toState) {
+      return;
+    }
+    logger.log(toState == CircuitBreakerState.OPEN ? Level.WARNING : Level.INFO,
+        "Circuit breaker state changed from " + fromState + " to " + toState + ".");
+    if (listener != null) {
+      listener.onStateTransition(fromState, toState);
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package com.mollom.client;
+
+/**
+ * Receives state transitions of the circuit breaker of a MollomClient.
+ *
+ * Listeners are called synchronously on the thread of the request that caused
+ * the transition; they should return quickly.
+ *
+ * @see MollomClientBuilder#withCircuitBreakerListener(CircuitBreakerListener)
+ */
+public interface CircuitBreakerListener {
+
+  void onStateTransition(CircuitBreakerState fromState, CircuitBreakerState toState);
+}
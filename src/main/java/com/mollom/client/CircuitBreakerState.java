@@ -0,0 +1,24 @@
+package com.mollom.client;
+
+/**
+ * Denotes the state of the circuit breaker of a MollomClient.
+ */
+public enum CircuitBreakerState {
+
+  /**
+   * Requests are sent to Mollom. Default behavior.
+   */
+  CLOSED,
+
+  /**
+   * Mollom is considered unavailable; requests fail immediately with a
+   * MollomNoResponseException.
+   */
+  OPEN,
+
+  /**
+   * A limited number of trial requests are sent to Mollom to decide whether
+   * the service is available again.
+   */
+  HALF_OPEN;
+}
@@ -0,0 +1,91 @@
+package com.mollom.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of content classifications, keyed by content fingerprint.
+ *
+ * Entries expire after a fixed time to live; if the cache is full, the least
+ * recently used entry is evicted.
+ */
+class ClassificationCache {
+  private final int maximumSize;
+  private final long timeToLiveNanos;
+
+  // Guarded by itself; in access order for LRU eviction.
+  private final LinkedHashMap<ContentFingerprint, CachedClassification> entries;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  private static class CachedClassification {
+    final Content classification;
+    final long expiresAt;
+
+    CachedClassification(Content classification, long expiresAt) {
+      this.classification = classification;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * @param maximumSize The maximum number of cached classifications.
+   * @param timeToLive The time (ms) after which a classification expires.
+   */
+  ClassificationCache(int maximumSize, int timeToLive) {
+    this.maximumSize = maximumSize;
+    this.timeToLiveNanos = timeToLive * 1000000L;
+    this.entries = new LinkedHashMap<ContentFingerprint, CachedClassification>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<ContentFingerprint, CachedClassification> eldest) {
+        if (size() > maximumSize) {
+          evictionCount.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @return The cached classification response for the fingerprint, or null.
+   */
+  Content get(ContentFingerprint fingerprint) {
+    CachedClassification entry;
+    synchronized (entries) {
+      entry = entries.get(fingerprint);
+      if (entry != null && entry.expiresAt - System.nanoTime() <= 0) {
+        entries.remove(fingerprint);
+        evictionCount.incrementAndGet();
+        entry = null;
+      }
+    }
+    if (entry == null) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    hitCount.incrementAndGet();
+    return entry.classification;
+  }
+
+  /**
+   * Caches a classification response; it must not be modified afterwards.
+   */
+  void put(ContentFingerprint fingerprint, Content classification) {
+    CachedClassification entry = new CachedClassification(classification, System.nanoTime() + timeToLiveNanos);
+    synchronized (entries) {
+      entries.put(fingerprint, entry);
+    }
+  }
+
+  CacheStatistics getStatistics() {
+    int size;
+    synchronized (entries) {
+      size = entries.size();
+    }
+    return new CacheStatistics(hitCount.get(), missCount.get(), evictionCount.get(), size, maximumSize);
+  }
+}
@@ -0,0 +1,262 @@
+package com.mollom.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects latencies and counters of the requests of a MollomClient, and
+ * forwards them to an optional MetricsListener.
+ */
+class ClientMetrics implements MollomClientMXBean {
+  private static final String[] RESOURCES = { "content", "captcha", "feedback", "blacklist", "whitelist" };
+
+  private final MetricsListener listener;
+
+  // Immutable after construction.
+  private final Map<String, LatencyHistogram> latencies;
+
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder retryCount = new LongAdder();
+  private final LongAdder clientErrorCount = new LongAdder();
+  private final LongAdder serverErrorCount = new LongAdder();
+  private final LongAdder noResponseCount = new LongAdder();
+  private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
+  private final LongAdder hamCount = new LongAdder();
+  private final LongAdder spamCount = new LongAdder();
+  private final LongAdder unsureCount = new LongAdder();
+  private final LongAdder fallbackCount = new LongAdder();
+
+  /**
+   * @param listener Receives all events, or null.
+   */
+  ClientMetrics(MetricsListener listener) {
+    this.listener = listener;
+    Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    for (String resource : RESOURCES) {
+      latencies.put(resource, new LatencyHistogram());
+    }
+    this.latencies = Collections.unmodifiableMap(latencies);
+  }
+
+  /**
+   * Records an attempt of a request.
+   *
+   * @param status The HTTP status of the response, or -1 if Mollom could not
+   *   be reached.
+   */
+  void recordRequest(Operation operation, String path, Map<String, List<String>> formParams, int status,
+      long latencyNanos) {
+    String resource = resourceOf(path);
+    long requestBytes = formParams != null ? encodedLength(formParams) : 0;
+    requestCount.increment();
+    bytesSent.add(requestBytes);
+    if (status < 0) {
+      noResponseCount.increment();
+    } else {
+      if (status >= 500) {
+        serverErrorCount.increment();
+      } else if (status >= 400) {
+        clientErrorCount.increment();
+      }
+      LatencyHistogram histogram = latencies.get(resource);
+      if (histogram != null) {
+        histogram.record(latencyNanos);
+      }
+    }
+    if (listener != null) {
+      listener.onRequest(operation, resource, status, latencyNanos, requestBytes);
+    }
+  }
+
+  void recordRetry(Operation operation) {
+    retryCount.increment();
+    if (listener != null) {
+      listener.onRetry(operation);
+    }
+  }
+
+  void recordClassification(String spamClassification) {
+    if (spamClassification == null) {
+      return;
+    }
+    switch (spamClassification) {
+      case "ham":
+        hamCount.increment();
+        break;
+      case "spam":
+        spamCount.increment();
+        break;
+      case "unsure":
+        unsureCount.increment();
+        break;
+      default:
+        break;
+    }
+    if (listener != null) {
+      listener.onClassification(spamClassification);
+    }
+  }
+
+  void recordFallback() {
+    fallbackCount.increment();
+  }
+
+  /**
+   * @return The given response body, counting the bytes read from it.
+   */
+  InputStream countBytesReceived(InputStream body) {
+    return new FilterInputStream(body) {
+      @Override
+      public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+          bytesReceived.increment();
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = super.read(buffer, offset, length);
+        if (read > 0) {
+          bytesReceived.add(read);
+        }
+        return read;
+      }
+    };
+  }
+
+  /**
+   * @return The first segment of the resource path; e.g., content. Known
+   *   resources are returned as constants, without allocating.
+   */
+  private static String resourceOf(String path) {
+    for (String resource : RESOURCES) {
+      if (path.startsWith(resource) && (path.length() == resource.length() || path.charAt(resource.length()) == '/')) {
+        return resource;
+      }
+    }
+    int slash = path.indexOf('/');
+    return slash < 0 ? path : path.substring(0, slash);
+  }
+
+  /**
+   * @return The size of the URL-encoded form of the given parameters, as sent
+   *   by FormEncoder, without encoding them.
+   */
+  static long encodedLength(Map<String, List<String>> params) {
+    long length = 0;
+    if (params instanceof FormParams) {
+      FormParams formParams = (FormParams) params;
+      for (int i = 0; i < formParams.pairCount(); i++) {
+        if (i > 0) {
+          length++;
+        }
+        length += encodedLength(formParams.nameAt(i)) + 1 + encodedLength(formParams.valueAt(i));
+      }
+      return length;
+    }
+    for (Map.Entry<String, List<String>> param : params.entrySet()) {
+      long nameLength = encodedLength(param.getKey());
+      for (String value : param.getValue()) {
+        if (length > 0) {
+          length++;
+        }
+        length += nameLength + 1 + encodedLength(value);
+      }
+    }
+    return length;
+  }
+
+  private static long encodedLength(String value) {
+    long length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+          || c == '-' || c == '.' || c == '_' || c == '~') {
+        length++;
+      } else if (c < 0x80) {
+        length += 3;
+      } else if (c < 0x800) {
+        length += 6;
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 12;
+        i++;
+      } else {
+        length += 9;
+      }
+    }
+    return length;
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requestCount.sum();
+  }
+
+  @Override
+  public long getRetryCount() {
+    return retryCount.sum();
+  }
+
+  @Override
+  public long getClientErrorCount() {
+    return clientErrorCount.sum();
+  }
+
+  @Override
+  public long getServerErrorCount() {
+    return serverErrorCount.sum();
+  }
+
+  @Override
+  public long getNoResponseCount() {
+    return noResponseCount.sum();
+  }
+
+  @Override
+  public long getBytesSent() {
+    return bytesSent.sum();
+  }
+
+  @Override
+  public long getBytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  @Override
+  public long getHamCount() {
+    return hamCount.sum();
+  }
+
+  @Override
+  public long getSpamCount() {
+    return spamCount.sum();
+  }
+
+  @Override
+  public long getUnsureCount() {
+    return unsureCount.sum();
+  }
+
+  @Override
+  public long getFallbackCount() {
+    return fallbackCount.sum();
+  }
+
+  @Override
+  public Map<String, LatencySnapshot> getLatencies() {
+    Map<String, LatencySnapshot> snapshots = new LinkedHashMap<>();
+    for (Map.Entry<String, LatencyHistogram> histogram : latencies.entrySet()) {
+      snapshots.put(histogram.getKey(), histogram.getValue().getSnapshot());
+    }
+    return snapshots;
+  }
+}
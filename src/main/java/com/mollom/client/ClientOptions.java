@@ -0,0 +1,43 @@
+package com.mollom.client;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The components and options of a MollomClient, as assembled by the
+ * MollomClientBuilder.
+ *
+ * Fields that are not set keep their default value, which disables the
+ * respective feature; only the transport, the public key, and the retry
+ * policies are required.
+ */
+class ClientOptions {
+  Transport transport;
+  String publicKey;
+  Map<Operation, RetryPolicy> retryPolicies;
+  // Optional limit of the rate of retries; null if unlimited.
+  RetryBudget retryBudget;
+  // Executes asynchronous requests; null to use a cached thread pool owned by
+  // the client.
+  Executor executor;
+  boolean localBlacklist;
+  boolean localWhitelist;
+  ClassificationCache classificationCache;
+  boolean requestCoalescing;
+  ConnectionPool connectionPool;
+  CircuitBreaker circuitBreaker;
+  // The latency percentile after which a hedge request is sent; 0 if hedging
+  // is disabled.
+  int hedgingPercentile;
+  // The maximum time (ms) of a request with the configured connection and
+  // read timeouts; 0 if unbounded.
+  int attemptTimeout;
+  MetricsListener metricsListener;
+  NotificationQueue notificationQueue;
+  int notificationQueueDrainTimeout;
+  Outbox outbox;
+  boolean fallbackClassifier;
+  // Completed once the API keys are verified; null if verified already.
+  CompletableFuture<Void> verification;
+}
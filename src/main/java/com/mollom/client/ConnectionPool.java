@@ -0,0 +1,66 @@
+package com.mollom.client;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Pool of persistent (keep-alive) HTTP connections to the Mollom service.
+ *
+ * Connections that have been idle for too long are closed in the background,
+ * so that the pool does not hand out connections that were closed by the
+ * server in the meantime.
+ */
+class ConnectionPool {
+  private final PoolingClientConnectionManager connectionManager;
+  private final ScheduledExecutorService evictor;
+
+  /**
+   * @param maxConnections The maximum number of connections.
+   * @param maxConnectionsPerRoute The maximum number of connections per route
+   *   (host).
+   * @param idleTimeout The time (ms) after which idle connections are closed,
+   *   or 0 to keep idle connections open.
+   * @param timeToLive The time (ms) after which connections are closed
+   *   regardless of their activity, or 0 for no limit.
+   */
+  ConnectionPool(int maxConnections, int maxConnectionsPerRoute, final int idleTimeout, int timeToLive) {
+    connectionManager = new PoolingClientConnectionManager(SchemeRegistryFactory.createDefault(),
+        timeToLive > 0 ? timeToLive : -1, TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+
+    evictor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("mollom-connection-evictor"));
+    long period = idleTimeout > 0 ? Math.max(idleTimeout / 2, 1000) : 5000;
+    evictor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        connectionManager.closeExpiredConnections();
+        if (idleTimeout > 0) {
+          connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+        }
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  PoolingClientConnectionManager getConnectionManager() {
+    return connectionManager;
+  }
+
+  ConnectionPoolStatistics getStatistics() {
+    PoolStats stats = connectionManager.getTotalStats();
+    return new ConnectionPoolStatistics(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
+  }
+
+  /**
+   * Closes all connections and stops the background eviction.
+   */
+  void shutdown() {
+    evictor.shutdownNow();
+    connectionManager.shutdown();
+  }
+}
@@ -0,0 +1,54 @@
+package com.mollom.client;
+
+/**
+ * Snapshot of the statistics of the HTTP connection pool.
+ *
+ * @see MollomClient#getConnectionPoolStatistics()
+ */
+public class ConnectionPoolStatistics {
+  private final int leased;
+  private final int available;
+  private final int pending;
+  private final int max;
+
+  ConnectionPoolStatistics(int leased, int available, int pending, int max) {
+    this.leased = leased;
+    this.available = available;
+    this.pending = pending;
+    this.max = max;
+  }
+
+  /**
+   * @return The number of connections currently used by requests.
+   */
+  public int getLeased() {
+    return leased;
+  }
+
+  /**
+   * @return The number of idle persistent connections.
+   */
+  public int getAvailable() {
+    return available;
+  }
+
+  /**
+   * @return The number of requests waiting for a connection.
+   */
+  public int getPending() {
+    return pending;
+  }
+
+  /**
+   * @return The maximum number of connections.
+   */
+  public int getMax() {
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionPoolStatistics[leased=" + leased + ", available=" + available + ", pending=" + pending
+        + ", max=" + max + "]";
+  }
+}
@@ -0,0 +1,127 @@
+package com.mollom.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks a batch of contents with a bounded number of concurrent requests.
+ *
+ * The calling thread checks content itself, and the other workers run on the
+ * executor of the client; each worker takes the next unchecked content until
+ * none is left. The batch therefore completes even if the executor is
+ * saturated, only with less parallelism.
+ */
+class ContentBatch {
+  private final MollomClient client;
+  private final List<Content> contents;
+  private final CheckProgressListener listener;
+  private final ContentCheckResult[] results;
+  private final AtomicInteger nextIndex = new AtomicInteger();
+  private final AtomicInteger completedCount = new AtomicInteger();
+  // The first unchecked exception of a worker (e.g., of the listener); stops
+  // the batch and is rethrown to the caller.
+  private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+  private volatile boolean stopped;
+
+  /**
+   * @param listener Notified after each check, or null.
+   */
+  ContentBatch(MollomClient client, Collection<Content> contents, CheckProgressListener listener) {
+    this.client = client;
+    this.contents = new ArrayList<>(contents);
+    this.listener = listener;
+    this.results = new ContentCheckResult[this.contents.size()];
+  }
+
+  /**
+   * Checks all contents and waits until all workers are done.
+   *
+   * If the calling thread is interrupted, no further content is checked; the
+   * result of each unchecked content is a MollomNoResponseException, and the
+   * interrupt status is preserved.
+   *
+   * @return The results in the order of the contents.
+   */
+  List<ContentCheckResult> run(Executor executor, int parallelism) {
+    int workerCount = Math.min(parallelism, contents.size()) - 1;
+    CountDownLatch workersDone = new CountDownLatch(Math.max(workerCount, 0));
+    for (int i = 0; i < workerCount; i++) {
+      try {
+        executor.execute(() -> {
+          try {
+            work();
+          } finally {
+            workersDone.countDown();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        workersDone.countDown();
+      }
+    }
+    work();
+
+    boolean interrupted = Thread.interrupted();
+    if (interrupted) {
+      stopped = true;
+    }
+    while (true) {
+      try {
+        workersDone.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+        stopped = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+
+    for (int i = 0; i < results.length; i++) {
+      if (results[i] == null) {
+        results[i] = new ContentCheckResult(contents.get(i),
+            new MollomNoResponseException("Content was not checked; the batch was interrupted."));
+      }
+    }
+    return Collections.unmodifiableList(Arrays.asList(results));
+  }
+
+  private void work() {
+    try {
+      while (!stopped && !Thread.currentThread().isInterrupted()) {
+        int index = nextIndex.getAndIncrement();
+        if (index >= contents.size()) {
+          return;
+        }
+        Content content = contents.get(index);
+        ContentCheckResult result;
+        try {
+          client.checkContent(content);
+          result = new ContentCheckResult(content, null);
+        } catch (MollomException e) {
+          result = new ContentCheckResult(content, e);
+        }
+        // Published to the caller by the latch of the workers.
+        results[index] = result;
+        int completed = completedCount.incrementAndGet();
+        if (listener != null) {
+          listener.onChecked(result, completed, results.length);
+        }
+      }
+    } catch (RuntimeException e) {
+      failure.compareAndSet(null, e);
+      stopped = true;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.mollom.client;
+
+/**
+ * Outcome of the check of one content of a batch.
+ *
+ * @see MollomClient#checkContents(java.util.Collection, int, CheckProgressListener)
+ */
+public class ContentCheckResult {
+  private final Content content;
+  private final MollomException exception;
+
+  ContentCheckResult(Content content, MollomException exception) {
+    this.content = content;
+    this.exception = exception;
+  }
+
+  /**
+   * @return The checked content; the classification is injected into it if
+   *   the check succeeded.
+   */
+  public Content getContent() {
+    return content;
+  }
+
+  /**
+   * @return Whether the content was classified, by Mollom or locally.
+   */
+  public boolean isSuccess() {
+    return exception == null;
+  }
+
+  /**
+   * @return The exception of the failed check, or null if it succeeded.
+   */
+  public MollomException getException() {
+    return exception;
+  }
+
+  @Override
+  public String toString() {
+    return isSuccess() ? "ContentCheckResult[success]" : "ContentCheckResult[" + exception + "]";
+  }
+}
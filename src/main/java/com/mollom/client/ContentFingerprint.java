@@ -0,0 +1,126 @@
+package com.mollom.client;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Identifies content by a hash of all request parameters that influence its
+ * classification.
+ *
+ * Text fields are normalized (surrounding whitespace is trimmed, whitespace
+ * runs are collapsed, e-mail addresses are lowercased), so that trivially
+ * different resubmissions of the same content yield the same fingerprint.
+ */
+final class ContentFingerprint {
+  private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new MollomConfigurationException("SHA-256 is not supported.", e);
+    }
+  });
+
+  private final byte[] hash;
+  private final int hashCode;
+
+  private ContentFingerprint(byte[] hash) {
+    this.hash = hash;
+    this.hashCode = Arrays.hashCode(hash);
+  }
+
+  /**
+   * Computes the fingerprint of the given content and requested checks.
+   */
+  static ContentFingerprint of(Content content) {
+    return of(content, true);
+  }
+
+  /**
+   * Computes the fingerprint of the given content and requested checks.
+   *
+   * @param includeAuthorIp Whether content posted from different IP addresses
+   *   yields different fingerprints.
+   */
+  static ContentFingerprint of(Content content, boolean includeAuthorIp) {
+    StringBuilder key = new StringBuilder(256);
+    append(key, content.getId());
+    append(key, normalize(content.getPostTitle()));
+    append(key, normalize(content.getPostBody()));
+    append(key, normalize(content.getAuthorName()));
+    append(key, content.getAuthorMail() != null ? normalize(content.getAuthorMail()).toLowerCase(Locale.ROOT) : null);
+    append(key, normalize(content.getAuthorUrl()));
+    append(key, includeAuthorIp ? content.getAuthorIp() : null);
+    append(key, content.getAuthorId());
+    if (content.getAuthorOpenIds() != null) {
+      for (String authorOpenId : content.getAuthorOpenIds()) {
+        append(key, authorOpenId);
+      }
+    }
+    key.append('\u0001');
+    append(key, content.getHoneypot());
+    append(key, content.getContextUrl());
+    append(key, content.getContextTitle());
+    append(key, content.getUrl());
+    if (content.getChecks() != null) {
+      for (Check check : content.getChecks()) {
+        append(key, check.toString());
+      }
+    }
+    key.append('\u0001');
+    append(key, String.valueOf(content.getStrictness()));
+    append(key, String.valueOf(content.getType()));
+    append(key, content.isAllowUnsure() ? "1" : "0");
+    append(key, Integer.toString(content.getStored()));
+
+    MessageDigest digest = digests.get();
+    return new ContentFingerprint(digest.digest(key.toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Appends a field; the separator keeps adjacent fields from being ambiguous.
+   * Null and empty values are distinguished.
+   */
+  private static void append(StringBuilder key, String value) {
+    if (value != null) {
+      key.append(value.length()).append(':').append(value);
+    }
+    key.append('\u0000');
+  }
+
+  /**
+   * Trims the value and collapses all whitespace runs into a single space.
+   */
+  static String normalize(String value) {
+    if (value == null) {
+      return null;
+    }
+    StringBuilder normalized = new StringBuilder(value.length());
+    boolean whitespace = false;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (Character.isWhitespace(c)) {
+        whitespace = normalized.length() > 0;
+      } else {
+        if (whitespace) {
+          normalized.append(' ');
+          whitespace = false;
+        }
+        normalized.append(c);
+      }
+    }
+    return normalized.toString();
+  }
+
+  @Override
+  public boolean equals(Object object) {
+    return object instanceof ContentFingerprint && Arrays.equals(hash, ((ContentFingerprint) object).hash);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+}
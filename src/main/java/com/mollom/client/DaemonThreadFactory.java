@@ -0,0 +1,26 @@
+package com.mollom.client;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads for background work of the client library.
+ *
+ * Daemon threads ensure that a forgotten MollomClient.destroy() call does not
+ * prevent the JVM from shutting down.
+ */
+class DaemonThreadFactory implements ThreadFactory {
+  private final String namePrefix;
+  private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+  DaemonThreadFactory(String namePrefix) {
+    this.namePrefix = namePrefix;
+  }
+
+  @Override
+  public Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, namePrefix + "-" + threadNumber.getAndIncrement());
+    thread.setDaemon(true);
+    return thread;
+  }
+}
@@ -0,0 +1,43 @@
+package com.mollom.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An absolute point in time by which a call to Mollom must be completed,
+ * including all of its retries.
+ *
+ * @see MollomClient#withDeadline(Deadline)
+ */
+public final class Deadline {
+  private final long deadlineNanos;
+
+  private Deadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * @return A deadline the given duration from now.
+   */
+  public static Deadline after(long duration, TimeUnit unit) {
+    return new Deadline(System.nanoTime() + unit.toNanos(duration));
+  }
+
+  /**
+   * @return Whether the deadline has passed.
+   */
+  public boolean isExpired() {
+    return deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  /**
+   * @return The time remaining until the deadline, or 0 if it has passed.
+   */
+  public long timeRemaining(TimeUnit unit) {
+    return unit.convert(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline[remaining=" + timeRemaining(TimeUnit.MILLISECONDS) + "ms]";
+  }
+}
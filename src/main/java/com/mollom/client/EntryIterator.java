@@ -0,0 +1,125 @@
+package com.mollom.client;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Iterates over all entries of a blacklist or whitelist, page by page.
+ *
+ * Pages are requested lazily from the Mollom service, so that only one page
+ * (or two, if prefetching is enabled) is held in memory at any time.
+ *
+ * Not thread-safe; an iterator must only be consumed by a single thread.
+ *
+ * @see MollomClient#iterateBlacklistEntries(int, boolean)
+ * @see MollomClient#iterateWhitelistEntries(int, boolean)
+ */
+public class EntryIterator<T> {
+
+  /**
+   * Requests a single page of entries.
+   */
+  interface PageFetcher<T> {
+    ListPage<T> fetch(int offset, int count) throws MollomException;
+  }
+
+  private final PageFetcher<T> fetcher;
+  private final int pageSize;
+  private final Executor prefetchExecutor;
+
+  private ListPage<T> page;
+  private Iterator<T> pageItems;
+  private int nextOffset;
+  private boolean lastPage;
+  private CompletableFuture<ListPage<T>> prefetch;
+
+  /**
+   * @param prefetchExecutor The executor to request the next page on while the
+   *   current page is consumed, or null to disable prefetching.
+   */
+  EntryIterator(PageFetcher<T> fetcher, int pageSize, Executor prefetchExecutor) {
+    if (pageSize <= 0) {
+      throw new MollomIllegalUsageException("Page size must be greater than 0.");
+    }
+    this.fetcher = fetcher;
+    this.pageSize = pageSize;
+    this.prefetchExecutor = prefetchExecutor;
+  }
+
+  /**
+   * @return Whether there are more entries.
+   */
+  public boolean hasNext() throws MollomException {
+    while (pageItems == null || !pageItems.hasNext()) {
+      if (lastPage) {
+        return false;
+      }
+      nextPage();
+    }
+    return true;
+  }
+
+  /**
+   * @return The next entry.
+   *
+   * @throws NoSuchElementException If there are no more entries.
+   */
+  public T next() throws MollomException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return pageItems.next();
+  }
+
+  /**
+   * @return The total number of entries in the list, as reported by the Mollom
+   *   service with the first page, or -1 if it was not reported.
+   */
+  public int getTotal() throws MollomException {
+    if (page == null) {
+      nextPage();
+    }
+    return page.getTotal();
+  }
+
+  /**
+   * Cancels a pending prefetch request.
+   *
+   * Only needs to be called if the iteration is aborted before all entries
+   * have been consumed.
+   */
+  public void close() {
+    if (prefetch != null) {
+      prefetch.cancel(true);
+      prefetch = null;
+    }
+    lastPage = true;
+    pageItems = null;
+  }
+
+  private void nextPage() throws MollomException {
+    if (prefetch != null) {
+      CompletableFuture<ListPage<T>> pending = prefetch;
+      prefetch = null;
+      page = MollomFuture.await(pending);
+    } else {
+      page = fetcher.fetch(nextOffset, pageSize);
+    }
+    pageItems = page.getItems().iterator();
+
+    int count = page.getCount();
+    nextOffset = (page.getOffset() != -1 ? page.getOffset() : nextOffset) + count;
+    if (page.getTotal() != -1) {
+      lastPage = nextOffset >= page.getTotal() || count == 0;
+    } else {
+      lastPage = count < pageSize;
+    }
+
+    if (!lastPage && prefetchExecutor != null) {
+      int offset = nextOffset;
+      prefetch = MollomFuture.supply(() -> fetcher.fetch(offset, pageSize), prefetchExecutor);
+    }
+  }
+}
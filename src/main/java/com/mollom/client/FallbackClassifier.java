@@ -0,0 +1,188 @@
+package com.mollom.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Classifies content locally while the Mollom service is unreachable.
+ *
+ * Combines a filled honeypot, the link density of the post body, the recent
+ * posting rate of the author, and the local blacklist and whitelist into a
+ * spam score. Only SPAM checks are answered; the classification is coarse and
+ * meant to keep a site usable during an outage, not to replace Mollom.
+ *
+ * Does not allocate, and only scans the post body once, so that classifying
+ * takes microseconds. Thread-safe.
+ */
+class FallbackClassifier {
+  static final String REASON = "fallback";
+
+  // The prior score of content without any signal.
+  private static final double PRIOR_SCORE = 0.3;
+  private static final double NO_LINKS_SCORE = -0.2;
+  private static final double FEW_LINKS_SCORE = 0.2;
+  private static final double MANY_LINKS_SCORE = 0.5;
+  private static final double HIGH_RATE_SCORE = 0.4;
+  private static final double SPAM_THRESHOLD = 0.7;
+  private static final double HAM_THRESHOLD = 0.3;
+
+  // More links, or more than one link per this many words, are many.
+  private static final int MANY_LINKS = 3;
+  private static final int WORDS_PER_LINK = 10;
+
+  // More posts of an author within a window are a high rate.
+  private static final int HIGH_RATE = 5;
+  private static final long RATE_WINDOW = TimeUnit.MINUTES.toNanos(1);
+
+  // Posts per author are counted in a fixed number of slots, indexed by the
+  // hash of the author; colliding authors share a slot, which only overstates
+  // their rate. Each slot packs the window number (high bits) and the count
+  // (low 16 bits); the window number may be negative.
+  private static final int RATE_SLOTS = 4096;
+  private static final int COUNT_BITS = 16;
+  private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+  private static final String[] LINK_PREFIXES = { "http://", "https://", "www." };
+
+  private final AtomicLongArray rates = new AtomicLongArray(RATE_SLOTS);
+
+  /**
+   * Counts a post of the author of the content; called for every new content,
+   * so that the rate is known when Mollom becomes unreachable.
+   */
+  void recordPost(Content content) {
+    String author = authorOf(content);
+    if (author == null) {
+      return;
+    }
+    int slot = slotOf(author);
+    long window = System.nanoTime() / RATE_WINDOW;
+    while (true) {
+      long current = rates.get(slot);
+      long count = (current >> COUNT_BITS) == window ? current & COUNT_MASK : 0;
+      long updated = (window << COUNT_BITS) | Math.min(count + 1, COUNT_MASK);
+      if (rates.compareAndSet(slot, current, updated)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return The number of posts of the author of the content in the current
+   *   window.
+   */
+  int rateOf(Content content) {
+    String author = authorOf(content);
+    if (author == null) {
+      return 0;
+    }
+    long current = rates.get(slotOf(author));
+    long window = System.nanoTime() / RATE_WINDOW;
+    return (current >> COUNT_BITS) == window ? (int) (current & COUNT_MASK) : 0;
+  }
+
+  /**
+   * Sets the spam classification, score, and reason of the content.
+   *
+   * @param localBlacklist The local blacklist, or null if disabled.
+   * @param localWhitelist The local whitelist, or null if disabled.
+   */
+  void classify(Content content, LocalBlacklist localBlacklist, LocalWhitelist localWhitelist) {
+    double score = score(content, localBlacklist, localWhitelist);
+    String classification;
+    if (score >= SPAM_THRESHOLD) {
+      classification = "spam";
+    } else if (score > HAM_THRESHOLD && content.isAllowUnsure()) {
+      classification = "unsure";
+    } else {
+      // Without unsure, fail open; blocking legitimate users is worse than
+      // letting some spam through while Mollom is unreachable.
+      classification = "ham";
+    }
+    content.setSpamClassification(classification);
+    content.setSpamScore(score);
+    content.setReason(REASON);
+  }
+
+  private double score(Content content, LocalBlacklist localBlacklist, LocalWhitelist localWhitelist) {
+    if (localWhitelist != null && localWhitelist.match(content) != null) {
+      return 0.0;
+    }
+    if (localBlacklist != null && localBlacklist.match(content) != null) {
+      return 1.0;
+    }
+    if (content.getHoneypot() != null && !content.getHoneypot().isEmpty()) {
+      return 1.0;
+    }
+
+    double score = PRIOR_SCORE;
+    String postBody = content.getPostBody();
+    int links = 0;
+    int words = 0;
+    if (postBody != null) {
+      boolean inWord = false;
+      for (int i = 0; i < postBody.length(); i++) {
+        char c = postBody.charAt(i);
+        if (Character.isWhitespace(c)) {
+          inWord = false;
+          continue;
+        }
+        if (!inWord) {
+          inWord = true;
+          words++;
+        }
+        if (isLinkAt(postBody, i)) {
+          links++;
+        }
+      }
+    }
+    if (links == 0) {
+      score += NO_LINKS_SCORE;
+    } else if (links >= MANY_LINKS || links * WORDS_PER_LINK > words) {
+      score += MANY_LINKS_SCORE;
+    } else {
+      score += FEW_LINKS_SCORE;
+    }
+    if (rateOf(content) > HIGH_RATE) {
+      score += HIGH_RATE_SCORE;
+    }
+    return Math.max(0.0, Math.min(1.0, score));
+  }
+
+  /**
+   * @return Whether a link starts at the given index; "https://www." counts
+   *   once.
+   */
+  private static boolean isLinkAt(String text, int index) {
+    char c = text.charAt(index);
+    if (c != 'h' && c != 'H' && c != 'w' && c != 'W') {
+      return false;
+    }
+    for (String prefix : LINK_PREFIXES) {
+      if (text.regionMatches(true, index, prefix, 0, prefix.length())) {
+        // Skip "www." right after a scheme.
+        return prefix.charAt(0) == 'h' || index == 0 || text.charAt(index - 1) != '/';
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The identity of the author, or null if unknown.
+   */
+  private static String authorOf(Content content) {
+    if (content.getAuthorId() != null) {
+      return content.getAuthorId();
+    }
+    if (content.getAuthorIp() != null) {
+      return content.getAuthorIp();
+    }
+    return content.getAuthorMail();
+  }
+
+  private static int slotOf(String author) {
+    int hash = author.hashCode();
+    // Spread the higher bits, like HashMap.
+    return (hash ^ (hash >>> 16)) & (RATE_SLOTS - 1);
+  }
+}
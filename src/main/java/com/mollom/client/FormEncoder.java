@@ -0,0 +1,230 @@
+package com.mollom.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes parameters as application/x-www-form-urlencoded bytes (name=value
+ * pairs joined by &amp;) into a reusable buffer.
+ *
+ * Names and values are UTF-8 percent-encoded according to RFC 3986, like
+ * OAuth requires, so that the same bytes are sent and signed. The offsets of
+ * every pair are kept for the OAuthSigner.
+ *
+ * Each thread reuses one encoder for query parameters and one for form
+ * parameters, which grow to the largest request sent and then stop
+ * allocating (up to 64 KB). The encoded bytes are only valid until the encoder of the thread
+ * is used again. Not thread-safe.
+ */
+final class FormEncoder {
+  private static final ThreadLocal<FormEncoder> QUERY_ENCODERS = ThreadLocal.withInitial(FormEncoder::new);
+  private static final ThreadLocal<FormEncoder> BODY_ENCODERS = ThreadLocal.withInitial(FormEncoder::new);
+  private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+  private static final int INITIAL_CAPACITY = 1024;
+  // Larger buffers are not kept for the next request; a thread that encoded
+  // one huge post should not hold on to its buffer forever.
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+  private byte[] buffer = new byte[INITIAL_CAPACITY];
+  private int length;
+  // The offsets of the name, the value, and the end of each pair.
+  private int[] offsets = new int[3 * 32];
+  private int pairCount;
+
+  /**
+   * @return The reset query parameter encoder of the current thread.
+   */
+  static FormEncoder forQuery() {
+    return QUERY_ENCODERS.get().reset();
+  }
+
+  /**
+   * @return The reset form parameter encoder of the current thread.
+   */
+  static FormEncoder forBody() {
+    return BODY_ENCODERS.get().reset();
+  }
+
+  /**
+   * @return The given value, percent-encoded according to RFC 3986.
+   */
+  static String encode(String value) {
+    FormEncoder encoder = new FormEncoder();
+    encoder.append(value);
+    return encoder.toString();
+  }
+
+  FormEncoder reset() {
+    if (buffer.length > MAX_RETAINED_CAPACITY) {
+      buffer = new byte[INITIAL_CAPACITY];
+    }
+    length = 0;
+    pairCount = 0;
+    return this;
+  }
+
+  /**
+   * Adds all given parameters, in the order of the map.
+   *
+   * @param params The parameters, or null.
+   */
+  FormEncoder addAll(Map<String, List<String>> params) {
+    if (params instanceof FormParams) {
+      FormParams formParams = (FormParams) params;
+      for (int i = 0; i < formParams.pairCount(); i++) {
+        add(formParams.nameAt(i), formParams.valueAt(i));
+      }
+    } else if (params != null) {
+      for (Map.Entry<String, List<String>> param : params.entrySet()) {
+        for (String value : param.getValue()) {
+          add(param.getKey(), value);
+        }
+      }
+    }
+    return this;
+  }
+
+  FormEncoder add(CharSequence name, CharSequence value) {
+    if (pairCount > 0) {
+      writeByte('&');
+    }
+    int pair = 3 * pairCount;
+    if (pair == offsets.length) {
+      offsets = Arrays.copyOf(offsets, pair * 2);
+    }
+    offsets[pair] = length;
+    append(name);
+    writeByte('=');
+    offsets[pair + 1] = length;
+    append(value);
+    offsets[pair + 2] = length;
+    pairCount++;
+    return this;
+  }
+
+  int pairCount() {
+    return pairCount;
+  }
+
+  /**
+   * @return The buffer, of which the first length() bytes are the encoded
+   *   parameters.
+   */
+  byte[] buffer() {
+    return buffer;
+  }
+
+  int length() {
+    return length;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, length);
+  }
+
+  @Override
+  public String toString() {
+    return new String(buffer, 0, length, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * @return The offset of the encoded name of the given pair.
+   */
+  int nameStart(int pair) {
+    return offsets[3 * pair];
+  }
+
+  /**
+   * @return The offset of the encoded value of the given pair; the name ends
+   *   one byte before, at the equals sign.
+   */
+  int valueStart(int pair) {
+    return offsets[3 * pair + 1];
+  }
+
+  int pairEnd(int pair) {
+    return offsets[3 * pair + 2];
+  }
+
+  /**
+   * Compares two encoded pairs by name, then by value, as OAuth sorts request
+   * parameters.
+   */
+  static int compare(FormEncoder a, int pairA, FormEncoder b, int pairB) {
+    int order = compare(a.buffer, a.nameStart(pairA), a.valueStart(pairA) - 1,
+        b.buffer, b.nameStart(pairB), b.valueStart(pairB) - 1);
+    if (order != 0) {
+      return order;
+    }
+    return compare(a.buffer, a.valueStart(pairA), a.pairEnd(pairA), b.buffer, b.valueStart(pairB), b.pairEnd(pairB));
+  }
+
+  private static int compare(byte[] a, int fromA, int toA, byte[] b, int fromB, int toB) {
+    int lengthA = toA - fromA;
+    int lengthB = toB - fromB;
+    int common = Math.min(lengthA, lengthB);
+    for (int i = 0; i < common; i++) {
+      // Encoded bytes are ASCII.
+      int order = a[fromA + i] - b[fromB + i];
+      if (order != 0) {
+        return order;
+      }
+    }
+    return lengthA - lengthB;
+  }
+
+  /**
+   * Appends the value, percent-encoded according to RFC 3986 (all characters
+   * but unreserved ones).
+   */
+  private void append(CharSequence value) {
+    int valueLength = value.length();
+    for (int i = 0; i < valueLength; i++) {
+      char c = value.charAt(i);
+      if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+          || c == '-' || c == '.' || c == '_' || c == '~') {
+        writeByte(c);
+      } else if (c < 0x80) {
+        writeEncoded(c);
+      } else if (c < 0x800) {
+        writeEncoded(0xC0 | (c >> 6));
+        writeEncoded(0x80 | (c & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < valueLength && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          writeEncoded(0xF0 | (codePoint >> 18));
+          writeEncoded(0x80 | ((codePoint >> 12) & 0x3F));
+          writeEncoded(0x80 | ((codePoint >> 6) & 0x3F));
+          writeEncoded(0x80 | (codePoint & 0x3F));
+        } else {
+          // Unpaired surrogates are encoded as "?", like String.getBytes().
+          writeEncoded('?');
+        }
+      } else {
+        writeEncoded(0xE0 | (c >> 12));
+        writeEncoded(0x80 | ((c >> 6) & 0x3F));
+        writeEncoded(0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private void writeEncoded(int b) {
+    ensureCapacity(length + 3);
+    buffer[length++] = '%';
+    buffer[length++] = HEX[(b >> 4) & 0xF];
+    buffer[length++] = HEX[b & 0xF];
+  }
+
+  private void writeByte(int b) {
+    ensureCapacity(length + 1);
+    buffer[length++] = (byte) b;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.mollom.client;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Form parameters of a request, kept as a flat list of name/value pairs in
+ * the order they were added.
+ *
+ * Building the parameters of a request allocates two arrays instead of a map
+ * with a list per parameter; FormEncoder and the metrics read the pairs
+ * directly. The map view groups the values by name, and is only built by
+ * callers that need it (e.g., the outbox).
+ *
+ * Not thread-safe; the parameters must not be modified after the request was
+ * sent.
+ */
+final class FormParams extends AbstractMap<String, List<String>> {
+  private String[] names;
+  private String[] values;
+  private int pairCount;
+
+  FormParams() {
+    this(16);
+  }
+
+  FormParams(int capacity) {
+    names = new String[capacity];
+    values = new String[capacity];
+  }
+
+  /**
+   * Adds a value of the given parameter; values of a parameter with multiple
+   * values should be added consecutively.
+   */
+  FormParams add(String name, String value) {
+    if (pairCount == names.length) {
+      names = Arrays.copyOf(names, pairCount * 2);
+      values = Arrays.copyOf(values, pairCount * 2);
+    }
+    names[pairCount] = name;
+    values[pairCount] = value;
+    pairCount++;
+    return this;
+  }
+
+  int pairCount() {
+    return pairCount;
+  }
+
+  String nameAt(int index) {
+    return names[index];
+  }
+
+  String valueAt(int index) {
+    return values[index];
+  }
+
+  /**
+   * @return The first value of the given parameter, or null.
+   */
+  String getFirst(String name) {
+    for (int i = 0; i < pairCount; i++) {
+      if (names[i].equals(name)) {
+        return values[i];
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return pairCount == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object name) {
+    return name instanceof String && getFirst((String) name) != null;
+  }
+
+  @Override
+  public List<String> get(Object name) {
+    List<String> parameterValues = null;
+    for (int i = 0; i < pairCount; i++) {
+      if (names[i].equals(name)) {
+        if (parameterValues == null) {
+          parameterValues = new ArrayList<>(1);
+        }
+        parameterValues.add(values[i]);
+      }
+    }
+    return parameterValues;
+  }
+
+  @Override
+  public Set<Map.Entry<String, List<String>>> entrySet() {
+    Map<String, List<String>> grouped = new LinkedHashMap<>();
+    for (int i = 0; i < pairCount; i++) {
+      grouped.computeIfAbsent(names[i], name -> new ArrayList<>(1)).add(values[i]);
+    }
+    return grouped.entrySet();
+  }
+}
@@ -0,0 +1,64 @@
+package com.mollom.client;
+
+/**
+ * Snapshot of the statistics of hedged requests.
+ *
+ * @see MollomClient#getHedgingStatistics()
+ */
+public class HedgingStatistics {
+  private final long requestCount;
+  private final long hedgeCount;
+  private final long hedgeWinCount;
+  private final long hedgeDelay;
+
+  HedgingStatistics(long requestCount, long hedgeCount, long hedgeWinCount, long hedgeDelay) {
+    this.requestCount = requestCount;
+    this.hedgeCount = hedgeCount;
+    this.hedgeWinCount = hedgeWinCount;
+    this.hedgeDelay = hedgeDelay;
+  }
+
+  /**
+   * @return The number of idempotent requests that could be hedged.
+   */
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * @return The number of requests for which a hedge request was sent.
+   */
+  public long getHedgeCount() {
+    return hedgeCount;
+  }
+
+  /**
+   * @return The ratio of hedged requests to all hedgeable requests, or 0
+   *   without requests.
+   */
+  public double getHedgeRate() {
+    return requestCount == 0 ? 0 : (double) hedgeCount / requestCount;
+  }
+
+  /**
+   * @return The number of hedge requests that answered before the original
+   *   request.
+   */
+  public long getHedgeWinCount() {
+    return hedgeWinCount;
+  }
+
+  /**
+   * @return The current delay (ms) after which a hedge request is sent, or -1
+   *   if not enough requests were observed yet.
+   */
+  public long getHedgeDelay() {
+    return hedgeDelay;
+  }
+
+  @Override
+  public String toString() {
+    return "HedgingStatistics[requestCount=" + requestCount + ", hedgeCount=" + hedgeCount
+        + ", hedgeWinCount=" + hedgeWinCount + ", hedgeRate=" + getHedgeRate() + ", hedgeDelay=" + hedgeDelay + "]";
+  }
+}
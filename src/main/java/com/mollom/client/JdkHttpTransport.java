@@ -0,0 +1,35 @@
+package com.mollom.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport based on the JDK HttpClient (java.net.http), which multiplexes
+ * concurrent requests over HTTP/2 connections.
+ *
+ * Requires Java 11 or later; the implementation is contained in the
+ * META-INF/versions/11 directory of the library.
+ */
+class JdkHttpTransport implements Transport {
+
+  /**
+   * @throws MollomConfigurationException Always, since the JDK HttpClient is
+   *   not available before Java 11.
+   */
+  JdkHttpTransport(ResourceUris resourceUris, OAuthSigner signer, int connectionTimeout, int readTimeout,
+      Executor executor) {
+    throw new MollomConfigurationException("The JDK HttpClient transport requires Java 11 or later.");
+  }
+
+  @Override
+  public TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+      Map<String, List<String>> formParams, int timeout) throws IOException {
+    throw new AssertionError("Unreachable; the constructor always throws before Java 11.");
+  }
+
+  @Override
+  public void close() {
+  }
+}
@@ -0,0 +1,200 @@
+package com.mollom.client;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.client.urlconnection.HttpURLConnectionFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.methods.AbortableHttpRequest;
+import org.apache.http.impl.client.RequestWrapper;
+import org.apache.http.protocol.ExecutionContext;
+
+/**
+ * Transport based on a Jersey client.
+ *
+ * Uses the JDK HttpURLConnection by default, or a pool of connections if the
+ * client was created with a pooling connection manager. Parameters are encoded
+ * by a FormEncoder and sent as a byte array, bypassing the form providers of
+ * Jersey.
+ *
+ * Requests can be aborted if the client was created with the connection
+ * factory or the request interceptor of this class. The request interceptor
+ * also limits the read timeout of pooled connections to the time remaining
+ * for the request.
+ */
+class JerseyTransport implements Transport {
+  // The abort handle of the request sent by the current thread, if any; read
+  // by the connection factory and the request interceptor.
+  private static final ThreadLocal<AbortHandle> currentAbort = new ThreadLocal<>();
+  // The read timeout (ms) of the request sent by the current thread, if it
+  // has a timeout; read by the request interceptor.
+  private static final ThreadLocal<Integer> currentReadTimeout = new ThreadLocal<>();
+
+  private final Client client;
+  private final ResourceUris resourceUris;
+  private final OAuthSigner signer;
+  private final int connectionTimeout;
+  private final int readTimeout;
+
+  /**
+   * @param client The Jersey client.
+   * @param resourceUris The resources of the Mollom service.
+   * @param signer Signs all requests with the site's OAuth credentials.
+   * @param connectionTimeout The configured connection timeout (ms), or 0.
+   * @param readTimeout The configured read timeout (ms), or 0.
+   */
+  JerseyTransport(Client client, ResourceUris resourceUris, OAuthSigner signer, int connectionTimeout,
+      int readTimeout) {
+    this.client = client;
+    this.resourceUris = resourceUris;
+    this.signer = signer;
+    this.connectionTimeout = connectionTimeout;
+    this.readTimeout = readTimeout;
+  }
+
+  /**
+   * @return A connection factory for the HttpURLConnection handler, which
+   *   registers how to abort the connection of an abortable request.
+   */
+  static HttpURLConnectionFactory abortableConnections() {
+    return url -> {
+      HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+      AbortHandle abort = currentAbort.get();
+      if (abort != null) {
+        // Closes the socket; a blocked read fails.
+        abort.onAbort(connection::disconnect);
+      }
+      return connection;
+    };
+  }
+
+  /**
+   * @return A request interceptor for the Apache HttpClient handler, which
+   *   limits the read timeout of a request with a timeout, and registers how
+   *   to abort an abortable request and release its pooled connection.
+   */
+  static HttpRequestInterceptor requestInterceptor() {
+    return (request, context) -> {
+      Integer readTimeout = currentReadTimeout.get();
+      if (readTimeout != null) {
+        // The connection is already open at this point, so only reads are
+        // limited; connecting is bounded by the configured connection timeout.
+        // The connection gets the configured read timeout back on its next
+        // request.
+        HttpConnection connection = (HttpConnection) context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+        if (connection != null) {
+          connection.setSocketTimeout(readTimeout);
+        }
+      }
+      AbortHandle abort = currentAbort.get();
+      if (abort != null && request instanceof RequestWrapper) {
+        HttpRequest original = ((RequestWrapper) request).getOriginal();
+        if (original instanceof AbortableHttpRequest) {
+          abort.onAbort(((AbortableHttpRequest) original)::abort);
+        }
+      }
+    };
+  }
+
+  @Override
+  public TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+      Map<String, List<String>> formParams, int timeout) throws IOException {
+    return send(method, path, queryParams, formParams, timeout, null);
+  }
+
+  @Override
+  public TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+      Map<String, List<String>> formParams, int timeout, AbortHandle abort) throws IOException {
+    ResourceUris.Resource resourceUri = resourceUris.get(path);
+    FormEncoder query = FormEncoder.forQuery().addAll(queryParams);
+    FormEncoder body = FormEncoder.forBody().addAll(formParams);
+    String authorization = signer.sign(method, resourceUri.signatureBaseUri, query, body);
+    URI uri = resourceUri.uri;
+    if (query.pairCount() > 0) {
+      uri = URI.create(uri + "?" + query);
+    }
+    WebResource resource = client.resource(uri);
+    if (timeout > 0) {
+      // Only honored by the HttpURLConnection handler; the Apache HttpClient
+      // handler uses the timeouts of its connection parameters.
+      resource.setProperty(ClientConfig.PROPERTY_CONNECT_TIMEOUT, clamp(connectionTimeout, timeout));
+      resource.setProperty(ClientConfig.PROPERTY_READ_TIMEOUT, clamp(readTimeout, timeout));
+    }
+    WebResource.Builder builder = resource
+        .accept(MediaType.APPLICATION_XML)
+        .type(MediaType.APPLICATION_FORM_URLENCODED)
+        .header("Authorization", authorization);
+    if (abort != null) {
+      if (abort.isAborted()) {
+        throw new IOException("Request to Mollom service was aborted.");
+      }
+      currentAbort.set(abort);
+    }
+    if (timeout > 0) {
+      currentReadTimeout.set(clamp(readTimeout, timeout));
+    }
+    try {
+      ClientResponse response;
+      if (formParams != null) {
+        response = builder.method(method, ClientResponse.class, body.toByteArray());
+      } else {
+        response = builder.method(method, ClientResponse.class);
+      }
+      return new Response(response);
+    } catch (ClientHandlerException e) {
+      throw new IOException(e.getMessage(), e);
+    } finally {
+      currentAbort.remove();
+      currentReadTimeout.remove();
+    }
+  }
+
+  @Override
+  public void close() {
+    client.destroy();
+  }
+
+  /**
+   * @return The shorter of both timeouts, where 0 means infinite.
+   */
+  private static int clamp(int configuredTimeout, int timeout) {
+    return configuredTimeout > 0 ? Math.min(configuredTimeout, timeout) : timeout;
+  }
+
+  private static class Response extends TransportResponse {
+    private final ClientResponse response;
+
+    Response(ClientResponse response) {
+      this.response = response;
+    }
+
+    @Override
+    int getStatus() {
+      return response.getStatus();
+    }
+
+    @Override
+    InputStream getBody() {
+      return response.getEntityInputStream();
+    }
+
+    @Override
+    public void close() {
+      response.close();
+    }
+  }
+}
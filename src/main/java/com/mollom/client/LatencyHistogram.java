@@ -0,0 +1,93 @@
+package com.mollom.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of latencies with a relative precision of about 3%.
+ *
+ * Latencies are counted in log-linear buckets (microseconds): each power of two
+ * is divided into 32 linear sub-buckets, like in HdrHistogram. Recording is
+ * allocation-free and lock-free.
+ */
+class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Latencies of 2^37 us (38 hours) and above are counted in the last bucket.
+  private static final int MAX_SHIFT = 31;
+  private static final int BUCKETS = (MAX_SHIFT + 2) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long latencyNanos) {
+    long micros = Math.max(0, latencyNanos / 1000);
+    counts.incrementAndGet(indexOf(micros));
+    sum.addAndGet(micros);
+    long currentMax;
+    while (micros > (currentMax = max.get()) && !max.compareAndSet(currentMax, micros)) {
+      // Retry.
+    }
+  }
+
+  /**
+   * @return The bucket of the given latency (us).
+   */
+  static int indexOf(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+    if (shift > MAX_SHIFT) {
+      return BUCKETS - 1;
+    }
+    return (shift << SUB_BUCKET_BITS) + (int) (micros >>> shift);
+  }
+
+  /**
+   * @return The highest latency (us) counted in the given bucket.
+   */
+  static long highestValueOf(int index) {
+    if (index < SUB_BUCKETS * 2) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long subBucket = index - (shift << SUB_BUCKET_BITS);
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * @return A snapshot of the recorded latencies.
+   */
+  LatencySnapshot getSnapshot() {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    long maxMicros = max.get();
+    double mean = total == 0 ? 0 : (double) sum.get() / total;
+    return new LatencySnapshot(total, mean / 1000,
+        percentile(snapshot, total, 50, maxMicros) / 1000.0,
+        percentile(snapshot, total, 95, maxMicros) / 1000.0,
+        percentile(snapshot, total, 99, maxMicros) / 1000.0,
+        maxMicros / 1000.0);
+  }
+
+  private static long percentile(long[] counts, long total, double percentile, long maxMicros) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(percentile / 100 * total);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(highestValueOf(i), maxMicros);
+      }
+    }
+    return maxMicros;
+  }
+}
@@ -0,0 +1,62 @@
+package com.mollom.client;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Snapshot of the latencies of requests to a Mollom resource.
+ *
+ * All latencies are in milliseconds, with a relative precision of about 3%.
+ *
+ * @see MollomClientMXBean#getLatencies()
+ */
+public class LatencySnapshot {
+  private final long count;
+  private final double mean;
+  private final double p50;
+  private final double p95;
+  private final double p99;
+  private final double max;
+
+  @ConstructorProperties({ "count", "mean", "p50", "p95", "p99", "max" })
+  public LatencySnapshot(long count, double mean, double p50, double p95, double p99, double max) {
+    this.count = count;
+    this.mean = mean;
+    this.p50 = p50;
+    this.p95 = p95;
+    this.p99 = p99;
+    this.max = max;
+  }
+
+  /**
+   * @return The number of recorded requests.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public double getMean() {
+    return mean;
+  }
+
+  public double getP50() {
+    return p50;
+  }
+
+  public double getP95() {
+    return p95;
+  }
+
+  public double getP99() {
+    return p99;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return "LatencySnapshot[count=" + count + ", mean=" + mean + ", p50=" + p50 + ", p95=" + p95 + ", p99=" + p99
+        + ", max=" + max + "]";
+  }
+}
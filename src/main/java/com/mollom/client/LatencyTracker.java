@@ -0,0 +1,62 @@
+package com.mollom.client;
+
+import java.util.Arrays;
+
+/**
+ * Tracks a percentile of the latencies of recent requests.
+ *
+ * Latencies are kept in a ring buffer; the percentile is recomputed after a
+ * number of new samples, so that reading it is cheap.
+ */
+class LatencyTracker {
+  private static final int SAMPLES = 256;
+  private static final int MIN_SAMPLES = 32;
+  private static final int RECOMPUTE_INTERVAL = 32;
+
+  private final double percentile;
+
+  // Guarded by this.
+  private final long[] latencies = new long[SAMPLES];
+  private int index;
+  private int count;
+  private int sinceRecompute;
+
+  // -1 until enough samples were recorded.
+  private volatile long percentileLatency = -1;
+
+  /**
+   * @param percentile The tracked percentile; e.g., 95.
+   */
+  LatencyTracker(double percentile) {
+    this.percentile = percentile;
+  }
+
+  void record(long latencyNanos) {
+    long[] snapshot = null;
+    synchronized (this) {
+      latencies[index] = latencyNanos;
+      index = (index + 1) % SAMPLES;
+      if (count < SAMPLES) {
+        count++;
+      }
+      sinceRecompute++;
+      if (count >= MIN_SAMPLES && sinceRecompute >= RECOMPUTE_INTERVAL) {
+        sinceRecompute = 0;
+        snapshot = Arrays.copyOf(latencies, count);
+      }
+    }
+    if (snapshot != null) {
+      Arrays.sort(snapshot);
+      int rank = (int) Math.ceil(percentile / 100 * snapshot.length) - 1;
+      percentileLatency = snapshot[Math.max(0, Math.min(rank, snapshot.length - 1))];
+    }
+  }
+
+  /**
+   * @return The latency (ns) at the tracked percentile, or -1 if not enough
+   *   latencies were recorded yet.
+   */
+  long getPercentileLatency() {
+    return percentileLatency;
+  }
+}
@@ -0,0 +1,53 @@
+package com.mollom.client;
+
+import java.util.List;
+
+/**
+ * A single page of a list response.
+ *
+ * @see http://mollom.com/api#response-list
+ */
+class ListPage<T> {
+  private final List<T> items;
+  private final int count;
+  private final int offset;
+  private final int total;
+
+  /**
+   * @param items The items on this page.
+   * @param count The listCount response parameter, or -1 if not returned.
+   * @param offset The listOffset response parameter, or -1 if not returned.
+   * @param total The listTotal response parameter, or -1 if not returned.
+   */
+  ListPage(List<T> items, int count, int offset, int total) {
+    this.items = items;
+    this.count = count;
+    this.offset = offset;
+    this.total = total;
+  }
+
+  List<T> getItems() {
+    return items;
+  }
+
+  /**
+   * @return The number of items on this page.
+   */
+  int getCount() {
+    return count != -1 ? count : items.size();
+  }
+
+  /**
+   * @return The offset of the first item on this page, or -1 if unknown.
+   */
+  int getOffset() {
+    return offset;
+  }
+
+  /**
+   * @return The total number of items of all pages, or -1 if unknown.
+   */
+  int getTotal() {
+    return total;
+  }
+}
@@ -0,0 +1,69 @@
+package com.mollom.client;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local mirror of the blacklist of a site.
+ *
+ * Allows to classify content that matches a custom blacklist entry without a
+ * request to the Mollom service. Changes are published atomically by
+ * recompiling the matcher; lookups never block.
+ */
+class LocalBlacklist {
+  // Guarded by this; entries are copies, so that later modifications of the
+  // caller's objects do not leak into the mirror.
+  private final Map<String, BlacklistEntry> entries = new LinkedHashMap<>();
+
+  private volatile BlacklistMatcher matcher = new BlacklistMatcher(Collections.<BlacklistEntry>emptyList());
+
+  /**
+   * @return The first enabled blacklist entry matching the content, or null.
+   */
+  BlacklistEntry match(Content content) {
+    return matcher.match(content);
+  }
+
+  /**
+   * Replaces all entries of the mirror.
+   */
+  synchronized void replaceAll(Collection<BlacklistEntry> blacklist) {
+    entries.clear();
+    for (BlacklistEntry entry : blacklist) {
+      entries.put(entry.getId(), copyOf(entry));
+    }
+    matcher = new BlacklistMatcher(entries.values());
+  }
+
+  /**
+   * Adds or updates a saved entry.
+   */
+  synchronized void put(BlacklistEntry entry) {
+    entries.put(entry.getId(), copyOf(entry));
+    matcher = new BlacklistMatcher(entries.values());
+  }
+
+  /**
+   * Removes a deleted entry.
+   */
+  synchronized void remove(BlacklistEntry entry) {
+    if (entries.remove(entry.getId()) != null) {
+      matcher = new BlacklistMatcher(entries.values());
+    }
+  }
+
+  private static BlacklistEntry copyOf(BlacklistEntry entry) {
+    BlacklistEntry copy = new BlacklistEntry();
+    copy.setId(entry.getId());
+    copy.setCreated(entry.getCreated());
+    copy.setStatus(entry.isEnabled() ? 1 : 0);
+    copy.setValue(entry.getValue());
+    copy.setReason(entry.getReason());
+    copy.setContext(entry.getContext());
+    copy.setMatch(entry.getMatch());
+    copy.setNote(entry.getNote());
+    return copy;
+  }
+}
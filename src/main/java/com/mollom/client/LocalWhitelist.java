@@ -0,0 +1,110 @@
+package com.mollom.client;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Local mirror of the whitelist of a site.
+ *
+ * Enabled entries are indexed by context in hash maps, so that content of a
+ * whitelisted author is recognized in constant time without a request to the
+ * Mollom service. Changes are published atomically by swapping the index;
+ * lookups never block.
+ */
+class LocalWhitelist {
+  // Guarded by this; entries are copies, so that later modifications of the
+  // caller's objects do not leak into the mirror.
+  private final Map<String, WhitelistEntry> entries = new LinkedHashMap<>();
+
+  // Immutable; maps each context to the lowercase entry values.
+  private volatile Map<Context, Map<String, WhitelistEntry>> index = Collections.emptyMap();
+
+  /**
+   * @return The enabled whitelist entry matching the content author, or null.
+   */
+  WhitelistEntry match(Content content) {
+    Map<Context, Map<String, WhitelistEntry>> index = this.index;
+    if (index.isEmpty()) {
+      return null;
+    }
+    WhitelistEntry entry = lookup(index, Context.AUTHORID, content.getAuthorId());
+    if (entry == null) {
+      entry = lookup(index, Context.AUTHORIP, content.getAuthorIp());
+    }
+    if (entry == null) {
+      entry = lookup(index, Context.AUTHORNAME, content.getAuthorName());
+    }
+    if (entry == null) {
+      entry = lookup(index, Context.AUTHORMAIL, content.getAuthorMail());
+    }
+    return entry;
+  }
+
+  /**
+   * Replaces all entries of the mirror.
+   */
+  synchronized void replaceAll(Collection<WhitelistEntry> whitelist) {
+    entries.clear();
+    for (WhitelistEntry entry : whitelist) {
+      entries.put(entry.getId(), copyOf(entry));
+    }
+    reindex();
+  }
+
+  /**
+   * Adds or updates a saved entry.
+   */
+  synchronized void put(WhitelistEntry entry) {
+    entries.put(entry.getId(), copyOf(entry));
+    reindex();
+  }
+
+  /**
+   * Removes a deleted entry.
+   */
+  synchronized void remove(WhitelistEntry entry) {
+    if (entries.remove(entry.getId()) != null) {
+      reindex();
+    }
+  }
+
+  private void reindex() {
+    Map<Context, Map<String, WhitelistEntry>> index = new EnumMap<>(Context.class);
+    for (WhitelistEntry entry : entries.values()) {
+      if (!entry.isEnabled() || entry.getValue() == null) {
+        continue;
+      }
+      Map<String, WhitelistEntry> values = index.get(entry.getContext());
+      if (values == null) {
+        values = new HashMap<>();
+        index.put(entry.getContext(), values);
+      }
+      values.put(entry.getValue().toLowerCase(Locale.ROOT), entry);
+    }
+    this.index = index;
+  }
+
+  private static WhitelistEntry lookup(Map<Context, Map<String, WhitelistEntry>> index, Context context, String value) {
+    if (value == null) {
+      return null;
+    }
+    Map<String, WhitelistEntry> values = index.get(context);
+    return values != null ? values.get(value.toLowerCase(Locale.ROOT)) : null;
+  }
+
+  private static WhitelistEntry copyOf(WhitelistEntry entry) {
+    WhitelistEntry copy = new WhitelistEntry();
+    copy.setId(entry.getId());
+    copy.setCreated(entry.getCreated());
+    copy.setStatus(entry.isEnabled() ? 1 : 0);
+    copy.setValue(entry.getValue());
+    copy.setContext(entry.getContext());
+    copy.setNote(entry.getNote());
+    return copy;
+  }
+}
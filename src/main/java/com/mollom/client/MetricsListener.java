@@ -0,0 +1,38 @@
+package com.mollom.client;
+
+/**
+ * Receives instrumentation events of a MollomClient; e.g., to forward them to
+ * a metrics library.
+ *
+ * Listeners are called synchronously on the thread of the request; they
+ * should return quickly and must be thread-safe.
+ *
+ * @see MollomClientBuilder#withMetricsListener(MetricsListener)
+ */
+public interface MetricsListener {
+
+  /**
+   * Called after each attempt of a request to Mollom.
+   *
+   * @param operation The type of request.
+   * @param resource The Mollom resource; one of content, captcha, feedback,
+   *   blacklist, whitelist.
+   * @param status The HTTP status of the response, or -1 if Mollom could not be
+   *   reached.
+   * @param latencyNanos The time until the response was received.
+   * @param bytesSent The size of the request body.
+   */
+  void onRequest(Operation operation, String resource, int status, long latencyNanos, long bytesSent);
+
+  /**
+   * Called before a request to Mollom is retried.
+   */
+  void onRetry(Operation operation);
+
+  /**
+   * Called after content was classified, either by Mollom or locally.
+   *
+   * @param spamClassification One of ham, spam, unsure.
+   */
+  void onClassification(String spamClassification);
+}
@@ -0,0 +1,288 @@
+package com.mollom.client;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks a stream of contents with backpressure; the engine of the
+ * ModerationProcessor, independent of java.util.concurrent.Flow.
+ *
+ * Contents are requested from upstream only while fewer than maxInFlight
+ * contents are being checked or waiting to be emitted, so that a slow Mollom
+ * endpoint or a slow downstream consumer throttle the upstream publisher.
+ * Each content is checked asynchronously by the client and emitted as a
+ * ContentCheckResult; a MollomException becomes the result of its content
+ * instead of failing the stream, as does a check rejected by the executor (as
+ * a MollomNoResponseException). Other exceptions, upstream errors, and
+ * protocol violations fail the stream immediately.
+ *
+ * Downstream signals are serialized by a drain loop; upstream and downstream
+ * callbacks are invoked outside of the lock. Thread-safe.
+ */
+class ModerationPipeline {
+
+  /**
+   * The subscription to the upstream publisher.
+   */
+  interface Upstream {
+    void request(long count);
+
+    void cancel();
+  }
+
+  /**
+   * The downstream subscriber.
+   */
+  interface Downstream {
+    void onNext(ContentCheckResult result);
+
+    void onError(Throwable error);
+
+    void onComplete();
+  }
+
+  private final MollomClient client;
+  private final int maxInFlight;
+  private final boolean ordered;
+  // Work-in-progress counter of the drain loop.
+  private final AtomicInteger wip = new AtomicInteger();
+
+  // All fields below are guarded by this.
+  private Upstream upstream;
+  private Downstream downstream;
+  // Contents in arrival order if ordered; otherwise, checked contents in
+  // completion order.
+  private final Queue<Slot> queue = new ArrayDeque<>();
+  // Contents received but not emitted yet.
+  private int held;
+  // Contents requested from upstream but not received yet.
+  private long outstanding;
+  // Results requested by downstream but not emitted yet.
+  private long demand;
+  private boolean upstreamDone;
+  private Throwable failure;
+  private boolean terminated;
+
+  /**
+   * @param maxInFlight The maximum number of contents being checked or waiting
+   *   to be emitted.
+   * @param ordered Whether results are emitted in the order of the contents;
+   *   otherwise, in the order the checks complete.
+   */
+  ModerationPipeline(MollomClient client, int maxInFlight, boolean ordered) {
+    if (maxInFlight < 1) {
+      throw new MollomIllegalUsageException("The in-flight limit must be at least 1.");
+    }
+    this.client = client;
+    this.maxInFlight = maxInFlight;
+    this.ordered = ordered;
+  }
+
+  /**
+   * Attaches the single downstream subscriber; no signals are emitted before.
+   */
+  void attach(Downstream downstream) {
+    synchronized (this) {
+      this.downstream = downstream;
+    }
+    drain();
+  }
+
+  void onSubscribe(Upstream upstream) {
+    boolean duplicate;
+    synchronized (this) {
+      duplicate = this.upstream != null || terminated;
+      if (!duplicate) {
+        this.upstream = upstream;
+      }
+    }
+    if (duplicate) {
+      upstream.cancel();
+      return;
+    }
+    drain();
+  }
+
+  void onNext(Content content) {
+    Slot slot = new Slot();
+    synchronized (this) {
+      if (terminated || upstreamDone) {
+        return;
+      }
+      if (outstanding == 0) {
+        fail(new IllegalStateException("More contents were published than requested."));
+        slot = null;
+      } else {
+        outstanding--;
+        held++;
+        if (ordered) {
+          queue.add(slot);
+        }
+      }
+    }
+    if (slot == null) {
+      drain();
+      return;
+    }
+    check(content, slot);
+  }
+
+  private void check(Content content, Slot slot) {
+    client.checkContentAsync(content).whenComplete((checked, e) -> {
+      synchronized (this) {
+        if (e == null) {
+          slot.result = new ContentCheckResult(content, null);
+        } else if (e instanceof MollomException) {
+          slot.result = new ContentCheckResult(content, (MollomException) e);
+        } else if (e instanceof RejectedExecutionException) {
+          // E.g., a bounded executor whose queue is smaller than maxInFlight;
+          // only this content is not checked.
+          slot.result = new ContentCheckResult(content,
+              new MollomNoResponseException("The executor rejected the check: " + e.getMessage()));
+        } else {
+          fail(e);
+        }
+        if (!ordered && slot.result != null) {
+          queue.add(slot);
+        }
+      }
+      drain();
+    });
+  }
+
+  void onError(Throwable error) {
+    synchronized (this) {
+      if (!upstreamDone) {
+        upstreamDone = true;
+        failure = failure != null ? failure : error;
+      }
+    }
+    drain();
+  }
+
+  void onComplete() {
+    synchronized (this) {
+      upstreamDone = true;
+    }
+    drain();
+  }
+
+  /**
+   * Adds downstream demand.
+   */
+  void request(long count) {
+    synchronized (this) {
+      if (count <= 0) {
+        fail(new IllegalArgumentException("Requested " + count + " results; must be positive."));
+      } else {
+        demand = demand + count < 0 ? Long.MAX_VALUE : demand + count;
+      }
+    }
+    drain();
+  }
+
+  /**
+   * Cancels the stream; checks in flight complete, but are not emitted.
+   */
+  void cancel() {
+    Upstream cancelled;
+    synchronized (this) {
+      if (terminated) {
+        return;
+      }
+      terminated = true;
+      queue.clear();
+      cancelled = upstream;
+    }
+    if (cancelled != null) {
+      cancelled.cancel();
+    }
+  }
+
+  /**
+   * Fails the stream, unless failed already; called with the lock held.
+   */
+  private void fail(Throwable error) {
+    if (failure == null) {
+      failure = error;
+    }
+    upstreamDone = true;
+  }
+
+  /**
+   * Emits checked contents, requests contents from upstream, and signals
+   * termination, as far as possible; only one thread drains at a time.
+   */
+  private void drain() {
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    while (true) {
+      while (true) {
+        Downstream target;
+        ContentCheckResult result = null;
+        Upstream requestFrom = null;
+        long requestCount = 0;
+        Upstream cancelFrom = null;
+        Throwable error = null;
+        boolean complete = false;
+        synchronized (this) {
+          target = downstream;
+          if (terminated || target == null) {
+            break;
+          }
+          if (failure != null) {
+            // Fail immediately, without emitting the checked contents.
+            terminated = true;
+            error = failure;
+            cancelFrom = upstream;
+            queue.clear();
+          } else if (demand > 0 && !queue.isEmpty() && queue.peek().result != null) {
+            result = queue.poll().result;
+            demand--;
+            held--;
+          } else if (upstreamDone && held == 0) {
+            terminated = true;
+            complete = true;
+          }
+          long capacity = maxInFlight - held - outstanding;
+          if (!terminated && !upstreamDone && upstream != null && capacity > 0) {
+            outstanding += capacity;
+            requestFrom = upstream;
+            requestCount = capacity;
+          }
+        }
+        if (requestFrom != null) {
+          requestFrom.request(requestCount);
+        }
+        if (result != null) {
+          target.onNext(result);
+          continue;
+        }
+        if (error != null) {
+          if (cancelFrom != null) {
+            cancelFrom.cancel();
+          }
+          target.onError(error);
+        } else if (complete) {
+          target.onComplete();
+        }
+        break;
+      }
+      missed = wip.addAndGet(-missed);
+      if (missed == 0) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * A received content, and its result once checked.
+   */
+  private static class Slot {
+    ContentCheckResult result;
+  }
+}
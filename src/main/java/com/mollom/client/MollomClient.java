@@ -1,50 +1,108 @@
 package com.mollom.client;
 
-import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientHandlerException;
-import com.sun.jersey.api.client.ClientResponse;
-import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.core.util.MultivaluedMapImpl;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.ws.rs.core.MediaType;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.ws.rs.core.MultivaluedMap;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
  * Primary interaction point with all of the Mollom services.
  */
 public class MollomClient {
   private final static Logger logger = Logger.getLogger("com.mollom.client.MollomClient");
-  private final Client client;
-  private final int retries;
+  private final static int LOCAL_LIST_PAGE_SIZE = 1000;
+  // The parameter values of all checks, by ordinal; Check.toString() would
+  // allocate a lowercase copy per request.
+  private final static String[] CHECK_NAMES = checkNames();
+  // Checks that are fully answered by a whitelist match.
+  private final static EnumSet<Check> WHITELIST_CHECKS = EnumSet.of(Check.SPAM, Check.PROFANITY);
+  private final Transport transport;
+  private final Map<Operation, RetryPolicy> retryPolicies;
+  // Optional limit of the rate of retries; null if unlimited.
+  private final RetryBudget retryBudget;
 
-  private final Unmarshaller unmarshaller;
-  private final DocumentBuilder documentBuilder;
+  // Executes asynchronous requests; defaultExecutor is only set if owned by
+  // this client.
+  private final Executor executor;
+  private final ExecutorService defaultExecutor;
 
-  private final WebResource contentResource;
-  private final WebResource captchaResource;
-  private final WebResource feedbackResource;
-  private final WebResource blacklistResource;
-  private final WebResource whitelistResource;
+  private final ResponseParser parser;
+
+  // Optional local mirrors of the site's blacklist and whitelist; null if
+  // disabled.
+  private final LocalBlacklist localBlacklist;
+  private final LocalWhitelist localWhitelist;
+
+  // Optional cache of classifications of new content; null if disabled.
+  private final ClassificationCache classificationCache;
+
+  // In-flight content checks by fingerprint, if request coalescing is enabled;
+  // null if disabled.
+  private final ConcurrentMap<ContentFingerprint, CompletableFuture<Content>> inFlightChecks;
+
+  // Shared pool of the HTTP connections of all resources, if connection
+  // pooling is enabled; null if disabled.
+  private final ConnectionPool connectionPool;
+
+  // Optional circuit breaker of the Mollom endpoint; null if disabled.
+  private final CircuitBreaker circuitBreaker;
+
+  // Sends hedged idempotent requests, if hedging is enabled; null if disabled.
+  private final RequestHedger requestHedger;
+
+  // Sends feedback and stored/deleted notifications in the background, if
+  // enabled; null if disabled.
+  private final NotificationQueue notificationQueue;
+  private final int notificationQueueDrainTimeout;
+
+  // Journals feedback and stored/deleted notifications until Mollom
+  // acknowledged them, if enabled; null if disabled.
+  private final Outbox outbox;
+
+  // Classifies content locally while Mollom is unreachable, if enabled; null
+  // if disabled.
+  private final FallbackClassifier fallbackClassifier;
+
+  // Completed once the API keys are verified; completed at once unless the
+  // verification is deferred.
+  private final CompletableFuture<Void> verification;
+  // Runs the deferred verification; null if not deferred.
+  private volatile Thread verificationThread;
+
+  // Latencies and counters of all requests.
+  private final ClientMetrics metrics;
+
+  // Name of the registered management bean; null if JMX is not enabled.
+  private ObjectName objectName;
+
+  // Resource paths, relative to the API root.
+  private final String blacklistPath;
+  private final String whitelistPath;
+
+  // Deadline of all calls of this instance; null if none.
+  private final Deadline deadline;
 
   /**
    * Constructs a new MollomClient instance.
@@ -52,140 +110,417 @@ public class MollomClient {
    * MollomClient instances are expensive resources. It is recommended to share
    * a single MollomClient instance between multiple threads. Requests and
    * responses are guaranteed to be thread-safe.
+   *
+   * If no executor is given, asynchronous requests are executed on a cached
+   * thread pool that is shut down when the client is destroyed.
    */
-  MollomClient(Client client, WebResource contentResource, WebResource captchaResource,
-      WebResource feedbackResource, WebResource blacklistResource,
-      WebResource whitelistResource, int retries) {
-    this.client = client;
-    this.contentResource = contentResource;
-    this.captchaResource = captchaResource;
-    this.feedbackResource = feedbackResource;
-    this.blacklistResource = blacklistResource;
-    this.whitelistResource = whitelistResource;
-
-    this.retries = retries;
+  MollomClient(ClientOptions options) {
+    this.transport = options.transport;
+    this.blacklistPath = "blacklist/" + options.publicKey;
+    this.whitelistPath = "whitelist/" + options.publicKey;
 
-    try {
-      JAXBContext jaxbContext = JAXBContext.newInstance(Content.class, Captcha.class, BlacklistEntry.class, WhitelistEntry.class);
-      this.unmarshaller = jaxbContext.createUnmarshaller();
+    this.retryPolicies = options.retryPolicies;
+    this.retryBudget = options.retryBudget;
 
-      DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-      this.documentBuilder = documentBuilderFactory.newDocumentBuilder();
-    } catch (JAXBException | ParserConfigurationException e) {
-      throw new MollomConfigurationException("Failed to initialize MollomClient.", e);
+    if (options.executor == null) {
+      this.defaultExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("mollom-client"));
+      this.executor = defaultExecutor;
+    } else {
+      this.defaultExecutor = null;
+      this.executor = options.executor;
     }
+
+    this.parser = new ResponseParser();
+    this.localBlacklist = options.localBlacklist ? new LocalBlacklist() : null;
+    this.localWhitelist = options.localWhitelist ? new LocalWhitelist() : null;
+    this.classificationCache = options.classificationCache;
+    this.inFlightChecks = options.requestCoalescing ? new ConcurrentHashMap<ContentFingerprint, CompletableFuture<Content>>() : null;
+    this.connectionPool = options.connectionPool;
+    this.circuitBreaker = options.circuitBreaker;
+    this.requestHedger = options.hedgingPercentile > 0 ? new RequestHedger(options.hedgingPercentile, options.attemptTimeout) : null;
+    this.metrics = new ClientMetrics(options.metricsListener);
+    this.notificationQueue = options.notificationQueue;
+    this.notificationQueueDrainTimeout = options.notificationQueueDrainTimeout;
+    this.outbox = options.outbox;
+    this.fallbackClassifier = options.fallbackClassifier ? new FallbackClassifier() : null;
+    this.verification = options.verification != null ? options.verification : CompletableFuture.<Void>completedFuture(null);
+    this.deadline = null;
+  }
+
+  /**
+   * Constructs a view of the given client with a deadline for all calls.
+   */
+  private MollomClient(MollomClient client, Deadline deadline) {
+    this.transport = client.transport;
+    this.blacklistPath = client.blacklistPath;
+    this.whitelistPath = client.whitelistPath;
+    this.retryPolicies = client.retryPolicies;
+    this.retryBudget = client.retryBudget;
+    this.defaultExecutor = client.defaultExecutor;
+    this.executor = client.executor;
+    this.parser = client.parser;
+    this.localBlacklist = client.localBlacklist;
+    this.localWhitelist = client.localWhitelist;
+    this.classificationCache = client.classificationCache;
+    this.inFlightChecks = client.inFlightChecks;
+    this.connectionPool = client.connectionPool;
+    this.circuitBreaker = client.circuitBreaker;
+    this.requestHedger = client.requestHedger;
+    this.metrics = client.metrics;
+    this.notificationQueue = client.notificationQueue;
+    this.notificationQueueDrainTimeout = client.notificationQueueDrainTimeout;
+    this.outbox = client.outbox;
+    this.fallbackClassifier = client.fallbackClassifier;
+    this.verification = client.verification;
+    this.verificationThread = client.verificationThread;
+    this.objectName = client.objectName;
+    this.deadline = deadline;
+  }
+
+  /**
+   * Returns a view of this client whose calls must complete before the given
+   * deadline.
+   *
+   * The deadline spans all retries of a call: no retry is attempted after the
+   * deadline has passed, and the timeouts of each attempt are shortened to the
+   * remaining time. Calls that do not complete in time throw a
+   * MollomDeadlineExceededException.
+   *
+   * The view shares all resources with this client; it is cheap to create, e.g.
+   * for every incoming request, and must not be destroyed separately.
+   *
+   * Example:
+   *   client.withDeadline(Deadline.after(500, TimeUnit.MILLISECONDS)).checkContent(content);
+   */
+  public MollomClient withDeadline(Deadline deadline) {
+    return new MollomClient(this, deadline);
   }
 
   /**
    * Checks content.
    *
    * Injects the Mollom classification scores into the given Content object.
+   *
+   * If the local whitelist is enabled and only SPAM and/or PROFANITY checks are
+   * requested, content of a whitelisted author is classified as ham and not
+   * profane with the reason "whitelist" without contacting Mollom.
+   *
+   * If the local blacklist is enabled and only a SPAM check is requested,
+   * content matching an enabled blacklist entry is classified as spam with the
+   * reason "blacklist" without contacting Mollom.
+   *
+   * Locally classified content has no ID.
+   *
+   * If the classification cache is enabled, the classification of a new
+   * content that equals a recently checked content is taken from the cache
+   * without contacting Mollom. Like locally classified content, it has no ID:
+   * the content ID of the cached submission identifies that submission only,
+   * and must not receive the stored state or feedback of another one.
+   *
+   * If request coalescing is enabled, concurrent checks of equal content
+   * (including rechecks of the same content ID) share a single request, even
+   * if posted from different IP addresses. Only the content that sent the
+   * request gets the new content ID; the others share its classification, and
+   * have no ID, like cached classifications.
+   *
+   * If the fallback classifier is enabled and Mollom cannot be reached, a
+   * content with a SPAM check is classified locally with the reason "fallback"
+   * instead of throwing MollomNoResponseException; it has no ID either.
+   *
+   * @see MollomClientBuilder#withFallbackClassifier(boolean)
    */
   public void checkContent(Content content)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    MultivaluedMap<String, String> postParams = new MultivaluedMapImpl();
+    classifyContent(content);
+    metrics.recordClassification(content.getSpamClassification());
+  }
+
+  /**
+   * Classifies content locally or by Mollom.
+   *
+   * @see #checkContent(Content)
+   */
+  private void classifyContent(Content content)
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    if (fallbackClassifier != null && content.getId() == null && content.getStored() == -1) {
+      fallbackClassifier.recordPost(content);
+    }
+
+    // Like Mollom, check the whitelist first; a positive match skips all other
+    // checks, including the blacklist.
+    if (localWhitelist != null && isWhitelistCheckOnly(content) && localWhitelist.match(content) != null) {
+      for (Check check : content.getChecks()) {
+        if (check == Check.SPAM) {
+          content.setSpamClassification("ham");
+          content.setSpamScore(0.0);
+        } else if (check == Check.PROFANITY) {
+          content.setProfanityScore(0.0);
+        }
+      }
+      content.setReason("whitelist");
+      return;
+    }
+    if (localBlacklist != null && isSpamCheckOnly(content) && localBlacklist.match(content) != null) {
+      content.setSpamClassification("spam");
+      content.setSpamScore(1.0);
+      content.setReason("blacklist");
+      return;
+    }
+
+    ContentFingerprint fingerprint = null;
+    if (classificationCache != null && isCacheable(content)) {
+      fingerprint = ContentFingerprint.of(content);
+      Content cachedContent = classificationCache.get(fingerprint);
+      if (cachedContent != null) {
+        // The content ID of the cached submission is not shared.
+        mergeClassification(content, cachedContent);
+        return;
+      }
+    }
+
+    Content returnedContent;
+    try {
+      if (inFlightChecks != null) {
+        // Bots typically post the same payload from many IP addresses at once.
+        returnedContent = requestContentCheckCoalesced(content, ContentFingerprint.of(content, false));
+      } else {
+        returnedContent = requestContentCheck(content);
+      }
+    } catch (MollomNoResponseException e) {
+      if (fallbackClassifier == null || !isSpamCheckRequested(content)) {
+        throw e;
+      }
+      // Not cached; Mollom classifies the content once it is reachable again.
+      logger.log(Level.FINE, "Mollom service is unreachable; classified content locally.", e);
+      fallbackClassifier.classify(content, localBlacklist, localWhitelist);
+      metrics.recordFallback();
+      return;
+    }
+    mergeClassification(content, returnedContent);
+
+    if (fingerprint != null) {
+      classificationCache.put(fingerprint, returnedContent);
+    }
+  }
+
+  /**
+   * Sends the content to Mollom to be checked, and sets the content ID
+   * assigned by Mollom.
+   *
+   * @return The Mollom classification, parsed into a new Content object.
+   */
+  private Content requestContentCheck(Content content)
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    FormParams postParams = contentParams(content);
+
+    // If the Content has an ID already (subsequent post after e.g. previewing
+    // the content or asking the user to solve a CAPTCHA), re-check the content.
+    TransportResponse response;
+    if (content.getId() == null) { // Check new content
+      response = request(Operation.CHECK_CONTENT, "POST", "content", postParams);
+    } else { // Recheck existing content
+      response = request(Operation.CHECK_CONTENT, "POST", "content/" + content.getId(), postParams);
+    }
+
+    // Parse the response into a new Content object.
+    Content returnedContent = parseBody(response, "content", Content.class);
+    content.setId(returnedContent.getId());
+    return returnedContent;
+  }
+
+  /**
+   * @return The form parameters of a request to check the given content.
+   */
+  static FormParams contentParams(Content content) {
+    FormParams postParams = new FormParams();
     if (content.getAuthorIp() != null) {
-      postParams.putSingle("authorIp", content.getAuthorIp());
+      postParams.add("authorIp", content.getAuthorIp());
     }
     if (content.getAuthorId() != null) {
-      postParams.putSingle("authorId", content.getAuthorId());
+      postParams.add("authorId", content.getAuthorId());
     }
     if (content.getAuthorOpenIds() != null) {
-      // Exception: authorOpenID is the only API parameter that accepts multiple
-      // values as a space-separated list.
-      String openIds = "";
-      for (String authorOpenId : content.getAuthorOpenIds()) {
-        openIds += authorOpenId += " ";
-      }
-      postParams.putSingle("authorOpenid", openIds);
+      postParams.add("authorOpenid", joinOpenIds(content.getAuthorOpenIds()));
     }
     if (content.getAuthorName() != null) {
-      postParams.putSingle("authorName", content.getAuthorName());
+      postParams.add("authorName", content.getAuthorName());
     }
     if (content.getAuthorMail() != null) {
-      postParams.putSingle("authorMail", content.getAuthorMail());
+      postParams.add("authorMail", content.getAuthorMail());
     }
     if (content.getAuthorUrl() != null) {
-      postParams.putSingle("authorUrl", content.getAuthorUrl());
+      postParams.add("authorUrl", content.getAuthorUrl());
     }
     if (content.getHoneypot() != null) {
-      postParams.putSingle("honeypot", content.getHoneypot());
+      postParams.add("honeypot", content.getHoneypot());
     }
     if (content.getPostTitle() != null) {
-      postParams.putSingle("postTitle", content.getPostTitle());
+      postParams.add("postTitle", content.getPostTitle());
     }
     if (content.getPostBody() != null) {
-      postParams.putSingle("postBody", content.getPostBody());
+      postParams.add("postBody", content.getPostBody());
     }
     if (content.getContextUrl() != null) {
-      postParams.putSingle("contextUrl", content.getContextUrl());
+      postParams.add("contextUrl", content.getContextUrl());
     }
     if (content.getContextTitle() != null) {
-      postParams.putSingle("contextTitle", content.getContextTitle());
+      postParams.add("contextTitle", content.getContextTitle());
     }
 
     // Don't bother sending anything for the default CONTENT, since Mollom assumes that anyways
     if (content.getType() != null && content.getType() != ContentType.CONTENT) {
-      postParams.putSingle("type", content.getType().toString());
+      postParams.add("type", content.getType().toString());
     }
 
     if (content.getChecks() != null) {
-      List<String> checks = new ArrayList<>();
       for (Check check : content.getChecks()) {
-        checks.add(check.toString());
+        postParams.add("checks", CHECK_NAMES[check.ordinal()]);
       }
-      postParams.put("checks", checks);
     }
-    List<Check> requestedChecks = Arrays.asList(content.getChecks());
-    if (requestedChecks.contains(Check.SPAM)) {
+    if (isCheckRequested(content, Check.SPAM)) {
       if (!content.isAllowUnsure()) {
-        postParams.putSingle("unsure", "0");
+        postParams.add("unsure", "0");
       }
       if (content.getStrictness() != Strictness.NORMAL) {
-        postParams.putSingle("strictness", content.getStrictness().toString());
+        postParams.add("strictness", content.getStrictness().toString());
       }
     }
 
     // Only send the stored parameter after the content was stored.
     // @see Content.setStored()
     if (content.getStored() != -1) {
-      postParams.putSingle("stored", Integer.toString(content.getStored()));
+      postParams.add("stored", Integer.toString(content.getStored()));
     }
     if (content.getUrl() != null) {
-      postParams.putSingle("url", content.getUrl());
+      postParams.add("url", content.getUrl());
     }
+    return postParams;
+  }
 
-    // If the Content has an ID already (subsequent post after e.g. previewing
-    // the content or asking the user to solve a CAPTCHA), re-check the content.
-    ClientResponse response;
-    if (content.getId() == null) { // Check new content
-      response = request("POST", contentResource, postParams);
-    } else { // Recheck existing content
-      response = request("POST", contentResource.path(content.getId()), postParams);
+  /**
+   * @return The given OpenIDs as a space-separated list.
+   */
+  private static String joinOpenIds(String[] openIds) {
+    // Exception: authorOpenID is the only API parameter that accepts multiple
+    // values as a space-separated list.
+    StringBuilder joined = new StringBuilder();
+    for (String openId : openIds) {
+      if (joined.length() > 0) {
+        joined.append(' ');
+      }
+      joined.append(openId);
     }
+    return joined.toString();
+  }
 
-    // Parse the response into a new Content object.
-    Content returnedContent = parseBody(response.getEntity(String.class), "content", Content.class);
+  private static String[] checkNames() {
+    Check[] checks = Check.values();
+    String[] names = new String[checks.length];
+    for (Check check : checks) {
+      names[check.ordinal()] = check.toString();
+    }
+    return names;
+  }
 
-    // Merge classification results into the original Content object.
-    content.setId(returnedContent.getId());
+  /**
+   * Sends the content to Mollom to be checked, unless an equal content is being
+   * checked already; in that case, waits for and shares its classification,
+   * but not its content ID.
+   *
+   * @return The Mollom classification, parsed into a new Content object.
+   */
+  private Content requestContentCheckCoalesced(Content content, ContentFingerprint fingerprint)
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    CompletableFuture<Content> check = new CompletableFuture<>();
+    CompletableFuture<Content> inFlightCheck = inFlightChecks.putIfAbsent(fingerprint, check);
+    if (inFlightCheck != null) {
+      return awaitRequest(inFlightCheck);
+    }
+    try {
+      Content returnedContent = requestContentCheck(content);
+      check.complete(returnedContent);
+      return returnedContent;
+    } catch (MollomRequestException | MollomUnexpectedResponseException | MollomNoResponseException | RuntimeException e) {
+      check.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlightChecks.remove(fingerprint, check);
+    }
+  }
+
+  /**
+   * Merges classification results into the original Content object; the
+   * content ID is not merged.
+   */
+  private static void mergeClassification(Content content, Content returnedContent) {
     content.setReason(returnedContent.getReason());
 
-    if (requestedChecks.contains(Check.SPAM)) {
+    if (isCheckRequested(content, Check.SPAM)) {
       content.setSpamClassification(returnedContent.getSpamClassification());
       content.setSpamScore(returnedContent.getSpamScore());
     }
-    if (requestedChecks.contains(Check.QUALITY)) {
+    if (isCheckRequested(content, Check.QUALITY)) {
       content.setQualityScore(returnedContent.getQualityScore());
     }
-    if (requestedChecks.contains(Check.PROFANITY)) {
+    if (isCheckRequested(content, Check.PROFANITY)) {
       content.setProfanityScore(returnedContent.getProfanityScore());
     }
-    if (requestedChecks.contains(Check.LANGUAGE)) {
+    if (isCheckRequested(content, Check.LANGUAGE)) {
       content.setLanguages(returnedContent.getLanguages());
     }
   }
 
+  /**
+   * Checks content asynchronously.
+   *
+   * @return A future completed with the given Content object after the Mollom
+   *   classification scores have been injected.
+   *
+   * @see MollomClient#checkContent(Content)
+   */
+  public CompletableFuture<Content> checkContentAsync(Content content) {
+    return async(() -> {
+      checkContent(content);
+      return content;
+    });
+  }
+
+  /**
+   * Checks many contents; e.g., in import or backfill jobs.
+   *
+   * @see MollomClient#checkContents(Collection, int, CheckProgressListener)
+   */
+  public List<ContentCheckResult> checkContents(Collection<Content> contents, int parallelism) {
+    return checkContents(contents, parallelism, null);
+  }
+
+  /**
+   * Checks many contents; e.g., in import or backfill jobs.
+   *
+   * Each content is checked like by checkContent(), with up to the given number
+   * of checks in flight, and the classification is injected into it. A failed
+   * check does not abort the batch; its exception is returned as the result of
+   * the content.
+   *
+   * The calling thread checks content as well, and waits until all checks are
+   * done; the other checks run on the executor of the client. With connection
+   * pooling, allow at least as many connections per route as the parallelism.
+   *
+   * If the calling thread is interrupted, no further content is checked; the
+   * result of each unchecked content is a MollomNoResponseException.
+   *
+   * @param parallelism The maximum number of concurrent checks; at least 1.
+   * @param listener Notified after each check, or null.
+   * @return The results, in the iteration order of the given contents.
+   */
+  public List<ContentCheckResult> checkContents(Collection<Content> contents, int parallelism,
+      CheckProgressListener listener) {
+    if (parallelism < 1) {
+      throw new MollomIllegalUsageException("The parallelism of a batch must be at least 1.");
+    }
+    return new ContentBatch(this, contents, listener).run(executor, parallelism);
+  }
+
   /**
    * Creates a new CAPTCHA resource.
    *
@@ -216,8 +551,26 @@ public class MollomClient {
       postParams.putSingle("contentId", content.getId());
     }
 
-    ClientResponse response = request("POST", captchaResource, postParams);
-    return parseBody(response.getEntity(String.class), "captcha", Captcha.class);
+    TransportResponse response = request(Operation.CREATE_CAPTCHA, "POST", "captcha", postParams);
+    return parseBody(response, "captcha", Captcha.class);
+  }
+
+  /**
+   * Creates a new CAPTCHA resource asynchronously.
+   *
+   * @see MollomClient#createCaptcha(CaptchaType, boolean)
+   */
+  public CompletableFuture<Captcha> createCaptchaAsync(CaptchaType captchaType, boolean ssl) {
+    return createCaptchaAsync(captchaType, ssl, null);
+  }
+
+  /**
+   * Creates a new CAPTCHA resource linked to an unsure content asynchronously.
+   *
+   * @see MollomClient#createCaptcha(CaptchaType, boolean, Content)
+   */
+  public CompletableFuture<Captcha> createCaptchaAsync(CaptchaType captchaType, boolean ssl, Content content) {
+    return async(() -> createCaptcha(captchaType, ssl, content));
   }
 
   /**
@@ -227,51 +580,65 @@ public class MollomClient {
    */
   public void checkCaptcha(Captcha captcha)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    MultivaluedMap<String, String> postParams = new MultivaluedMapImpl();
+    FormParams postParams = new FormParams();
     if (captcha.getSolution() == null) {
       throw new MollomIllegalUsageException("Cannot check a CAPTCHA without a solution.");
     }
-    postParams.putSingle("solution", captcha.getSolution());
+    postParams.add("solution", captcha.getSolution());
 
     if (captcha.getAuthorIp() != null) {
-      postParams.putSingle("authorIp", captcha.getAuthorIp());
+      postParams.add("authorIp", captcha.getAuthorIp());
     }
     if (captcha.getAuthorId() != null) {
-      postParams.putSingle("authorId", captcha.getAuthorId());
+      postParams.add("authorId", captcha.getAuthorId());
     }
     if (captcha.getAuthorOpenIds() != null) {
-      // Exception: authorOpenID is the only API parameter that accepts multiple
-      // values as a space-separated list.
-      String openIds = "";
-      for (String authorOpenId : captcha.getAuthorOpenIds()) {
-        openIds += authorOpenId += " ";
-      }
-      postParams.putSingle("authorOpenid", openIds);
+      postParams.add("authorOpenid", joinOpenIds(captcha.getAuthorOpenIds()));
     }
     if (captcha.getAuthorName() != null) {
-      postParams.putSingle("authorName", captcha.getAuthorName());
+      postParams.add("authorName", captcha.getAuthorName());
     }
     if (captcha.getAuthorMail() != null) {
-      postParams.putSingle("authorMail", captcha.getAuthorMail());
+      postParams.add("authorMail", captcha.getAuthorMail());
     }
     if (captcha.getAuthorUrl() != null) {
-      postParams.putSingle("authorUrl", captcha.getAuthorUrl());
+      postParams.add("authorUrl", captcha.getAuthorUrl());
     }
 
     if (captcha.getRateLimit() > -1) {
-      postParams.putSingle("rateLimit", Integer.toString(captcha.getRateLimit()));
+      postParams.add("rateLimit", Integer.toString(captcha.getRateLimit()));
     }
 
-    ClientResponse response = request("POST", captchaResource.path(captcha.getId()), postParams);
+    TransportResponse response = request(Operation.CHECK_CAPTCHA, "POST", "captcha/" + captcha.getId(), postParams);
 
-    Captcha returnedCaptcha = parseBody(response.getEntity(String.class), "captcha", Captcha.class);
+    Captcha returnedCaptcha = parseBody(response, "captcha", Captcha.class);
 
     captcha.setSolved(returnedCaptcha.isSolved() ? 1 : 0);
     captcha.setReason(returnedCaptcha.getReason());
   }
 
+  /**
+   * Checks a CAPTCHA solution asynchronously.
+   *
+   * @return A future completed with the given Captcha object after the Mollom
+   *   check results have been injected.
+   *
+   * @see MollomClient#checkCaptcha(Captcha)
+   */
+  public CompletableFuture<Captcha> checkCaptchaAsync(Captcha captcha) {
+    return async(() -> {
+      checkCaptcha(captcha);
+      return captcha;
+    });
+  }
+
   /**
    * Sends feedback for a previously checked content.
+   *
+   * If the outbox is enabled and Mollom is unreachable, the feedback is
+   * journaled and sent later, and this method returns normally.
+   *
+   * @see MollomClientBuilder#withOutbox(java.io.File)
    */
   public void sendFeedback(Content content, FeedbackReason reason)
       throws MollomIllegalUsageException, MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
@@ -290,9 +657,91 @@ public class MollomClient {
     sendFeedback(null, captcha, reason);
   }
 
+  /**
+   * Sends feedback for a previously checked content asynchronously.
+   *
+   * @see MollomClient#sendFeedback(Content, FeedbackReason)
+   */
+  public CompletableFuture<Void> sendFeedbackAsync(Content content, FeedbackReason reason) {
+    return async(() -> {
+      sendFeedback(content, reason);
+      return null;
+    });
+  }
+
+  /**
+   * Sends feedback for a previously checked CAPTCHA asynchronously.
+   *
+   * @see MollomClient#sendFeedback(Captcha, FeedbackReason)
+   */
+  public CompletableFuture<Void> sendFeedbackAsync(Captcha captcha, FeedbackReason reason) {
+    return async(() -> {
+      sendFeedback(captcha, reason);
+      return null;
+    });
+  }
+
+  /**
+   * Queues feedback for a previously checked content, to be sent in the
+   * background.
+   *
+   * Returns immediately, unless the queue is full and the overflow policy is
+   * BLOCK or CALLER_RUNS. Queued feedback for the same content is replaced.
+   *
+   * @return Whether the feedback was queued; false if it was dropped.
+   *
+   * @throws MollomIllegalUsageException If the notification queue is not
+   *   enabled.
+   *
+   * @see MollomClient#sendFeedback(Content, FeedbackReason)
+   * @see MollomClientBuilder#withNotificationQueue(int, int)
+   */
+  public boolean queueFeedback(Content content, FeedbackReason reason) {
+    return queueFeedback(content, null, reason);
+  }
+
+  /**
+   * Queues feedback for a previously checked CAPTCHA, to be sent in the
+   * background.
+   *
+   * @return Whether the feedback was queued; false if it was dropped.
+   *
+   * @see MollomClient#queueFeedback(Content, FeedbackReason)
+   */
+  public boolean queueFeedback(Captcha captcha, FeedbackReason reason) {
+    return queueFeedback(null, captcha, reason);
+  }
+
   private void sendFeedback(Content content, Captcha captcha, FeedbackReason reason)
       throws MollomIllegalUsageException, MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    if (content.getId() == null && captcha.getId() == null) {
+    MultivaluedMap<String, String> postParams = feedbackParams(content, captcha, reason);
+    if (outbox != null) {
+      long sequence = outbox.append(feedbackKey(content, captcha), Operation.SEND_FEEDBACK, "feedback", postParams);
+      TransportResponse response = requestJournaled(sequence, Operation.SEND_FEEDBACK, "feedback", postParams);
+      if (response != null) {
+        response.close();
+      }
+      return;
+    }
+    request(Operation.SEND_FEEDBACK, "POST", "feedback", postParams).close();
+  }
+
+  private boolean queueFeedback(Content content, Captcha captcha, FeedbackReason reason) {
+    NotificationQueue queue = getNotificationQueue();
+    MultivaluedMap<String, String> postParams = feedbackParams(content, captcha, reason);
+    return queueMutation(queue, feedbackKey(content, captcha), Operation.SEND_FEEDBACK, "feedback", postParams);
+  }
+
+  /**
+   * @return The key of feedback; later feedback for the same content or
+   *   CAPTCHA supersedes earlier feedback.
+   */
+  private static String feedbackKey(Content content, Captcha captcha) {
+    return content != null ? "feedback/content/" + content.getId() : "feedback/captcha/" + captcha.getId();
+  }
+
+  private static MultivaluedMap<String, String> feedbackParams(Content content, Captcha captcha, FeedbackReason reason) {
+    if ((content == null || content.getId() == null) && (captcha == null || captcha.getId() == null)) {
       throw new MollomIllegalUsageException("Cannot send feedback without a Content or Captcha ID.");
     }
     if (reason == null) {
@@ -306,7 +755,7 @@ public class MollomClient {
       postParams.putSingle("captchaId", captcha.getId());
     }
     postParams.putSingle("reason", reason.toString());
-    request("POST", feedbackResource, postParams);
+    return postParams;
   }
 
   /**
@@ -321,9 +770,55 @@ public class MollomClient {
 
   /**
    * Notify Mollom that the content has been stored on the client-side.
+   *
+   * If the outbox is enabled and Mollom is unreachable, the notification is
+   * journaled and sent later, and this method returns normally without
+   * updating the classification of the content.
+   *
+   * @see MollomClientBuilder#withOutbox(java.io.File)
    */
   public void markAsStored(Content content, String url, String contextUrl, String contextTitle)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    prepareMarkAsStored(content, url, contextUrl, contextTitle);
+    sendContentState(content);
+  }
+
+  /**
+   * Queues a notification that the content has been stored on the client-side,
+   * to be sent in the background.
+   *
+   * @return Whether the notification was queued; false if it was dropped.
+   *
+   * @see MollomClient#queueMarkAsStored(Content, String, String, String)
+   */
+  public boolean queueMarkAsStored(Content content) {
+    return queueMarkAsStored(content, null, null, null);
+  }
+
+  /**
+   * Queues a notification that the content has been stored on the client-side,
+   * to be sent in the background.
+   *
+   * Returns immediately, unless the queue is full and the overflow policy is
+   * BLOCK or CALLER_RUNS. A queued stored or deleted notification for the same
+   * content is replaced; e.g., if the content is deleted before it was marked
+   * as stored, only the deletion is sent.
+   *
+   * @return Whether the notification was queued; false if it was dropped.
+   *
+   * @throws MollomIllegalUsageException If the notification queue is not
+   *   enabled.
+   *
+   * @see MollomClient#markAsStored(Content, String, String, String)
+   * @see MollomClientBuilder#withNotificationQueue(int, int)
+   */
+  public boolean queueMarkAsStored(Content content, String url, String contextUrl, String contextTitle) {
+    NotificationQueue queue = getNotificationQueue();
+    prepareMarkAsStored(content, url, contextUrl, contextTitle);
+    return queueContentState(queue, content);
+  }
+
+  private static void prepareMarkAsStored(Content content, String url, String contextUrl, String contextTitle) {
     content.setChecks(); // Don't re-check anything
     content.setStored(true);
     // The final/resulting URL of a new content is typically known after
@@ -341,91 +836,367 @@ public class MollomClient {
     if (contextTitle != null) {
       content.setContextTitle(contextTitle);
     }
+  }
+
+  /**
+   * Notify Mollom asynchronously that the content has been stored on the
+   * client-side.
+   *
+   * @see MollomClient#markAsStored(Content)
+   */
+  public CompletableFuture<Void> markAsStoredAsync(Content content) {
+    return markAsStoredAsync(content, null, null, null);
+  }
 
-    checkContent(content);
+  /**
+   * Notify Mollom asynchronously that the content has been stored on the
+   * client-side.
+   *
+   * @see MollomClient#markAsStored(Content, String, String, String)
+   */
+  public CompletableFuture<Void> markAsStoredAsync(Content content, String url,
+      String contextUrl, String contextTitle) {
+    return async(() -> {
+      markAsStored(content, url, contextUrl, contextTitle);
+      return null;
+    });
   }
 
   /**
    * Notify Mollom that the content has been deleted on the client-side.
+   *
+   * @see MollomClient#markAsStored(Content, String, String, String)
    */
   public void markAsDeleted(Content content)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
     content.setChecks(); // Don't re-check anything
     content.setStored(false);
     // TODO: Ideally send the stored parameter only.
-    checkContent(content);
+    sendContentState(content);
   }
 
   /**
-   * Saves a blacklist entry.
+   * Queues a notification that the content has been deleted on the
+   * client-side, to be sent in the background.
    *
-   * If the entry already exists, update it with the new properties.
+   * @return Whether the notification was queued; false if it was dropped.
+   *
+   * @see MollomClient#markAsDeleted(Content)
+   * @see MollomClient#queueMarkAsStored(Content, String, String, String)
    */
-  public void saveBlacklistEntry(BlacklistEntry blacklistEntry)
-      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    MultivaluedMap<String, String> postParams = new MultivaluedMapImpl();
-    if (blacklistEntry.getValue() == null) {
-      throw new MollomIllegalUsageException("Blacklist entries must have a value in order to be saved.");
-    }
-    postParams.putSingle("value", blacklistEntry.getValue());
-    postParams.putSingle("reason", blacklistEntry.getReason().toString());
-    postParams.putSingle("context", blacklistEntry.getContext().toString());
-    postParams.putSingle("match", blacklistEntry.getMatch().toString());
-    postParams.putSingle("status", blacklistEntry.isEnabled() ? "1" : "0");
-    if (blacklistEntry.getNote() != null) {
-      postParams.putSingle("note", blacklistEntry.getNote());
-    }
-
-    ClientResponse response;
-    if (blacklistEntry.getId() != null) { // Update existing entry
-      response = request("POST", blacklistResource.path(blacklistEntry.getId()), postParams);
-    } else { // Create new entry
-      response = request("POST", blacklistResource, postParams);
-    }
-
-    BlacklistEntry returnedBlacklistEntry = parseBody(response.getEntity(String.class), "entry", BlacklistEntry.class);
-    blacklistEntry.setId(returnedBlacklistEntry.getId());
-    blacklistEntry.setCreated(returnedBlacklistEntry.getCreated());
-    blacklistEntry.setStatus(returnedBlacklistEntry.isEnabled() ? 1 : 0);
-    // The stored value is not necessarily the given value; at minimum,
-    // converted to lowercase.
-    blacklistEntry.setValue(returnedBlacklistEntry.getValue());
+  public boolean queueMarkAsDeleted(Content content) {
+    NotificationQueue queue = getNotificationQueue();
+    content.setChecks(); // Don't re-check anything
+    content.setStored(false);
+    return queueContentState(queue, content);
   }
 
   /**
-   * Deletes a blacklist entry.
+   * Sends the stored state of the content, through the outbox if enabled.
    */
-  public void deleteBlacklistEntry(BlacklistEntry blacklistEntry)
+  private void sendContentState(Content content)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    request("POST", blacklistResource.path(blacklistEntry.getId()).path("delete"), new MultivaluedMapImpl());
+    if (outbox == null) {
+      checkContent(content);
+      return;
+    }
+    FormParams postParams = contentParams(content);
+    String path = content.getId() == null ? "content" : "content/" + content.getId();
+    long sequence = outbox.append(contentKey(content), Operation.CHECK_CONTENT, path, postParams);
+    TransportResponse response = requestJournaled(sequence, Operation.CHECK_CONTENT, path, postParams);
+    if (response != null) {
+      Content returnedContent = parseBody(response, "content", Content.class);
+      content.setId(returnedContent.getId());
+      mergeClassification(content, returnedContent);
+      metrics.recordClassification(content.getSpamClassification());
+    }
   }
 
   /**
-   * Lists all blacklist entries for this public key.
-   *
-   * @return A list of all blacklist entries.
+   * Queues the stored state of the content; the request is built right away,
+   * so that later changes of the Content object are not sent.
    */
-  public List<BlacklistEntry> listBlacklistEntries()
-      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    ClientResponse response = request("GET", blacklistResource);
-    return parseList(response.getEntity(String.class), "entry", BlacklistEntry.class);
+  private boolean queueContentState(NotificationQueue queue, Content content) {
+    FormParams postParams = contentParams(content);
+    String path = content.getId() == null ? "content" : "content/" + content.getId();
+    return queueMutation(queue, contentKey(content), Operation.CHECK_CONTENT, path, postParams);
   }
 
   /**
-   * Retrieves a blacklist entry with a given ID.
-   *
-   * @return The blacklist entry or null if not found.
+   * @return The key of the stored state of the content; the latest state
+   *   supersedes earlier ones. Null for content without an ID, which cannot be
+   *   coalesced.
    */
-  public BlacklistEntry getBlacklistEntry(String blacklistEntryId)
-      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    ClientResponse response = request("GET", blacklistResource.path(blacklistEntryId));
-    return parseBody(response.getEntity(String.class), "entry", BlacklistEntry.class);
+  private static String contentKey(Content content) {
+    return content.getId() == null ? null : "content/" + content.getId();
   }
 
   /**
-   * Saves a whitelist entry.
-   *
-   * If the entry already exists, update it with the new properties.
+   * Queues a mutation; if the outbox is enabled, the mutation is journaled
+   * right away, so that it survives a full queue or a restart.
+   */
+  private boolean queueMutation(NotificationQueue queue, String key, final Operation operation, final String path,
+      final Map<String, List<String>> postParams) {
+    if (outbox == null) {
+      return queue.offer(key, () -> request(operation, "POST", path, postParams).close());
+    }
+    final long sequence = outbox.append(key, operation, path, postParams);
+    return queue.offer(key, new NotificationQueue.Notification() {
+      @Override
+      public void send() throws MollomException {
+        TransportResponse response = requestJournaled(sequence, operation, path, postParams);
+        if (response != null) {
+          response.close();
+        }
+      }
+
+      @Override
+      public void discard(boolean superseded) {
+        if (sequence < 0) {
+          return;
+        }
+        // A superseded mutation is never sent; a dropped one is replayed.
+        if (superseded) {
+          outbox.acknowledge(sequence);
+        } else {
+          outbox.release(sequence);
+        }
+      }
+    });
+  }
+
+  /**
+   * Sends a journaled mutation, and acknowledges it once Mollom accepted or
+   * rejected it.
+   *
+   * @param sequence The sequence of the mutation in the outbox; -1 if it could
+   *   not be journaled.
+   *
+   * @return The response, or null if Mollom is unreachable and the mutation is
+   *   replayed later.
+   */
+  private TransportResponse requestJournaled(long sequence, Operation operation, String path,
+      Map<String, List<String>> postParams)
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    TransportResponse response;
+    try {
+      response = request(operation, "POST", path, postParams);
+    } catch (MollomNoResponseException e) {
+      if (sequence < 0) {
+        throw e;
+      }
+      outbox.release(sequence);
+      logger.log(Level.WARNING, "Mollom service is unreachable; the request to " + path + " is sent later.", e);
+      return null;
+    } catch (MollomException | RuntimeException e) {
+      outbox.acknowledge(sequence);
+      throw e;
+    }
+    outbox.acknowledge(sequence);
+    return response;
+  }
+
+  /**
+   * Sends a mutation replayed from the outbox.
+   */
+  void replay(Outbox.Mutation mutation) throws MollomException {
+    request(mutation.operation, "POST", mutation.path, mutation.params).close();
+  }
+
+  private NotificationQueue getNotificationQueue() {
+    if (notificationQueue == null) {
+      throw new MollomIllegalUsageException("The notification queue is not enabled.");
+    }
+    return notificationQueue;
+  }
+
+  /**
+   * Notify Mollom asynchronously that the content has been deleted on the
+   * client-side.
+   *
+   * @see MollomClient#markAsDeleted(Content)
+   */
+  public CompletableFuture<Void> markAsDeletedAsync(Content content) {
+    return async(() -> {
+      markAsDeleted(content);
+      return null;
+    });
+  }
+
+  /**
+   * Saves a blacklist entry.
+   *
+   * If the entry already exists, update it with the new properties.
+   */
+  public void saveBlacklistEntry(BlacklistEntry blacklistEntry)
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    MultivaluedMap<String, String> postParams = new MultivaluedMapImpl();
+    if (blacklistEntry.getValue() == null) {
+      throw new MollomIllegalUsageException("Blacklist entries must have a value in order to be saved.");
+    }
+    postParams.putSingle("value", blacklistEntry.getValue());
+    postParams.putSingle("reason", blacklistEntry.getReason().toString());
+    postParams.putSingle("context", blacklistEntry.getContext().toString());
+    postParams.putSingle("match", blacklistEntry.getMatch().toString());
+    postParams.putSingle("status", blacklistEntry.isEnabled() ? "1" : "0");
+    if (blacklistEntry.getNote() != null) {
+      postParams.putSingle("note", blacklistEntry.getNote());
+    }
+
+    TransportResponse response;
+    if (blacklistEntry.getId() != null) { // Update existing entry
+      response = request(Operation.SAVE_ENTRY, "POST", blacklistPath + "/" + blacklistEntry.getId(), postParams);
+    } else { // Create new entry
+      response = request(Operation.SAVE_ENTRY, "POST", blacklistPath, postParams);
+    }
+
+    BlacklistEntry returnedBlacklistEntry = parseBody(response, "entry", BlacklistEntry.class);
+    blacklistEntry.setId(returnedBlacklistEntry.getId());
+    blacklistEntry.setCreated(returnedBlacklistEntry.getCreated());
+    blacklistEntry.setStatus(returnedBlacklistEntry.isEnabled() ? 1 : 0);
+    // The stored value is not necessarily the given value; at minimum,
+    // converted to lowercase.
+    blacklistEntry.setValue(returnedBlacklistEntry.getValue());
+
+    if (localBlacklist != null) {
+      localBlacklist.put(blacklistEntry);
+    }
+  }
+
+  /**
+   * Saves a blacklist entry asynchronously.
+   *
+   * @return A future completed with the given BlacklistEntry object after it has
+   *   been updated with the stored properties.
+   *
+   * @see MollomClient#saveBlacklistEntry(BlacklistEntry)
+   */
+  public CompletableFuture<BlacklistEntry> saveBlacklistEntryAsync(BlacklistEntry blacklistEntry) {
+    return async(() -> {
+      saveBlacklistEntry(blacklistEntry);
+      return blacklistEntry;
+    });
+  }
+
+  /**
+   * Deletes a blacklist entry.
+   */
+  public void deleteBlacklistEntry(BlacklistEntry blacklistEntry)
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    request(Operation.DELETE_ENTRY, "POST", blacklistPath + "/" + blacklistEntry.getId() + "/delete", new MultivaluedMapImpl()).close();
+
+    if (localBlacklist != null) {
+      localBlacklist.remove(blacklistEntry);
+    }
+  }
+
+  /**
+   * Deletes a blacklist entry asynchronously.
+   *
+   * @see MollomClient#deleteBlacklistEntry(BlacklistEntry)
+   */
+  public CompletableFuture<Void> deleteBlacklistEntryAsync(BlacklistEntry blacklistEntry) {
+    return async(() -> {
+      deleteBlacklistEntry(blacklistEntry);
+      return null;
+    });
+  }
+
+  /**
+   * Lists all blacklist entries for this public key.
+   *
+   * @return A list of all blacklist entries.
+   */
+  public List<BlacklistEntry> listBlacklistEntries()
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    TransportResponse response = request(Operation.LIST_ENTRIES, "GET", blacklistPath);
+    return parseList(response, "entry", BlacklistEntry.class);
+  }
+
+  /**
+   * Lists all blacklist entries for this public key asynchronously.
+   *
+   * @see MollomClient#listBlacklistEntries()
+   */
+  public CompletableFuture<List<BlacklistEntry>> listBlacklistEntriesAsync() {
+    return async(() -> listBlacklistEntries());
+  }
+
+  /**
+   * Iterates over all blacklist entries for this public key.
+   *
+   * @see MollomClient#iterateBlacklistEntries(int, boolean)
+   */
+  public EntryIterator<BlacklistEntry> iterateBlacklistEntries(int pageSize) {
+    return iterateBlacklistEntries(pageSize, false);
+  }
+
+  /**
+   * Iterates over all blacklist entries for this public key.
+   *
+   * Entries are requested lazily in pages of the given size, so that memory
+   * usage does not depend on the size of the blacklist.
+   *
+   * @param prefetch Whether to request the next page in the background while
+   *   the current page is consumed.
+   */
+  public EntryIterator<BlacklistEntry> iterateBlacklistEntries(int pageSize, boolean prefetch) {
+    return new EntryIterator<>((offset, count) -> {
+      MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
+      queryParams.putSingle("offset", Integer.toString(offset));
+      queryParams.putSingle("count", Integer.toString(count));
+      TransportResponse response = request(Operation.LIST_ENTRIES, "GET", blacklistPath, queryParams, null);
+      return parsePage(response, "entry", BlacklistEntry.class);
+    }, pageSize, prefetch ? executor : null);
+  }
+
+  /**
+   * Reloads the local blacklist from the Mollom service.
+   *
+   * Entries saved or deleted through this client are applied to the local
+   * blacklist immediately; call this method periodically to pick up changes
+   * made elsewhere (e.g., by other servers).
+   *
+   * @throws MollomIllegalUsageException If the local blacklist is not enabled.
+   *
+   * @see MollomClientBuilder#withLocalBlacklist(boolean)
+   */
+  public void refreshLocalBlacklist() throws MollomException {
+    if (localBlacklist == null) {
+      throw new MollomIllegalUsageException("The local blacklist is not enabled.");
+    }
+    List<BlacklistEntry> entries = new ArrayList<>();
+    EntryIterator<BlacklistEntry> iterator = iterateBlacklistEntries(LOCAL_LIST_PAGE_SIZE);
+    while (iterator.hasNext()) {
+      entries.add(iterator.next());
+    }
+    localBlacklist.replaceAll(entries);
+  }
+
+  /**
+   * Retrieves a blacklist entry with a given ID.
+   *
+   * @return The blacklist entry or null if not found.
+   */
+  public BlacklistEntry getBlacklistEntry(String blacklistEntryId)
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    TransportResponse response = request(Operation.GET_ENTRY, "GET", blacklistPath + "/" + blacklistEntryId);
+    return parseBody(response, "entry", BlacklistEntry.class);
+  }
+
+  /**
+   * Retrieves a blacklist entry with a given ID asynchronously.
+   *
+   * @see MollomClient#getBlacklistEntry(String)
+   */
+  public CompletableFuture<BlacklistEntry> getBlacklistEntryAsync(String blacklistEntryId) {
+    return async(() -> getBlacklistEntry(blacklistEntryId));
+  }
+
+  /**
+   * Saves a whitelist entry.
+   *
+   * If the entry already exists, update it with the new properties.
    */
   public void saveWhitelistEntry(WhitelistEntry whitelistEntry)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
@@ -446,20 +1217,39 @@ public class MollomClient {
       postParams.putSingle("note", whitelistEntry.getNote());
     }
 
-    ClientResponse response;
+    TransportResponse response;
     if (whitelistEntry.getId() != null) { // Update existing entry
-      response = request("POST", whitelistResource.path(whitelistEntry.getId()), postParams);
+      response = request(Operation.SAVE_ENTRY, "POST", whitelistPath + "/" + whitelistEntry.getId(), postParams);
     } else { // Create new entry
-      response = request("POST", whitelistResource, postParams);
+      response = request(Operation.SAVE_ENTRY, "POST", whitelistPath, postParams);
     }
 
-    WhitelistEntry returnedWhitelistEntry = parseBody(response.getEntity(String.class), "entry", WhitelistEntry.class);
+    WhitelistEntry returnedWhitelistEntry = parseBody(response, "entry", WhitelistEntry.class);
     whitelistEntry.setId(returnedWhitelistEntry.getId());
     whitelistEntry.setCreated(returnedWhitelistEntry.getCreated());
     whitelistEntry.setStatus(returnedWhitelistEntry.isEnabled() ? 1 : 0);
     // The stored value is not necessarily the given value; at minimum,
     // converted to lowercase.
     whitelistEntry.setValue(returnedWhitelistEntry.getValue());
+
+    if (localWhitelist != null) {
+      localWhitelist.put(whitelistEntry);
+    }
+  }
+
+  /**
+   * Saves a whitelist entry asynchronously.
+   *
+   * @return A future completed with the given WhitelistEntry object after it has
+   *   been updated with the stored properties.
+   *
+   * @see MollomClient#saveWhitelistEntry(WhitelistEntry)
+   */
+  public CompletableFuture<WhitelistEntry> saveWhitelistEntryAsync(WhitelistEntry whitelistEntry) {
+    return async(() -> {
+      saveWhitelistEntry(whitelistEntry);
+      return whitelistEntry;
+    });
   }
 
   /**
@@ -467,7 +1257,23 @@ public class MollomClient {
    */
   public void deleteWhitelistEntry(WhitelistEntry whitelistEntry)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    request("POST", whitelistResource.path(whitelistEntry.getId()).path("delete"), new MultivaluedMapImpl());
+    request(Operation.DELETE_ENTRY, "POST", whitelistPath + "/" + whitelistEntry.getId() + "/delete", new MultivaluedMapImpl()).close();
+
+    if (localWhitelist != null) {
+      localWhitelist.remove(whitelistEntry);
+    }
+  }
+
+  /**
+   * Deletes a whitelist entry asynchronously.
+   *
+   * @see MollomClient#deleteWhitelistEntry(WhitelistEntry)
+   */
+  public CompletableFuture<Void> deleteWhitelistEntryAsync(WhitelistEntry whitelistEntry) {
+    return async(() -> {
+      deleteWhitelistEntry(whitelistEntry);
+      return null;
+    });
   }
 
   /**
@@ -477,8 +1283,68 @@ public class MollomClient {
    */
   public List<WhitelistEntry> listWhitelistEntries()
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    ClientResponse response = request("GET", whitelistResource);
-    return parseList(response.getEntity(String.class), "entry", WhitelistEntry.class);
+    TransportResponse response = request(Operation.LIST_ENTRIES, "GET", whitelistPath);
+    return parseList(response, "entry", WhitelistEntry.class);
+  }
+
+  /**
+   * Lists all whitelist entries for this public key asynchronously.
+   *
+   * @see MollomClient#listWhitelistEntries()
+   */
+  public CompletableFuture<List<WhitelistEntry>> listWhitelistEntriesAsync() {
+    return async(() -> listWhitelistEntries());
+  }
+
+  /**
+   * Iterates over all whitelist entries for this public key.
+   *
+   * @see MollomClient#iterateWhitelistEntries(int, boolean)
+   */
+  public EntryIterator<WhitelistEntry> iterateWhitelistEntries(int pageSize) {
+    return iterateWhitelistEntries(pageSize, false);
+  }
+
+  /**
+   * Iterates over all whitelist entries for this public key.
+   *
+   * Entries are requested lazily in pages of the given size, so that memory
+   * usage does not depend on the size of the whitelist.
+   *
+   * @param prefetch Whether to request the next page in the background while
+   *   the current page is consumed.
+   */
+  public EntryIterator<WhitelistEntry> iterateWhitelistEntries(int pageSize, boolean prefetch) {
+    return new EntryIterator<>((offset, count) -> {
+      MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
+      queryParams.putSingle("offset", Integer.toString(offset));
+      queryParams.putSingle("count", Integer.toString(count));
+      TransportResponse response = request(Operation.LIST_ENTRIES, "GET", whitelistPath, queryParams, null);
+      return parsePage(response, "entry", WhitelistEntry.class);
+    }, pageSize, prefetch ? executor : null);
+  }
+
+  /**
+   * Reloads the local whitelist from the Mollom service.
+   *
+   * Entries saved or deleted through this client are applied to the local
+   * whitelist immediately; call this method periodically to pick up changes
+   * made elsewhere (e.g., by other servers).
+   *
+   * @throws MollomIllegalUsageException If the local whitelist is not enabled.
+   *
+   * @see MollomClientBuilder#withLocalWhitelist(boolean)
+   */
+  public void refreshLocalWhitelist() throws MollomException {
+    if (localWhitelist == null) {
+      throw new MollomIllegalUsageException("The local whitelist is not enabled.");
+    }
+    List<WhitelistEntry> entries = new ArrayList<>();
+    EntryIterator<WhitelistEntry> iterator = iterateWhitelistEntries(LOCAL_LIST_PAGE_SIZE);
+    while (iterator.hasNext()) {
+      entries.add(iterator.next());
+    }
+    localWhitelist.replaceAll(entries);
   }
 
   /**
@@ -488,8 +1354,209 @@ public class MollomClient {
    */
   public WhitelistEntry getWhitelistEntry(String whitelistEntryId)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    ClientResponse response = request("GET", whitelistResource.path(whitelistEntryId));
-    return parseBody(response.getEntity(String.class), "entry", WhitelistEntry.class);
+    TransportResponse response = request(Operation.GET_ENTRY, "GET", whitelistPath + "/" + whitelistEntryId);
+    return parseBody(response, "entry", WhitelistEntry.class);
+  }
+
+  /**
+   * Retrieves a whitelist entry with a given ID asynchronously.
+   *
+   * @see MollomClient#getWhitelistEntry(String)
+   */
+  public CompletableFuture<WhitelistEntry> getWhitelistEntryAsync(String whitelistEntryId) {
+    return async(() -> getWhitelistEntry(whitelistEntryId));
+  }
+
+  /**
+   * @return A snapshot of the classification cache statistics.
+   *
+   * @throws MollomIllegalUsageException If the classification cache is not enabled.
+   *
+   * @see MollomClientBuilder#withClassificationCache(int, int)
+   */
+  public CacheStatistics getClassificationCacheStatistics() {
+    if (classificationCache == null) {
+      throw new MollomIllegalUsageException("The classification cache is not enabled.");
+    }
+    return classificationCache.getStatistics();
+  }
+
+  /**
+   * @return A snapshot of the HTTP connection pool statistics.
+   *
+   * @throws MollomIllegalUsageException If connection pooling is not enabled.
+   *
+   * @see MollomClientBuilder#withConnectionPooling(boolean)
+   */
+  public ConnectionPoolStatistics getConnectionPoolStatistics() {
+    if (connectionPool == null) {
+      throw new MollomIllegalUsageException("Connection pooling is not enabled.");
+    }
+    return connectionPool.getStatistics();
+  }
+
+  /**
+   * @return The current state of the circuit breaker.
+   *
+   * @throws MollomIllegalUsageException If the circuit breaker is not enabled.
+   *
+   * @see MollomClientBuilder#withCircuitBreaker(boolean)
+   */
+  public CircuitBreakerState getCircuitBreakerState() {
+    if (circuitBreaker == null) {
+      throw new MollomIllegalUsageException("The circuit breaker is not enabled.");
+    }
+    return circuitBreaker.getState();
+  }
+
+  /**
+   * @return A snapshot of the statistics of hedged requests.
+   *
+   * @throws MollomIllegalUsageException If hedging is not enabled.
+   *
+   * @see MollomClientBuilder#withHedging(int)
+   */
+  public HedgingStatistics getHedgingStatistics() {
+    if (requestHedger == null) {
+      throw new MollomIllegalUsageException("Hedging is not enabled.");
+    }
+    return requestHedger.getStatistics();
+  }
+
+  /**
+   * @return A snapshot of the statistics of the notification queue.
+   *
+   * @throws MollomIllegalUsageException If the notification queue is not
+   *   enabled.
+   *
+   * @see MollomClientBuilder#withNotificationQueue(int, int)
+   */
+  public NotificationQueueStatistics getNotificationQueueStatistics() {
+    return getNotificationQueue().getStatistics();
+  }
+
+  /**
+   * @return A future completed once the API keys were verified and the site
+   *   configuration was sent to Mollom, or completed exceptionally with a
+   *   MollomConfigurationException if Mollom rejected the keys, with a
+   *   MollomUnexpectedResponseException if Mollom kept answering with server
+   *   errors, or with a MollomNoResponseException if the client was destroyed
+   *   before Mollom could be reached. Already completed unless the
+   *   verification is deferred.
+   *
+   * @see MollomClientBuilder#withDeferredVerification(boolean)
+   */
+  public CompletableFuture<Void> getVerification() {
+    // A dependent future, so that callers cannot complete the verification.
+    return verification.thenApply(result -> result);
+  }
+
+  /**
+   * Runs the deferred verification of the API keys on a background thread, and
+   * completes the verification future with its outcome.
+   *
+   * The verification is retried with backoff as long as it throws a
+   * MollomNoResponseException, until the client is destroyed; its own thread
+   * keeps the executor of the client free while it waits. Server errors, a
+   * MollomUnexpectedResponseException, are only retried up to the maximum
+   * retries of their policy, so that a failing Mollom service is not asked
+   * to verify the keys over and over again.
+   *
+   * @param noResponseRetryPolicy The backoff of retries after Mollom could not
+   *   be contacted; its maximum retries are ignored.
+   * @param serverErrorRetryPolicy The retries after server errors.
+   */
+  void verifyInBackground(Callable<Void> verify, RetryPolicy noResponseRetryPolicy,
+      RetryPolicy serverErrorRetryPolicy) {
+    Thread thread = new DaemonThreadFactory("mollom-verification").newThread(() -> {
+      int noResponseRetries = 0;
+      int serverErrorRetries = 0;
+      while (true) {
+        MollomException failure;
+        long backoff;
+        try {
+          verify.call();
+          verification.complete(null);
+          return;
+        } catch (MollomNoResponseException e) {
+          failure = e;
+          backoff = noResponseRetryPolicy.getBackoff(++noResponseRetries);
+        } catch (MollomUnexpectedResponseException e) {
+          if (serverErrorRetries >= serverErrorRetryPolicy.getMaxRetries()) {
+            logger.log(Level.WARNING, "Failed to verify API keys; Mollom service keeps answering with server errors.", e);
+            verification.completeExceptionally(e);
+            return;
+          }
+          failure = e;
+          backoff = serverErrorRetryPolicy.getBackoff(++serverErrorRetries);
+        } catch (Exception | Error e) {
+          logger.log(Level.WARNING, "Failed to verify API keys.", e);
+          verification.completeExceptionally(e);
+          return;
+        }
+        try {
+          // Destroyed; the interrupt may have been swallowed by the request.
+          if (verificationThread != Thread.currentThread()) {
+            throw new InterruptedException();
+          }
+          logger.log(Level.WARNING, "Failed to verify API keys; retrying in " + backoff + " ms.", failure);
+          Thread.sleep(backoff);
+        } catch (InterruptedException interrupted) {
+          verification.completeExceptionally(
+              new MollomNoResponseException("Client was destroyed before the API keys were verified.", failure));
+          return;
+        }
+      }
+    });
+    verificationThread = thread;
+    thread.start();
+  }
+
+  /**
+   * @return A snapshot of the statistics of the outbox, including the size and
+   *   age of its backlog.
+   *
+   * @throws MollomIllegalUsageException If the outbox is not enabled.
+   *
+   * @see MollomClientBuilder#withOutbox(java.io.File)
+   */
+  public OutboxStatistics getOutboxStatistics() {
+    if (outbox == null) {
+      throw new MollomIllegalUsageException("The outbox is not enabled.");
+    }
+    return outbox.getStatistics();
+  }
+
+  /**
+   * @return The latencies and counters of the requests of this client; the
+   *   same values that are exposed via JMX.
+   *
+   * @see MollomClientBuilder#withJmx(boolean)
+   */
+  public MollomClientMXBean getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Registers the metrics of this client with the platform MBean server.
+   *
+   * If another client with the same public key is registered already, a
+   * sequence number is appended to the name.
+   */
+  void registerMBean(String publicKey) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    String name = "com.mollom.client:type=MollomClient,name=" + ObjectName.quote(publicKey);
+    try {
+      for (int i = 2; objectName == null; i++) {
+        try {
+          objectName = server.registerMBean(metrics, new ObjectName(name)).getObjectName();
+        } catch (InstanceAlreadyExistsException e) {
+          name = "com.mollom.client:type=MollomClient,name=" + ObjectName.quote(publicKey + "-" + i);
+        }
+      }
+    } catch (JMException e) {
+      logger.log(Level.WARNING, "Failed to register Mollom client metrics with JMX.", e);
+    }
   }
 
   /**
@@ -499,111 +1566,288 @@ public class MollomClient {
    *
    * The MollomClient instance must not be reused after this method is called;
    * otherwise, undefined behavior will occur.
+   *
+   * Queued notifications are sent before the client is destroyed, up to the
+   * drain timeout of the notification queue. Journaled notifications that
+   * were not acknowledged yet are replayed when a client with the same outbox
+   * is built.
    */
   public void destroy() {
-    client.destroy();
+    Thread verificationThread = this.verificationThread;
+    if (verificationThread != null) {
+      this.verificationThread = null;
+      verificationThread.interrupt();
+    }
+    if (notificationQueue != null) {
+      notificationQueue.shutdown(notificationQueueDrainTimeout);
+    }
+    if (outbox != null) {
+      outbox.close();
+    }
+    if (defaultExecutor != null) {
+      defaultExecutor.shutdownNow();
+    }
+    if (requestHedger != null) {
+      requestHedger.close();
+    }
+    transport.close();
+    if (connectionPool != null) {
+      connectionPool.shutdown();
+    }
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException e) {
+        logger.log(Level.WARNING, "Failed to unregister Mollom client metrics from JMX.", e);
+      }
+    }
+  }
+
+  /**
+   * @return Whether the classification of the given content may be cached.
+   *   Only the initial check of new content is cached; rechecks depend on
+   *   state kept by Mollom (e.g., a solved CAPTCHA).
+   */
+  private static boolean isCacheable(Content content) {
+    return content.getId() == null && content.getStored() == -1
+        && content.getChecks() != null && content.getChecks().length > 0;
+  }
+
+  /**
+   * @return Whether a SPAM check is requested for the given content.
+   */
+  private static boolean isSpamCheckRequested(Content content) {
+    return isCheckRequested(content, Check.SPAM);
   }
 
-  private ClientResponse request(String method, WebResource resource)
+  /**
+   * @return Whether the given check is requested for the given content.
+   */
+  private static boolean isCheckRequested(Content content, Check check) {
+    Check[] checks = content.getChecks();
+    if (checks != null) {
+      for (Check requestedCheck : checks) {
+        if (requestedCheck == check) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return Whether only a SPAM check is requested for the given content.
+   */
+  private static boolean isSpamCheckOnly(Content content) {
+    Check[] checks = content.getChecks();
+    return checks != null && checks.length == 1 && checks[0] == Check.SPAM;
+  }
+
+  /**
+   * @return Whether only checks that are fully answered by a whitelist match
+   *   (SPAM, PROFANITY) are requested for the given content.
+   */
+  private static boolean isWhitelistCheckOnly(Content content) {
+    Check[] checks = content.getChecks();
+    if (checks == null || checks.length == 0) {
+      return false;
+    }
+    for (Check check : checks) {
+      if (!WHITELIST_CHECKS.contains(check)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Waits for the result of a request executed by another thread.
+   */
+  private <T> T awaitRequest(Future<T> request)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    return request(method, resource, null);
+    try {
+      return MollomFuture.await(request, deadline);
+    } catch (MollomRequestException | MollomUnexpectedResponseException | MollomNoResponseException e) {
+      throw e;
+    } catch (MollomException e) {
+      throw new MollomUnexpectedResponseException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Parses an object out of the response body and closes the response.
+   *
+   * @see ResponseParser#parseBody(java.io.InputStream, String, Class)
+   */
+  private <T> T parseBody(TransportResponse response, String bodyTag, Class<T> expectedType) throws MollomUnexpectedResponseException {
+    try {
+      return parser.parseBody(metrics.countBytesReceived(response.getBody()), bodyTag, expectedType);
+    } finally {
+      response.close();
+    }
   }
 
-  private ClientResponse request(String method, WebResource resource, MultivaluedMap<String, String> params)
+  /**
+   * Parses a list of objects out of the response body and closes the response.
+   *
+   * @see ResponseParser#parseList(java.io.InputStream, String, Class)
+   */
+  private <T> List<T> parseList(TransportResponse response, String bodyTag, Class<T> expectedType) throws MollomUnexpectedResponseException {
+    try {
+      return parser.parseList(metrics.countBytesReceived(response.getBody()), bodyTag, expectedType);
+    } finally {
+      response.close();
+    }
+  }
+
+  /**
+   * Parses a page of a list of objects out of the response body and closes the
+   * response.
+   *
+   * @see ResponseParser#parsePage(java.io.InputStream, String, Class)
+   */
+  private <T> ListPage<T> parsePage(TransportResponse response, String bodyTag, Class<T> expectedType) throws MollomUnexpectedResponseException {
+    try {
+      return parser.parsePage(metrics.countBytesReceived(response.getBody()), bodyTag, expectedType);
+    } finally {
+      response.close();
+    }
+  }
+
+  /**
+   * Executes the given call on the configured executor.
+   *
+   * Cancelling the returned future interrupts the running request; no further
+   * retries are attempted.
+   */
+  private <T> CompletableFuture<T> async(Callable<T> call) {
+    return MollomFuture.supply(call, executor);
+  }
+
+  private TransportResponse request(Operation operation, String method, String path)
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    return request(operation, method, path, null, null);
+  }
+
+  private TransportResponse request(Operation operation, String method, String path, Map<String, List<String>> formParams)
       throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
-    for (int retryAttemptNumber = 0; retryAttemptNumber <= retries; retryAttemptNumber++) {
+    return request(operation, method, path, null, formParams);
+  }
+
+  private TransportResponse request(Operation operation, String method, String path, Map<String, List<String>> queryParams,
+      Map<String, List<String>> formParams)
+      throws MollomRequestException, MollomUnexpectedResponseException, MollomNoResponseException {
+    RetryPolicy retryPolicy = retryPolicies.get(operation);
+    // The response of the last attempt, if it was a retried server error.
+    String serverError = null;
+    for (int retryAttemptNumber = 0; retryAttemptNumber <= retryPolicy.getMaxRetries(); retryAttemptNumber++) {
+      if (retryAttemptNumber > 0) {
+        if (retryBudget != null && !retryBudget.tryAcquire()) {
+          logger.log(Level.WARNING, "Retry budget exhausted; not retrying request to Mollom service.");
+          break;
+        }
+        long backoff = retryPolicy.getBackoff(retryAttemptNumber);
+        if (deadline != null && backoff >= deadline.timeRemaining(TimeUnit.MILLISECONDS)) {
+          throw new MollomDeadlineExceededException("Deadline of the request to Mollom service exceeded.");
+        }
+        backoff(backoff);
+        metrics.recordRetry(operation);
+      }
+      // Stop retrying if an asynchronous request was cancelled.
+      if (Thread.currentThread().isInterrupted()) {
+        throw new MollomNoResponseException("Request to Mollom service was interrupted.");
+      }
+      // Shorten the timeouts of the attempt to the time remaining.
+      int timeout = 0;
+      if (deadline != null) {
+        long remaining = deadline.timeRemaining(TimeUnit.MILLISECONDS);
+        if (remaining <= 0) {
+          throw new MollomDeadlineExceededException("Deadline of the request to Mollom service exceeded.");
+        }
+        timeout = (int) Math.min(remaining, Integer.MAX_VALUE);
+      }
+      // Fail fast while the Mollom service is considered unavailable.
+      if (circuitBreaker != null && !circuitBreaker.tryAcquire()) {
+        throw new MollomNoResponseException("Mollom service is unavailable; the circuit breaker is open.");
+      }
+      long startTime = System.nanoTime();
+      boolean success = false;
+      int status = -1;
       try {
-        ClientResponse response;
-        if (params != null) {
-          response = resource
-            .accept(MediaType.APPLICATION_XML)
-            .type(MediaType.APPLICATION_FORM_URLENCODED)
-            .method(method, ClientResponse.class, params);
+        TransportResponse response;
+        if (requestHedger != null && isIdempotent(operation, path)) {
+          response = requestHedger.send(transport, method, path, queryParams, formParams, timeout);
         } else {
-          response = resource
-            .accept(MediaType.APPLICATION_XML)
-            .type(MediaType.APPLICATION_FORM_URLENCODED)
-            .method(method, ClientResponse.class);
+          response = transport.send(method, path, queryParams, formParams, timeout);
         }
-        if (response.getStatus() >= 400 && response.getStatus() < 500) {
-          throw new MollomRequestException(response.getEntity(String.class));
-        } else if (response.getStatus() < 200 || response.getStatus() >= 300) {
-          throw new MollomUnexpectedResponseException(response.getEntity(String.class));
+        status = response.getStatus();
+        success = status < 500;
+        if (status < 200 || status >= 300) {
+          String message;
+          try {
+            message = response.getBodyAsString();
+          } finally {
+            response.close();
+          }
+          if (status >= 400 && status < 500) {
+            throw new MollomRequestException(message);
+          }
+          if (status >= 500 && retryPolicy.isRetryServerErrors()) {
+            logger.log(Level.WARNING, "Mollom service responded with status " + status + ".");
+            serverError = message;
+            continue;
+          }
+          throw new MollomUnexpectedResponseException(message);
         }
         return response;
-      } catch (ClientHandlerException e) {
+      } catch (IOException e) {
         logger.log(Level.WARNING, "Failed to contact Mollom service.", e);
+        serverError = null;
+      } finally {
+        long duration = System.nanoTime() - startTime;
+        if (circuitBreaker != null) {
+          circuitBreaker.record(success, duration);
+        }
+        metrics.recordRequest(operation, path, formParams, status, duration);
       }
     }
+    if (serverError != null) {
+      throw new MollomUnexpectedResponseException(serverError);
+    }
     throw new MollomNoResponseException("Failed to contact Mollom service after retries.");
   }
 
   /**
-   * Parses an object out of a response body.
-   *
-   * Expects XML in the format of:
-   * <response>
-   *  <code>200</code>
-   *  <bodyTag>...</bodyTag>
-   * </response>
-   *
-   * @return JAXB unmarshalled expectedType object from the response.
-   *
-   * @throws MollomUnexpectedResponseException
-   *   Unable to parse the response from the Mollom server. Usually this means
-   *   there is a version mismatch between the client library and the Mollom API.
+   * @return Whether sending the request multiple times has the same effect as
+   *   sending it once; i.e., whether it may be hedged.
    */
-  private <T> T parseBody(String xml, String bodyTag, Class<T> expectedType) throws MollomUnexpectedResponseException {
-    try {
-      // We have to parse the XML into a Document before passing it to JAXB to
-      // get the body, because the Mollom service response returns the object
-      // wrapped in a <Response> object.
-      Document document = documentBuilder.parse(new InputSource(new StringReader(xml)));
-      Node bodyNode = document.getElementsByTagName(bodyTag).item(0);
-      return unmarshaller.unmarshal(bodyNode, expectedType).getValue();
-    } catch (SAXException | IOException | JAXBException e) {
-      throw new MollomUnexpectedResponseException("Issue parsing response from Mollom server.", e);
+  private static boolean isIdempotent(Operation operation, String path) {
+    switch (operation) {
+      case GET_ENTRY:
+      case LIST_ENTRIES:
+        return true;
+      case CHECK_CONTENT:
+        // Rechecks of existing content; a check of new content creates it.
+        return !path.equals("content");
+      default:
+        return false;
     }
   }
 
   /**
-   * Parses a list of objects out of a response body.
+   * Waits before retrying a request.
    *
-   * Expects XML in the format of:
-   * <response>
-   *   <code>200</code>
-   *   <list>
-   *     <bodyTag>...</bodyTag>
-   *     ...
-   *   </list>
-   * </response>
-   *
-   * @return List of JAXB unmarshalled expectedType objects from the response.
-   *
-   * @throws MollomUnexpectedResponseException
-   *   Unable to parse the response from the Mollom server. Usually this means
-   *   there is a version mismatch between the client library and the Mollom API.
-   *
-   * @todo Support the listCount, listOffset, listTotal response parameters
-   *   (required for implementing client-side pagination of e.g. blacklist entries);
-   *   cf. http://mollom.com/api#response-list
+   * @param delay The delay (ms).
    */
-  private <T> List<T> parseList(String xml, String bodyTag, Class<T> expectedType) throws MollomUnexpectedResponseException {
+  private static void backoff(long delay) throws MollomNoResponseException {
+    if (delay <= 0) {
+      return;
+    }
     try {
-      // We have to parse the XML into a Document before passing it to JAXB to
-      // get the body, because the Mollom service response returns the object
-      // wrapped in a <Response> object.
-      Document document = documentBuilder.parse(new InputSource(new StringReader(xml)));
-
-      List<T> list = new ArrayList<>();
-      NodeList bodyNodes = document.getElementsByTagName(bodyTag);
-      for (int i = 0; i < bodyNodes.getLength(); i++) {
-        Node bodyNode = bodyNodes.item(i);
-        list.add(unmarshaller.unmarshal(bodyNode, expectedType).getValue());
-      }
-      return list;
-    } catch (SAXException | IOException | JAXBException e) {
-      throw new MollomUnexpectedResponseException("Issue parsing response from Mollom server.", e);
+      Thread.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MollomNoResponseException("Request to Mollom service was interrupted.");
     }
   }
 }
@@ -1,26 +1,40 @@
 package com.mollom.client;
 
 import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientResponse;
-import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
+import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
+import com.sun.jersey.client.urlconnection.URLConnectionClientHandler;
 import com.sun.jersey.core.util.MultivaluedMapImpl;
-import com.sun.jersey.oauth.client.OAuthClientFilter;
-import com.sun.jersey.oauth.signature.OAuthParameters;
-import com.sun.jersey.oauth.signature.OAuthSecrets;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 
+import org.apache.http.client.HttpClient;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+
 /**
  * Builds a new MollomClient instance to interact with the Mollom service.
  *
  * The initial entry point for the Mollom API library.
  */
 public class MollomClientBuilder {
+  private final static Logger logger = Logger.getLogger("com.mollom.client.MollomClientBuilder");
 
   private static final String PRODUCTION_ENDPOINT = "http://rest.mollom.com/";
   private static final String TESTING_ENDPOINT = "http://dev.mollom.com/";
@@ -29,6 +43,23 @@ public class MollomClientBuilder {
   private static final int DEFAULT_RETRIES = 1;
   private static final int DEFAULT_CONNECTION_TIMEOUT = 1500;
   private static final int DEFAULT_READ_TIMEOUT = 1500;
+  private static final int DEFAULT_MAX_CONNECTIONS = 20;
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+  private static final int DEFAULT_CONNECTION_IDLE_TIMEOUT = 30000;
+  private static final int DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE = 20;
+  private static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD = 50;
+  private static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_DURATION = 1500;
+  private static final int DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE_THRESHOLD = 100;
+  private static final int DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = 10000;
+  private static final int DEFAULT_NOTIFICATION_QUEUE_DRAIN_TIMEOUT = 5000;
+  private static final int DEFAULT_OUTBOX_SEGMENT_SIZE = 1048576;
+  private static final int DEFAULT_OUTBOX_SYNC_INTERVAL = 100;
+  // Backoff of the retries of a deferred verification while Mollom cannot be
+  // contacted; retried until the client is destroyed.
+  private static final RetryPolicy VERIFICATION_RETRY_POLICY = RetryPolicy.none().withBackoff(1000, 60000);
+  // Retries of a deferred verification after server errors; about 17 minutes
+  // at most.
+  private static final RetryPolicy VERIFICATION_SERVER_ERROR_RETRY_POLICY = RetryPolicy.retries(10).withBackoff(1000, 600000);
 
   private static final String DEFAULT_CLIENT_NAME = "MollomJava";
   private static final String DEFAULT_CLIENT_VERSION = "2.1.0-SNAPSHOT";
@@ -37,9 +68,46 @@ public class MollomClientBuilder {
   private boolean testing;
 
   private String apiVersion;
-  private int retries;
+  private URI endpoint;
+  private RetryPolicy retryPolicy;
+  private Map<Operation, RetryPolicy> operationRetryPolicies;
+  private int retryBudgetCapacity;
+  private int retryBudgetRate;
   private int connectionTimeout;
   private int readTimeout;
+  private Executor executor;
+  private boolean localBlacklist;
+  private boolean localWhitelist;
+  private int classificationCacheSize;
+  private int classificationCacheTimeToLive;
+  private boolean requestCoalescing;
+  private boolean connectionPooling;
+  private int maxConnections;
+  private int maxConnectionsPerRoute;
+  private int connectionIdleTimeout;
+  private int connectionTimeToLive;
+  private TransportType transportType;
+  private boolean circuitBreaker;
+  private int circuitBreakerWindowSize;
+  private int circuitBreakerFailureRateThreshold;
+  private int circuitBreakerSlowCallDuration;
+  private int circuitBreakerSlowCallRateThreshold;
+  private int circuitBreakerOpenDuration;
+  private CircuitBreakerListener circuitBreakerListener;
+  private int hedgingPercentile;
+  private MetricsListener metricsListener;
+  private int notificationQueueCapacity;
+  private int notificationQueueConcurrency;
+  private OverflowPolicy notificationQueueOverflowPolicy;
+  private int notificationQueueDrainTimeout;
+  private File outboxDirectory;
+  private int outboxSegmentSize;
+  private int outboxSyncInterval;
+  private boolean fallbackClassifier;
+  private boolean deferredVerification;
+  private File verificationCacheFile;
+  private int verificationCacheTimeToLive;
+  private boolean jmx;
 
   // Client information sent to Mollom for support and statistics.
   private String platformName;
@@ -57,9 +125,25 @@ public class MollomClientBuilder {
   MollomClientBuilder() {
     testing = false;
     apiVersion = DEFAULT_API_VERSION;
-    retries = DEFAULT_RETRIES;
+    retryPolicy = RetryPolicy.retries(DEFAULT_RETRIES);
+    operationRetryPolicies = new EnumMap<>(Operation.class);
+    // A retried POST creates another CAPTCHA if only the response was lost.
+    operationRetryPolicies.put(Operation.CREATE_CAPTCHA, RetryPolicy.none());
     connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
     readTimeout = DEFAULT_READ_TIMEOUT;
+    maxConnections = DEFAULT_MAX_CONNECTIONS;
+    maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    connectionIdleTimeout = DEFAULT_CONNECTION_IDLE_TIMEOUT;
+    transportType = TransportType.JERSEY;
+    circuitBreakerWindowSize = DEFAULT_CIRCUIT_BREAKER_WINDOW_SIZE;
+    circuitBreakerFailureRateThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD;
+    circuitBreakerSlowCallDuration = DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_DURATION;
+    circuitBreakerSlowCallRateThreshold = DEFAULT_CIRCUIT_BREAKER_SLOW_CALL_RATE_THRESHOLD;
+    circuitBreakerOpenDuration = DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION;
+    notificationQueueOverflowPolicy = OverflowPolicy.BLOCK;
+    notificationQueueDrainTimeout = DEFAULT_NOTIFICATION_QUEUE_DRAIN_TIMEOUT;
+    outboxSegmentSize = DEFAULT_OUTBOX_SEGMENT_SIZE;
+    outboxSyncInterval = DEFAULT_OUTBOX_SYNC_INTERVAL;
     clientName = DEFAULT_CLIENT_NAME;
     clientVersion = DEFAULT_CLIENT_VERSION;
   }
@@ -82,6 +166,31 @@ public class MollomClientBuilder {
     return this;
   }
 
+  /**
+   * Sets the endpoint of the Mollom service; e.g., a local stub server to
+   * test against offline.
+   *
+   * Optional. Default value: http://rest.mollom.com/, or http://dev.mollom.com/
+   * in testing mode
+   *
+   * Overrides the endpoint of testing mode. The API version is appended to the
+   * given URI.
+   */
+  public MollomClientBuilder withEndpoint(URI endpoint) {
+    if (endpoint == null || !endpoint.isAbsolute() || endpoint.getHost() == null
+        || !("http".equals(endpoint.getScheme()) || "https".equals(endpoint.getScheme()))) {
+      throw new MollomConfigurationException("Property `endpoint` must be an absolute HTTP or HTTPS URI.");
+    }
+
+    // Resolve the API version below the path of the endpoint.
+    String path = endpoint.getRawPath();
+    if (path == null || !path.endsWith("/")) {
+      endpoint = URI.create(endpoint.toString() + "/");
+    }
+    this.endpoint = endpoint;
+    return this;
+  }
+
   /**
    * Sets the version of the Mollom API to use.
    *
@@ -103,13 +212,86 @@ public class MollomClientBuilder {
    * Sets the maximum number of times a Mollom API request will be retried.
    *
    * Optional. Default value: 1
+   *
+   * Shorthand for changing the maximum number of retries of the default retry
+   * policy. CAPTCHAs are not retried by default; see
+   * withRetryPolicy(Operation, RetryPolicy).
    */
   public MollomClientBuilder withRetries(int retries) {
     if (retries < 0) {
       throw new MollomConfigurationException("Property `retries` must be greater than or equal to 0.");
     }
 
-    this.retries = retries;
+    this.retryPolicy = retryPolicy.withMaxRetries(retries);
+    return this;
+  }
+
+  /**
+   * Sets the default policy for retrying failed Mollom API requests.
+   *
+   * Optional. Default value: RetryPolicy.retries(1)
+   *
+   * Requests are retried if Mollom could not be reached, after an exponential
+   * backoff with full jitter. Requests that Mollom answered with a server error
+   * (5xx) are only retried if the policy enables server error retries.
+   *
+   * Applies to all requests except createCaptcha(), which has its own policy;
+   * see withRetryPolicy(Operation, RetryPolicy).
+   */
+  public MollomClientBuilder withRetryPolicy(RetryPolicy retryPolicy) {
+    if (retryPolicy == null) {
+      throw new MollomConfigurationException("Property `retryPolicy` must not be null.");
+    }
+
+    this.retryPolicy = retryPolicy;
+    return this;
+  }
+
+  /**
+   * Sets the retry policy of a type of requests, overriding the default retry
+   * policy.
+   *
+   * Optional. Default value: RetryPolicy.none() for Operation.CREATE_CAPTCHA,
+   * the default retry policy for all other operations.
+   *
+   * CAPTCHAs are not retried by default, since a retried request creates
+   * another CAPTCHA if only the response was lost. Set a policy for
+   * Operation.CREATE_CAPTCHA to retry them anyway.
+   */
+  public MollomClientBuilder withRetryPolicy(Operation operation, RetryPolicy retryPolicy) {
+    if (operation == null) {
+      throw new MollomConfigurationException("Property `operation` must not be null.");
+    }
+    if (retryPolicy == null) {
+      throw new MollomConfigurationException("Property `retryPolicy` must not be null.");
+    }
+
+    this.operationRetryPolicies.put(operation, retryPolicy);
+    return this;
+  }
+
+  /**
+   * Limits the rate of retries of all requests of the client.
+   *
+   * Optional. Default value: unlimited
+   *
+   * Every retry takes a token from a bucket, which is refilled at a constant
+   * rate. If the bucket is empty, failed requests are not retried, so that
+   * retries do not multiply the load on Mollom during outages.
+   *
+   * @param capacity The maximum number of retries in a burst.
+   * @param retriesPerSecond The sustained number of retries per second.
+   */
+  public MollomClientBuilder withRetryBudget(int capacity, int retriesPerSecond) {
+    if (capacity <= 0) {
+      throw new MollomConfigurationException("Property `capacity` must be greater than 0.");
+    }
+    if (retriesPerSecond < 0) {
+      throw new MollomConfigurationException("Property `retriesPerSecond` must be greater than or equal to 0.");
+    }
+
+    this.retryBudgetCapacity = capacity;
+    this.retryBudgetRate = retriesPerSecond;
     return this;
   }
 
@@ -145,6 +327,553 @@ public class MollomClientBuilder {
     return this;
   }
 
+  /**
+   * Sets the HTTP implementation used to send requests to Mollom.
+   *
+   * Optional. Default value: JERSEY
+   *
+   * JDK_HTTP_CLIENT multiplexes concurrent requests over a single HTTP/2
+   * connection and requires Java 11 or later. HTTP/2 is only negotiated with
+   * an https endpoint; against an http:// endpoint, the JDK HttpClient only
+   * tries an h2c upgrade and otherwise uses HTTP/1.1. It manages its
+   * connections itself; the connection pooling options only apply to JERSEY.
+   */
+  public MollomClientBuilder withTransport(TransportType transportType) {
+    if (transportType == null) {
+      throw new MollomConfigurationException("Property `transportType` must not be null.");
+    }
+
+    this.transportType = transportType;
+    return this;
+  }
+
+  /**
+   * Enables a pool of persistent (keep-alive) HTTP connections.
+   *
+   * Optional. Default value: false
+   *
+   * By default, every request uses a JDK HttpURLConnection, which reuses
+   * connections only opportunistically and cannot be limited or monitored.
+   * With pooling enabled, all requests of the MollomClient share one pool of
+   * connections; see MollomClient.getConnectionPoolStatistics().
+   */
+  public MollomClientBuilder withConnectionPooling(boolean connectionPooling) {
+    this.connectionPooling = connectionPooling;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of pooled connections.
+   *
+   * Optional. Default value: 20
+   *
+   * Only applies if connection pooling is enabled. Requests wait for a free
+   * connection if all connections are in use.
+   */
+  public MollomClientBuilder withMaxConnections(int maxConnections) {
+    if (maxConnections <= 0) {
+      throw new MollomConfigurationException("Property `maxConnections` must be greater than 0.");
+    }
+
+    this.maxConnections = maxConnections;
+    return this;
+  }
+
+  /**
+   * Sets the maximum number of pooled connections per route (host).
+   *
+   * Optional. Default value: 20
+   *
+   * Only applies if connection pooling is enabled.
+   */
+  public MollomClientBuilder withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+    if (maxConnectionsPerRoute <= 0) {
+      throw new MollomConfigurationException("Property `maxConnectionsPerRoute` must be greater than 0.");
+    }
+
+    this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    return this;
+  }
+
+  /**
+   * Sets the time (ms) after which idle pooled connections are closed.
+   *
+   * Optional. Default value: 30000 (ms)
+   *
+   * Only applies if connection pooling is enabled. A value of 0 means that
+   * idle connections are kept open until the server closes them.
+   */
+  public MollomClientBuilder withConnectionIdleTimeout(int connectionIdleTimeout) {
+    if (connectionIdleTimeout < 0) {
+      throw new MollomConfigurationException("Property `connectionIdleTimeout` must be greater than or equal to 0.");
+    }
+
+    this.connectionIdleTimeout = connectionIdleTimeout;
+    return this;
+  }
+
+  /**
+   * Sets the time (ms) after which pooled connections are closed, regardless
+   * of their activity.
+   *
+   * Optional. Default value: 0
+   *
+   * Only applies if connection pooling is enabled. A value of 0 means no limit.
+   * Limiting the lifetime of connections allows to pick up DNS changes of the
+   * Mollom service.
+   */
+  public MollomClientBuilder withConnectionTimeToLive(int connectionTimeToLive) {
+    if (connectionTimeToLive < 0) {
+      throw new MollomConfigurationException("Property `connectionTimeToLive` must be greater than or equal to 0.");
+    }
+
+    this.connectionTimeToLive = connectionTimeToLive;
+    return this;
+  }
+
+  /**
+   * Enables a circuit breaker for requests to Mollom.
+   *
+   * Optional. Default value: false
+   *
+   * If too many of the recent requests failed or were slow, the circuit breaker
+   * opens: all requests fail immediately with a MollomNoResponseException,
+   * instead of waiting for timeouts and retries of an unavailable service.
+   * After the open duration, a few trial requests decide whether the breaker
+   * closes again. Each attempt of a request counts as a call; requests that
+   * were answered with a status below 500 are successful.
+   *
+   * @see MollomClient#getCircuitBreakerState()
+   */
+  public MollomClientBuilder withCircuitBreaker(boolean circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+    return this;
+  }
+
+  /**
+   * Sets the number of recent calls the circuit breaker evaluates.
+   *
+   * Optional. Default value: 20
+   *
+   * The circuit breaker does not open before this number of calls was made.
+   */
+  public MollomClientBuilder withCircuitBreakerWindowSize(int windowSize) {
+    if (windowSize <= 0) {
+      throw new MollomConfigurationException("Property `windowSize` must be greater than 0.");
+    }
+
+    this.circuitBreakerWindowSize = windowSize;
+    return this;
+  }
+
+  /**
+   * Sets the percentage of failed calls at which the circuit breaker opens.
+   *
+   * Optional. Default value: 50
+   */
+  public MollomClientBuilder withCircuitBreakerFailureRateThreshold(int failureRateThreshold) {
+    if (failureRateThreshold <= 0 || failureRateThreshold > 100) {
+      throw new MollomConfigurationException("Property `failureRateThreshold` must be between 1 and 100.");
+    }
+
+    this.circuitBreakerFailureRateThreshold = failureRateThreshold;
+    return this;
+  }
+
+  /**
+   * Sets the percentage of slow calls at which the circuit breaker opens.
+   *
+   * Optional. Default value: 1500 (ms), 100 (%)
+   *
+   * @param slowCallDuration The duration (ms) above which a call is slow.
+   * @param slowCallRateThreshold The percentage of slow calls at which the
+   *   circuit breaker opens.
+   */
+  public MollomClientBuilder withCircuitBreakerSlowCallThreshold(int slowCallDuration, int slowCallRateThreshold) {
+    if (slowCallDuration <= 0) {
+      throw new MollomConfigurationException("Property `slowCallDuration` must be greater than 0.");
+    }
+    if (slowCallRateThreshold <= 0 || slowCallRateThreshold > 100) {
+      throw new MollomConfigurationException("Property `slowCallRateThreshold` must be between 1 and 100.");
+    }
+
+    this.circuitBreakerSlowCallDuration = slowCallDuration;
+    this.circuitBreakerSlowCallRateThreshold = slowCallRateThreshold;
+    return this;
+  }
+
+  /**
+   * Sets the time (ms) the circuit breaker stays open before trial requests
+   * are sent.
+   *
+   * Optional. Default value: 10000 (ms)
+   */
+  public MollomClientBuilder withCircuitBreakerOpenDuration(int openDuration) {
+    if (openDuration <= 0) {
+      throw new MollomConfigurationException("Property `openDuration` must be greater than 0.");
+    }
+
+    this.circuitBreakerOpenDuration = openDuration;
+    return this;
+  }
+
+  /**
+   * Sets a listener for state transitions of the circuit breaker.
+   *
+   * Optional. Default value: n/a
+   *
+   * Transitions are also logged.
+   */
+  public MollomClientBuilder withCircuitBreakerListener(CircuitBreakerListener listener) {
+    this.circuitBreakerListener = listener;
+    return this;
+  }
+
+  /**
+   * Enables hedged requests.
+   *
+   * Optional. Default value: disabled
+   *
+   * If an idempotent request is outstanding for longer than the given
+   * percentile of the observed latencies, an identical hedge request is sent,
+   * and the first response is used. This cuts the tail latency caused by
+   * occasional slow connections, at the cost of a few additional requests.
+   *
+   * Only idempotent requests are hedged: getting and listing blacklist and
+   * whitelist entries, and rechecking content that has an ID. The first
+   * request is sent on the calling thread, and hedge requests on daemon threads
+   * of the client; the losing request is aborted.
+   *
+   * @param percentile The latency percentile after which a hedge request is
+   *   sent; e.g., 95.
+   *
+   * @see MollomClient#getHedgingStatistics()
+   */
+  public MollomClientBuilder withHedging(int percentile) {
+    if (percentile <= 0 || percentile >= 100) {
+      throw new MollomConfigurationException("Property `percentile` must be between 1 and 99.");
+    }
+
+    this.hedgingPercentile = percentile;
+    return this;
+  }
+
+  /**
+   * Enables the notification queue, which sends feedback and stored/deleted
+   * notifications in the background.
+   *
+   * Optional. Default value: disabled
+   *
+   * MollomClient.queueFeedback(), queueMarkAsStored(), and queueMarkAsDeleted()
+   * return immediately; the given number of background threads send the queued
+   * notifications. A queued notification is replaced by a later notification
+   * for the same content or CAPTCHA; e.g., content that is marked as stored and
+   * then deleted before the first notification was sent results in a single
+   * request.
+   *
+   * @param capacity The maximum number of queued notifications.
+   * @param concurrency The number of notifications sent at the same time.
+   *
+   * @see MollomClient#getNotificationQueueStatistics()
+   */
+  public MollomClientBuilder withNotificationQueue(int capacity, int concurrency) {
+    if (capacity <= 0) {
+      throw new MollomConfigurationException("Property `capacity` must be greater than 0.");
+    }
+    if (concurrency <= 0) {
+      throw new MollomConfigurationException("Property `concurrency` must be greater than 0.");
+    }
+
+    this.notificationQueueCapacity = capacity;
+    this.notificationQueueConcurrency = concurrency;
+    return this;
+  }
+
+  /**
+   * Sets what happens to notifications that are queued while the notification
+   * queue is full.
+   *
+   * Optional. Default value: BLOCK
+   */
+  public MollomClientBuilder withNotificationQueueOverflowPolicy(OverflowPolicy overflowPolicy) {
+    if (overflowPolicy == null) {
+      throw new MollomConfigurationException("Property `overflowPolicy` must be configured.");
+    }
+
+    this.notificationQueueOverflowPolicy = overflowPolicy;
+    return this;
+  }
+
+  /**
+   * Sets the maximum time (ms) that MollomClient.destroy() waits for queued
+   * notifications to be sent; notifications that are still queued afterwards
+   * are dropped.
+   *
+   * Optional. Default value: 5000
+   */
+  public MollomClientBuilder withNotificationQueueDrainTimeout(int drainTimeout) {
+    if (drainTimeout < 0) {
+      throw new MollomConfigurationException("Property `drainTimeout` must be greater than or equal to 0.");
+    }
+
+    this.notificationQueueDrainTimeout = drainTimeout;
+    return this;
+  }
+
+  /**
+   * Enables a durable outbox for feedback and stored/deleted notifications in
+   * the given directory.
+   *
+   * Optional. Default value: disabled
+   *
+   * Every feedback and stored/deleted notification is appended to a journal in
+   * the directory before it is sent. If Mollom is unreachable, the call returns
+   * normally, and a background thread sends the notification once Mollom is
+   * reachable again; notifications that were not acknowledged by Mollom are
+   * also sent after the client is restarted. Notifications are replayed in
+   * order; a notification that is superseded by a later one for the same
+   * content or CAPTCHA is skipped.
+   *
+   * The directory must not be shared by multiple clients.
+   *
+   * @see MollomClient#getOutboxStatistics()
+   */
+  public MollomClientBuilder withOutbox(File directory) {
+    if (directory == null) {
+      throw new MollomConfigurationException("Property `directory` must be configured.");
+    }
+
+    this.outboxDirectory = directory;
+    return this;
+  }
+
+  /**
+   * Sets the size (bytes) of the segment files of the outbox. A segment file is
+   * deleted once all of its notifications were acknowledged.
+   *
+   * Optional. Default value: 1048576
+   */
+  public MollomClientBuilder withOutboxSegmentSize(int segmentSize) {
+    if (segmentSize < 4096) {
+      throw new MollomConfigurationException("Property `segmentSize` must be greater than or equal to 4096.");
+    }
+
+    this.outboxSegmentSize = segmentSize;
+    return this;
+  }
+
+  /**
+   * Sets the maximum time (ms) after which journaled notifications are forced
+   * to disk. Writes within an interval are forced at once; notifications that
+   * were journaled shortly before a crash of the operating system may be lost.
+   *
+   * Optional. Default value: 100
+   */
+  public MollomClientBuilder withOutboxSyncInterval(int syncInterval) {
+    if (syncInterval <= 0) {
+      throw new MollomConfigurationException("Property `syncInterval` must be greater than 0.");
+    }
+
+    this.outboxSyncInterval = syncInterval;
+    return this;
+  }
+
+  /**
+   * Sets a listener that receives the latency, status, and size of every
+   * request, as well as retries and content classifications.
+   *
+   * Optional. Default value: none
+   *
+   * The listener is invoked synchronously on the requesting thread; it should
+   * return quickly, e.g., by updating the meters of a metrics library.
+   *
+   * @see MollomClient#getMetrics()
+   */
+  public MollomClientBuilder withMetricsListener(MetricsListener metricsListener) {
+    this.metricsListener = metricsListener;
+    return this;
+  }
+
+  /**
+   * Exposes the latencies and counters of the client via JMX.
+   *
+   * Optional. Default value: false
+   *
+   * The metrics are registered with the platform MBean server as
+   * com.mollom.client:type=MollomClient,name=(public key), and unregistered
+   * when the client is destroyed.
+   *
+   * @see MollomClientMXBean
+   */
+  public MollomClientBuilder withJmx(boolean jmx) {
+    this.jmx = jmx;
+    return this;
+  }
+
+  /**
+   * Sets the executor to run asynchronous requests on.
+   *
+   * Optional. Default value: a cached thread pool owned by the MollomClient.
+   *
+   * Asynchronous requests block a thread of the executor until the request and
+   * all of its retries are finished; size the executor accordingly. A given
+   * executor is not shut down when the MollomClient is destroyed.
+   */
+  public MollomClientBuilder withExecutor(Executor executor) {
+    this.executor = executor;
+    return this;
+  }
+
+  /**
+   * Enables a local mirror of the site's blacklist.
+   *
+   * Optional. Default value: false
+   *
+   * The blacklist is loaded when the client is built. Content that matches an
+   * enabled blacklist entry is classified as spam locally, without a request to
+   * Mollom; see MollomClient.checkContent(). Changes made through other clients
+   * are only picked up by MollomClient.refreshLocalBlacklist().
+   */
+  public MollomClientBuilder withLocalBlacklist(boolean localBlacklist) {
+    this.localBlacklist = localBlacklist;
+    return this;
+  }
+
+  /**
+   * Enables a local index of the site's whitelist.
+   *
+   * Optional. Default value: false
+   *
+   * The whitelist is loaded when the client is built. Content of an author that
+   * matches an enabled whitelist entry is classified as ham locally, without a
+   * request to Mollom; see MollomClient.checkContent(). Changes made through
+   * other clients are only picked up by MollomClient.refreshLocalWhitelist().
+   */
+  public MollomClientBuilder withLocalWhitelist(boolean localWhitelist) {
+    this.localWhitelist = localWhitelist;
+    return this;
+  }
+
+  /**
+   * Enables a local fallback classifier for content checks that cannot reach
+   * Mollom.
+   *
+   * Optional. Default value: false
+   *
+   * If Mollom cannot be reached after all retries (or the circuit breaker is
+   * open, or the deadline passed), MollomClient.checkContent() classifies the
+   * content locally instead of throwing MollomNoResponseException, and sets
+   * its reason to "fallback". The spam score combines a filled honeypot, the
+   * number and density of links in the post body, the posting rate of the
+   * author in the last minute, and the local blacklist and whitelist, if
+   * enabled. Only SPAM checks are answered; checks without SPAM still throw.
+   *
+   * Fallback classifications are not cached, and are counted by
+   * MollomClient.getMetrics().getFallbackCount().
+   */
+  public MollomClientBuilder withFallbackClassifier(boolean fallbackClassifier) {
+    this.fallbackClassifier = fallbackClassifier;
+    return this;
+  }
+
+  /**
+   * Verifies the API keys in the background.
+   *
+   * Optional. Default value: false
+   *
+   * By default, build() verifies the API keys and sends the site configuration
+   * to Mollom before it returns, and throws if the keys are invalid. With
+   * deferred verification, build() returns at once, and the verification (and
+   * the initial load of the local blacklist and whitelist, if enabled) runs on
+   * a background thread. While Mollom cannot be reached, the verification is
+   * retried with an exponential backoff of up to one minute. Server errors are
+   * retried 10 times with a backoff of up to 10 minutes; the verification then
+   * fails, like it fails if Mollom rejects the keys. Requests may be sent
+   * before the verification completed; with invalid keys, they fail like the
+   * verification.
+   *
+   * @see MollomClient#getVerification()
+   */
+  public MollomClientBuilder withDeferredVerification(boolean deferredVerification) {
+    this.deferredVerification = deferredVerification;
+    return this;
+  }
+
+  /**
+   * Enables a local cache of the verification of the API keys.
+   *
+   * Optional. Default value: disabled
+   *
+   * Mollom suspends API keys that are verified excessively; every client
+   * verifies them once when it is built. With the cache, a successful
+   * verification is recorded in the given file, and clients built within the
+   * time to live with the same endpoint, API keys, and site configuration skip
+   * the verification request; e.g., on frequent redeployments.
+   *
+   * The file holds a hash of the configuration, not the API keys.
+   *
+   * @param file The cache file; may be shared by multiple processes.
+   * @param timeToLive The time (ms) after which a verification expires; e.g.,
+   *   86400000 for one day.
+   */
+  public MollomClientBuilder withVerificationCache(File file, int timeToLive) {
+    if (file == null) {
+      throw new MollomConfigurationException("Property `file` must be configured.");
+    }
+    if (timeToLive <= 0) {
+      throw new MollomConfigurationException("Property `timeToLive` must be greater than 0.");
+    }
+
+    this.verificationCacheFile = file;
+    this.verificationCacheTimeToLive = timeToLive;
+    return this;
+  }
+
+  /**
+   * Enables a cache of content classifications.
+   *
+   * Optional. Default value: disabled
+   *
+   * New content that equals a recently checked content (e.g., double-clicked or
+   * replayed form submissions) is classified from the cache without a request
+   * to Mollom. Content is compared by a hash of the post, the author fields,
+   * and the requested checks, ignoring differences in whitespace. Content
+   * classified from the cache has no content ID.
+   *
+   * @param maximumSize The maximum number of cached classifications; the least
+   *   recently used classification is evicted when the cache is full.
+   * @param timeToLive The time (ms) after which a cached classification expires.
+   */
+  public MollomClientBuilder withClassificationCache(int maximumSize, int timeToLive) {
+    if (maximumSize <= 0) {
+      throw new MollomConfigurationException("Property `maximumSize` must be greater than 0.");
+    }
+    if (timeToLive <= 0) {
+      throw new MollomConfigurationException("Property `timeToLive` must be greater than 0.");
+    }
+
+    this.classificationCacheSize = maximumSize;
+    this.classificationCacheTimeToLive = timeToLive;
+    return this;
+  }
+
+  /**
+   * Enables coalescing of concurrent equal content checks.
+   *
+   * Optional. Default value: false
+   *
+   * Concurrent checkContent() calls for equal content (e.g., a spam bot posting
+   * the same payload from many IP addresses at once), as well as concurrent
+   * rechecks of the same content, share a single request to Mollom. Content is
+   * compared like in the classification cache, but regardless of the author IP
+   * address. All callers get the classification of the shared request; only
+   * the caller that sent it gets the new content ID, the others get none.
+   */
+  public MollomClientBuilder withRequestCoalescing(boolean requestCoalescing) {
+    this.requestCoalescing = requestCoalescing;
+    return this;
+  }
+
   /**
    * Sets the Mollom client name.
    *
@@ -238,26 +967,10 @@ public class MollomClientBuilder {
    * Builds the MollomClient object as configured.
    *
    * @throws MollomConfigurationException If could not authenticate with the Mollom service.
+   *   With deferred verification, the verification future of the client fails
+   *   instead.
    */
   public MollomClient build(String publicKey, String privateKey) {
-    Client client = new Client();
-    client.setConnectTimeout(connectionTimeout);
-    client.setReadTimeout(readTimeout);
-
-    OAuthParameters oauthParams = new OAuthParameters()
-      .signatureMethod("HMAC-SHA1")
-      .consumerKey(publicKey)
-      .version("1.0");
-    OAuthSecrets oauthSecrets = new OAuthSecrets()
-      .consumerSecret(privateKey);
-    ClientFilter oauthFilter = new OAuthClientFilter(client.getProviders(), oauthParams, oauthSecrets);
-    client.addFilter(oauthFilter);
-
-    String rootUrl = testing ? TESTING_ENDPOINT : PRODUCTION_ENDPOINT;
-    WebResource rootResource = client
-      .resource(rootUrl)
-      .path(apiVersion);
-
     // Verify that API keys exist.
     if (publicKey == null || publicKey.equals("")) {
       throw new MollomConfigurationException("The property `publicKey` must be configured.");
@@ -295,23 +1008,209 @@ public class MollomClientBuilder {
       }
       postParams.put("expectedLanguages", expectedLanguageCodes);
     }
-    ClientResponse response = rootResource
-      .path("site")
-      .path(publicKey)
-      .accept(MediaType.APPLICATION_XML).type(MediaType.APPLICATION_FORM_URLENCODED)
-      .post(ClientResponse.class, postParams);
-    if (response.getStatus() != 200) {
-      throw new MollomConfigurationException("Invalid public/private key.");
+
+    URI baseUri = endpoint != null ? endpoint : URI.create(testing ? TESTING_ENDPOINT : PRODUCTION_ENDPOINT);
+    URI rootUri = baseUri.resolve(apiVersion + "/");
+    ConnectionPool connectionPool = null;
+    ResourceUris resourceUris = new ResourceUris(rootUri);
+    OAuthSigner signer = new OAuthSigner(publicKey, privateKey);
+    Transport transport;
+    if (transportType == TransportType.JDK_HTTP_CLIENT) {
+      transport = new JdkHttpTransport(resourceUris, signer, connectionTimeout, readTimeout, executor);
+    } else {
+      if (connectionPooling) {
+        connectionPool = new ConnectionPool(maxConnections, maxConnectionsPerRoute, connectionIdleTimeout, connectionTimeToLive);
+      }
+      transport = createJerseyTransport(resourceUris, signer, connectionPool);
+    }
+
+    VerificationCache verificationCache = null;
+    String configHash = null;
+    boolean verified = false;
+    if (verificationCacheFile != null) {
+      verificationCache = new VerificationCache(verificationCacheFile, verificationCacheTimeToLive);
+      configHash = VerificationCache.hash(rootUri, publicKey, privateKey, postParams);
+      verified = verificationCache.isVerified(configHash);
+    }
+    if (!verified && !deferredVerification) {
+      try {
+        verifySite(transport, publicKey, postParams, verificationCache, configHash);
+      } catch (MollomNoResponseException | MollomUnexpectedResponseException e) {
+        close(transport, connectionPool);
+        throw new MollomConfigurationException("Failed to contact Mollom service.", e);
+      } catch (MollomConfigurationException e) {
+        close(transport, connectionPool);
+        throw e;
+      }
+      verified = true;
+    }
+
+    ClassificationCache classificationCache = null;
+    if (classificationCacheSize > 0) {
+      classificationCache = new ClassificationCache(classificationCacheSize, classificationCacheTimeToLive);
+    }
+
+    CircuitBreaker breaker = null;
+    if (circuitBreaker) {
+      breaker = new CircuitBreaker(circuitBreakerWindowSize, circuitBreakerFailureRateThreshold,
+          circuitBreakerSlowCallDuration, circuitBreakerSlowCallRateThreshold, circuitBreakerOpenDuration,
+          circuitBreakerListener);
+    }
+
+    Map<Operation, RetryPolicy> retryPolicies = new EnumMap<>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      RetryPolicy operationRetryPolicy = operationRetryPolicies.get(operation);
+      retryPolicies.put(operation, operationRetryPolicy != null ? operationRetryPolicy : retryPolicy);
+    }
+    RetryBudget retryBudget = null;
+    if (retryBudgetCapacity > 0) {
+      retryBudget = new RetryBudget(retryBudgetCapacity, retryBudgetRate);
+    }
+
+    NotificationQueue notificationQueue = null;
+    if (notificationQueueCapacity > 0) {
+      notificationQueue = new NotificationQueue(notificationQueueCapacity, notificationQueueConcurrency,
+          notificationQueueOverflowPolicy);
     }
 
-    // Initialize the resources.
-    WebResource contentResource = rootResource.path("content");
-    WebResource captchaResource = rootResource.path("captcha");
-    WebResource feedbackResource = rootResource.path("feedback");
-    WebResource blacklistResource = rootResource.path("blacklist").path(publicKey);
-    WebResource whitelistResource = rootResource.path("whitelist").path(publicKey);
+    Outbox outbox = null;
+    if (outboxDirectory != null) {
+      try {
+        outbox = new Outbox(outboxDirectory, outboxSegmentSize, outboxSyncInterval);
+      } catch (IOException e) {
+        close(transport, connectionPool);
+        throw new MollomConfigurationException("Failed to open outbox.", e);
+      }
+    }
 
-    MollomClient mollomClient = new MollomClient(client, contentResource, captchaResource, feedbackResource, blacklistResource, whitelistResource, retries);
+    ClientOptions options = new ClientOptions();
+    options.transport = transport;
+    options.publicKey = publicKey;
+    options.retryPolicies = retryPolicies;
+    options.retryBudget = retryBudget;
+    options.executor = executor;
+    options.localBlacklist = localBlacklist;
+    options.localWhitelist = localWhitelist;
+    options.classificationCache = classificationCache;
+    options.requestCoalescing = requestCoalescing;
+    options.connectionPool = connectionPool;
+    options.circuitBreaker = breaker;
+    options.hedgingPercentile = hedgingPercentile;
+    options.attemptTimeout = connectionTimeout > 0 && readTimeout > 0 ? connectionTimeout + readTimeout : 0;
+    options.metricsListener = metricsListener;
+    options.notificationQueue = notificationQueue;
+    options.notificationQueueDrainTimeout = notificationQueueDrainTimeout;
+    options.outbox = outbox;
+    options.fallbackClassifier = fallbackClassifier;
+    options.verification = verified ? null : new CompletableFuture<Void>();
+    final MollomClient mollomClient = new MollomClient(options);
+    if (outbox != null) {
+      outbox.start(mollomClient::replay);
+    }
+    if (jmx) {
+      mollomClient.registerMBean(publicKey);
+    }
+    if (verified) {
+      loadLocalLists(mollomClient);
+    } else {
+      final VerificationCache cache = verificationCache;
+      final String hash = configHash;
+      mollomClient.verifyInBackground(() -> {
+        verifySite(transport, publicKey, postParams, cache, hash);
+        loadLocalLists(mollomClient);
+        return null;
+      }, VERIFICATION_RETRY_POLICY, VERIFICATION_SERVER_ERROR_RETRY_POLICY);
+    }
     return mollomClient;
   }
+
+  /**
+   * Verifies the API keys and sends the site configuration to Mollom, and
+   * records the verification in the cache, if enabled.
+   *
+   * @param verificationCache The verification cache, or null if disabled.
+   *
+   * @throws MollomNoResponseException If Mollom could not be contacted; the
+   *   verification may be retried.
+   * @throws MollomUnexpectedResponseException If Mollom answered with a server
+   *   error; the verification may be retried a limited number of times.
+   * @throws MollomConfigurationException If the keys are invalid.
+   */
+  private static void verifySite(Transport transport, String publicKey, Map<String, List<String>> siteParams,
+      VerificationCache verificationCache, String configHash)
+      throws MollomNoResponseException, MollomUnexpectedResponseException {
+    int status;
+    try (TransportResponse response = transport.send("POST", "site/" + publicKey, null, siteParams, 0)) {
+      status = response.getStatus();
+    } catch (IOException e) {
+      throw new MollomNoResponseException("Failed to contact Mollom service.", e);
+    }
+    if (status >= 500) {
+      throw new MollomUnexpectedResponseException("Mollom service answered the verification with status " + status + ".");
+    }
+    if (status != 200) {
+      throw new MollomConfigurationException("Invalid public/private key.");
+    }
+    if (verificationCache != null) {
+      verificationCache.store(configHash);
+    }
+  }
+
+  private void loadLocalLists(MollomClient mollomClient) {
+    if (localBlacklist) {
+      try {
+        mollomClient.refreshLocalBlacklist();
+      } catch (MollomException e) {
+        // The local blacklist is an optimization only; all content is checked
+        // by Mollom until it is refreshed.
+        logger.log(Level.WARNING, "Failed to load local blacklist.", e);
+      }
+    }
+    if (localWhitelist) {
+      try {
+        mollomClient.refreshLocalWhitelist();
+      } catch (MollomException e) {
+        logger.log(Level.WARNING, "Failed to load local whitelist.", e);
+      }
+    }
+  }
+
+  /**
+   * Creates a Jersey client that signs all requests with the given signer.
+   *
+   * @param connectionPool The pool of connections to use, or null to use the
+   *   JDK HttpURLConnection.
+   */
+  private JerseyTransport createJerseyTransport(ResourceUris resourceUris, OAuthSigner signer,
+      ConnectionPool connectionPool) {
+    Client client;
+    if (connectionPool != null) {
+      ClientConfig config = new DefaultApacheHttpClient4Config();
+      config.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER, connectionPool.getConnectionManager());
+      // The Apache HttpClient handler ignores the timeouts of the Jersey client.
+      HttpParams httpParams = new BasicHttpParams();
+      HttpConnectionParams.setConnectionTimeout(httpParams, connectionTimeout);
+      HttpConnectionParams.setSoTimeout(httpParams, readTimeout);
+      config.getProperties().put(ApacheHttpClient4Config.PROPERTY_HTTP_PARAMS, httpParams);
+      ApacheHttpClient4 apacheClient = ApacheHttpClient4.create(config);
+      HttpClient httpClient = apacheClient.getClientHandler().getHttpClient();
+      if (httpClient instanceof AbstractHttpClient) {
+        ((AbstractHttpClient) httpClient).addRequestInterceptor(JerseyTransport.requestInterceptor());
+      }
+      client = apacheClient;
+    } else {
+      client = new Client(new URLConnectionClientHandler(JerseyTransport.abortableConnections()));
+    }
+    client.setConnectTimeout(connectionTimeout);
+    client.setReadTimeout(readTimeout);
+
+    return new JerseyTransport(client, resourceUris, signer, connectionTimeout, readTimeout);
+  }
+
+  private static void close(Transport transport, ConnectionPool connectionPool) {
+    transport.close();
+    if (connectionPool != null) {
+      connectionPool.shutdown();
+    }
+  }
 }
@@ -0,0 +1,58 @@
+package com.mollom.client;
+
+import java.util.Map;
+
+/**
+ * Management interface of a MollomClient, registered as
+ * com.mollom.client:type=MollomClient,name=(public key) if JMX is enabled.
+ *
+ * All counters are cumulative since the client was built.
+ *
+ * @see MollomClientBuilder#withJmx(boolean)
+ */
+public interface MollomClientMXBean {
+
+  /**
+   * @return The number of request attempts, including retries.
+   */
+  long getRequestCount();
+
+  long getRetryCount();
+
+  /**
+   * @return The number of requests Mollom answered with a 4xx status.
+   */
+  long getClientErrorCount();
+
+  /**
+   * @return The number of requests Mollom answered with a 5xx status.
+   */
+  long getServerErrorCount();
+
+  /**
+   * @return The number of request attempts that could not reach Mollom.
+   */
+  long getNoResponseCount();
+
+  long getBytesSent();
+
+  long getBytesReceived();
+
+  long getHamCount();
+
+  long getSpamCount();
+
+  long getUnsureCount();
+
+  /**
+   * @return The number of contents classified locally, because Mollom could
+   *   not be reached.
+   */
+  long getFallbackCount();
+
+  /**
+   * @return The latencies of requests by Mollom resource (content, captcha,
+   *   feedback, blacklist, whitelist).
+   */
+  Map<String, LatencySnapshot> getLatencies();
+}
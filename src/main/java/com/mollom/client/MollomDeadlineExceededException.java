@@ -0,0 +1,12 @@
+package com.mollom.client;
+
+/**
+ * Thrown in case a call to Mollom did not complete before its deadline.
+ *
+ * @see MollomClient#withDeadline(Deadline)
+ */
+public class MollomDeadlineExceededException extends MollomNoResponseException {
+  public MollomDeadlineExceededException(String message) {
+    super(message);
+  }
+}
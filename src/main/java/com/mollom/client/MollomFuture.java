@@ -0,0 +1,107 @@
+package com.mollom.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * CompletableFuture of an asynchronous Mollom API request.
+ *
+ * Unlike a plain CompletableFuture, cancelling a MollomFuture interrupts the
+ * thread executing the request, so that no further retries are attempted.
+ * Cancellation is not propagated from dependent stages; cancel the future
+ * returned by MollomClient itself.
+ */
+class MollomFuture<T> extends CompletableFuture<T> {
+  private volatile Future<?> task;
+
+  /**
+   * Runs the given call on the executor.
+   *
+   * @return A future completed with the result or the exception of the call.
+   */
+  static <T> MollomFuture<T> supply(Callable<T> call, Executor executor) {
+    MollomFuture<T> future = new MollomFuture<>();
+    FutureTask<Void> task = new FutureTask<>(() -> {
+      if (future.isDone()) {
+        return;
+      }
+      try {
+        future.complete(call.call());
+      } catch (Throwable e) {
+        future.completeExceptionally(e);
+      }
+    }, null);
+    future.task = task;
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Waits for the given future and returns its result.
+   *
+   * @throws MollomException
+   *   The exception the future was completed with, unwrapped. Exceptions other
+   *   than MollomException and RuntimeException are wrapped.
+   */
+  static <T> T await(Future<T> future) throws MollomException {
+    return await(future, null);
+  }
+
+  /**
+   * Waits for the given future until the deadline and returns its result.
+   *
+   * @param deadline The deadline, or null to wait indefinitely.
+   *
+   * @throws MollomException
+   *   The exception the future was completed with, unwrapped. Exceptions other
+   *   than MollomException and RuntimeException are wrapped.
+   * @throws MollomDeadlineExceededException
+   *   If the future was not completed before the deadline.
+   */
+  static <T> T await(Future<T> future, Deadline deadline) throws MollomException {
+    try {
+      if (deadline != null) {
+        return future.get(deadline.timeRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+      }
+      return future.get();
+    } catch (TimeoutException e) {
+      throw new MollomDeadlineExceededException("Deadline of the request to Mollom service exceeded.");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MollomNoResponseException("Request to Mollom service was interrupted.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof MollomException) {
+        throw (MollomException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new MollomUnexpectedResponseException("Mollom request failed.", cause);
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    boolean cancelled = super.cancel(mayInterruptIfRunning);
+    Future<?> task = this.task;
+    if (cancelled && task != null) {
+      task.cancel(true);
+    }
+    return cancelled;
+  }
+}
@@ -7,4 +7,8 @@ public class MollomNoResponseException extends MollomException {
   public MollomNoResponseException(String message) {
     super(message);
   }
+
+  public MollomNoResponseException(String message, Throwable cause) {
+    super(message, cause);
+  }
 }
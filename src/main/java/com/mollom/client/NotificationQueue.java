@@ -0,0 +1,291 @@
+package com.mollom.client;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded queue of fire-and-forget notifications (feedback, stored and deleted
+ * content), sent in the background by a fixed number of worker threads.
+ *
+ * Notifications with the same key (e.g., the content ID) are coalesced: a
+ * queued notification is replaced by a later one, so that only the latest
+ * state is sent. Notifications with the same key are never sent concurrently,
+ * so they reach Mollom in order.
+ */
+class NotificationQueue {
+  private final static Logger logger = Logger.getLogger("com.mollom.client.NotificationQueue");
+
+  /**
+   * A request to send to Mollom.
+   */
+  interface Notification {
+    void send() throws MollomException;
+
+    /**
+     * Called instead of send() if the notification is not sent.
+     *
+     * @param superseded Whether a later notification with the same key replaced
+     *   this one; false if it was dropped.
+     */
+    default void discard(boolean superseded) {
+    }
+  }
+
+  private final int capacity;
+  private final OverflowPolicy overflowPolicy;
+  private final Thread[] workers;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  // Signaled whenever a notification was sent.
+  private final Condition sendDone = lock.newCondition();
+  // Queued notifications in order; guarded by lock. Replacing the value of a
+  // key keeps its position.
+  private final LinkedHashMap<Object, Notification> queued = new LinkedHashMap<>();
+  // Keys of the notifications being sent; guarded by lock.
+  private final Set<Object> inFlight = new HashSet<>();
+  private boolean shutdown;
+
+  private final AtomicLong sentCount = new AtomicLong();
+  private final AtomicLong coalescedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+
+  /**
+   * @param capacity The maximum number of queued notifications.
+   * @param concurrency The number of notifications sent at the same time.
+   */
+  NotificationQueue(int capacity, int concurrency, OverflowPolicy overflowPolicy) {
+    this.capacity = capacity;
+    this.overflowPolicy = overflowPolicy;
+    ThreadFactory threadFactory = new DaemonThreadFactory("mollom-notification");
+    workers = new Thread[concurrency];
+    for (int i = 0; i < concurrency; i++) {
+      workers[i] = threadFactory.newThread(this::work);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Queues a notification.
+   *
+   * @param key Notifications with an equal key are coalesced; null to never
+   *   coalesce the notification.
+   *
+   * @return Whether the notification was queued or sent; false if it was
+   *   dropped.
+   */
+  boolean offer(Object key, Notification notification) {
+    if (key == null) {
+      key = new Object();
+    }
+    lock.lock();
+    try {
+      while (!shutdown && queued.size() >= capacity && !queued.containsKey(key)) {
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+          try {
+            notFull.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCount.incrementAndGet();
+            notification.discard(false);
+            return false;
+          }
+        } else if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+          Iterator<Notification> oldest = queued.values().iterator();
+          Notification dropped = oldest.next();
+          oldest.remove();
+          droppedCount.incrementAndGet();
+          dropped.discard(false);
+        } else if (overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+          if (inFlight.contains(key)) {
+            // Wait for the notification with the same key, so that the caller
+            // does not overtake it.
+            try {
+              sendDone.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              droppedCount.incrementAndGet();
+              notification.discard(false);
+              return false;
+            }
+            continue;
+          }
+          inFlight.add(key);
+          lock.unlock();
+          try {
+            send(notification);
+          } finally {
+            lock.lock();
+            sent(key);
+          }
+          return true;
+        } else {
+          droppedCount.incrementAndGet();
+          notification.discard(false);
+          return false;
+        }
+      }
+      if (shutdown) {
+        droppedCount.incrementAndGet();
+        notification.discard(false);
+        return false;
+      }
+      Notification replaced = queued.put(key, notification);
+      if (replaced != null) {
+        coalescedCount.incrementAndGet();
+        replaced.discard(true);
+      } else {
+        notEmpty.signal();
+      }
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops accepting notifications, and waits for the queued notifications to
+   * be sent; notifications that are still queued after the timeout are
+   * dropped.
+   *
+   * @param timeout The maximum time (ms) to wait.
+   */
+  void shutdown(long timeout) {
+    lock.lock();
+    try {
+      shutdown = true;
+      notEmpty.signalAll();
+      notFull.signalAll();
+      sendDone.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    try {
+      for (Thread worker : workers) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining > 0) {
+          worker.join(remaining);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    List<Notification> leftovers;
+    lock.lock();
+    try {
+      leftovers = new ArrayList<>(queued.values());
+      queued.clear();
+    } finally {
+      lock.unlock();
+    }
+    for (Notification notification : leftovers) {
+      notification.discard(false);
+    }
+    int dropped = leftovers.size();
+    if (dropped > 0) {
+      droppedCount.addAndGet(dropped);
+      logger.log(Level.WARNING, "Dropped " + dropped + " notifications that were not sent to Mollom before shutdown.");
+    }
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+  }
+
+  NotificationQueueStatistics getStatistics() {
+    lock.lock();
+    try {
+      return new NotificationQueueStatistics(queued.size(), inFlight.size(), sentCount.get(), coalescedCount.get(),
+          droppedCount.get(), failedCount.get());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void work() {
+    while (true) {
+      Object key;
+      Notification notification;
+      lock.lock();
+      try {
+        Map.Entry<Object, Notification> next;
+        while ((next = nextSendable()) == null) {
+          if (shutdown && queued.isEmpty()) {
+            return;
+          }
+          try {
+            notEmpty.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        key = next.getKey();
+        notification = next.getValue();
+        queued.remove(key);
+        inFlight.add(key);
+        notFull.signal();
+      } finally {
+        lock.unlock();
+      }
+
+      try {
+        send(notification);
+      } finally {
+        lock.lock();
+        try {
+          sent(key);
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks the notification with the given key as no longer in flight; must be
+   * called with the lock held.
+   */
+  private void sent(Object key) {
+    inFlight.remove(key);
+    // A notification with the same key may have become sendable.
+    notEmpty.signal();
+    sendDone.signalAll();
+  }
+
+  /**
+   * @return The oldest queued notification whose key is not in flight, or
+   *   null; must be called with the lock held.
+   */
+  private Map.Entry<Object, Notification> nextSendable() {
+    for (Map.Entry<Object, Notification> entry : queued.entrySet()) {
+      if (!inFlight.contains(entry.getKey())) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private void send(Notification notification) {
+    try {
+      notification.send();
+      sentCount.incrementAndGet();
+    } catch (MollomException | RuntimeException e) {
+      failedCount.incrementAndGet();
+      logger.log(Level.WARNING, "Failed to send notification to Mollom service.", e);
+    }
+  }
+}
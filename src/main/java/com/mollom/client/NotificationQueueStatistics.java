@@ -0,0 +1,75 @@
+package com.mollom.client;
+
+/**
+ * Snapshot of the statistics of the notification queue.
+ *
+ * @see MollomClient#getNotificationQueueStatistics()
+ */
+public class NotificationQueueStatistics {
+  private final int queued;
+  private final int inFlight;
+  private final long sentCount;
+  private final long coalescedCount;
+  private final long droppedCount;
+  private final long failedCount;
+
+  NotificationQueueStatistics(int queued, int inFlight, long sentCount, long coalescedCount, long droppedCount,
+      long failedCount) {
+    this.queued = queued;
+    this.inFlight = inFlight;
+    this.sentCount = sentCount;
+    this.coalescedCount = coalescedCount;
+    this.droppedCount = droppedCount;
+    this.failedCount = failedCount;
+  }
+
+  /**
+   * @return The number of notifications waiting to be sent.
+   */
+  public int getQueued() {
+    return queued;
+  }
+
+  /**
+   * @return The number of notifications currently being sent.
+   */
+  public int getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return The number of notifications sent successfully.
+   */
+  public long getSentCount() {
+    return sentCount;
+  }
+
+  /**
+   * @return The number of notifications that replaced a queued notification
+   *   for the same content or CAPTCHA.
+   */
+  public long getCoalescedCount() {
+    return coalescedCount;
+  }
+
+  /**
+   * @return The number of notifications dropped because the queue was full or
+   *   the client was destroyed.
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * @return The number of notifications that failed after retries.
+   */
+  public long getFailedCount() {
+    return failedCount;
+  }
+
+  @Override
+  public String toString() {
+    return "NotificationQueueStatistics[queued=" + queued + ", inFlight=" + inFlight + ", sentCount=" + sentCount
+        + ", coalescedCount=" + coalescedCount + ", droppedCount=" + droppedCount + ", failedCount=" + failedCount + "]";
+  }
+}
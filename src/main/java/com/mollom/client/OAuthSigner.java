@@ -0,0 +1,278 @@
+package com.mollom.client;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signs requests with OAuth 1.0 HMAC-SHA1, using the consumer key and secret
+ * of a site (two-legged, without token).
+ *
+ * The signing key is computed once; each thread reuses its own Mac instance,
+ * and nonces are drawn from thread-local randomness, so that concurrent
+ * requests never contend on a lock. The signature base string is built from
+ * the encoded parameters of the request (see FormEncoder) into a buffer that
+ * each thread reuses, so that signing only allocates the header.
+ *
+ * Thread-safe.
+ */
+class OAuthSigner {
+  private static final String SIGNATURE_METHOD = "HMAC-SHA1";
+  private static final String VERSION = "1.0";
+  private static final byte[] ENCODED_AMPERSAND = "%26".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] ENCODED_EQUALS = "%3D".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] ENCODED_PERCENT = "%25".getBytes(StandardCharsets.US_ASCII);
+  // Larger base strings are built into a buffer that is not kept.
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  private final String consumerKey;
+  private final String encodedConsumerKey;
+  private final SecretKeySpec signingKey;
+  private final ThreadLocal<Mac> macs;
+
+  OAuthSigner(String consumerKey, String consumerSecret) {
+    this.consumerKey = consumerKey;
+    this.encodedConsumerKey = FormEncoder.encode(consumerKey);
+    // The key is the encoded consumer secret and the (empty) token secret.
+    this.signingKey = new SecretKeySpec((FormEncoder.encode(consumerSecret) + "&").getBytes(StandardCharsets.US_ASCII),
+        "HmacSHA1");
+    this.macs = ThreadLocal.withInitial(this::createMac);
+  }
+
+  /**
+   * @return The value of the Authorization header of the request.
+   *
+   * @param uri The URI of the request, without query.
+   * @param queryParams The query parameters, or null.
+   * @param formParams The form parameters, or null.
+   */
+  String sign(String method, URI uri, Map<String, List<String>> queryParams, Map<String, List<String>> formParams) {
+    return sign(method, baseUri(uri), new FormEncoder().addAll(queryParams), new FormEncoder().addAll(formParams));
+  }
+
+  /**
+   * @see #sign(String, URI, Map, Map)
+   */
+  String sign(String method, URI uri, Map<String, List<String>> queryParams, Map<String, List<String>> formParams,
+      String nonce, long timestamp) {
+    return sign(method, baseUri(uri), new FormEncoder().addAll(queryParams), new FormEncoder().addAll(formParams),
+        nonce, timestamp);
+  }
+
+  /**
+   * @return The value of the Authorization header of the request.
+   *
+   * @param baseUri The URI of the request, as returned by baseUri().
+   * @param queryParams The encoded query parameters.
+   * @param formParams The encoded form parameters.
+   */
+  String sign(String method, byte[] baseUri, FormEncoder queryParams, FormEncoder formParams) {
+    StringBuilder nonce = SCRATCH.get().nonce;
+    nonce.setLength(0);
+    long random = ThreadLocalRandom.current().nextLong();
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      nonce.append(Character.forDigit((int) (random >>> shift) & 0xF, 16));
+    }
+    return sign(method, baseUri, queryParams, formParams, nonce, System.currentTimeMillis() / 1000);
+  }
+
+  /**
+   * @see #sign(String, byte[], FormEncoder, FormEncoder)
+   */
+  String sign(String method, byte[] baseUri, FormEncoder queryParams, FormEncoder formParams, CharSequence nonce,
+      long timestamp) {
+    Scratch scratch = SCRATCH.get();
+    scratch.timestamp.setLength(0);
+    scratch.timestamp.append(timestamp);
+    FormEncoder oauthParams = scratch.oauthParams.reset()
+        .add("oauth_consumer_key", consumerKey)
+        .add("oauth_nonce", nonce)
+        .add("oauth_signature_method", SIGNATURE_METHOD)
+        .add("oauth_timestamp", scratch.timestamp)
+        .add("oauth_version", VERSION);
+    FormEncoder[] sources = scratch.sources;
+    sources[0] = queryParams;
+    sources[1] = formParams;
+    sources[2] = oauthParams;
+
+    // Every byte of the parameters is encoded again at most, into 3 bytes.
+    int capacity = method.length() + baseUri.length + 2
+        + 3 * (queryParams.length() + formParams.length() + oauthParams.length() + 2);
+    byte[] baseString = scratch.baseString;
+    if (capacity > baseString.length) {
+      baseString = new byte[capacity];
+      if (capacity <= MAX_RETAINED_CAPACITY) {
+        scratch.baseString = baseString;
+      }
+    }
+    int length = 0;
+    for (int i = 0; i < method.length(); i++) {
+      baseString[length++] = (byte) Character.toUpperCase(method.charAt(i));
+    }
+    baseString[length++] = '&';
+    System.arraycopy(baseUri, 0, baseString, length, baseUri.length);
+    length += baseUri.length;
+    baseString[length++] = '&';
+
+    int pairCount = sort(scratch, sources);
+    int[] order = scratch.order;
+    for (int i = 0; i < pairCount; i++) {
+      FormEncoder source = sources[order[i] >>> 24];
+      int pair = order[i] & 0xFFFFFF;
+      if (i > 0) {
+        length = write(baseString, length, ENCODED_AMPERSAND);
+      }
+      length = writeEncoded(baseString, length, source.buffer(), source.nameStart(pair), source.valueStart(pair) - 1);
+      length = write(baseString, length, ENCODED_EQUALS);
+      length = writeEncoded(baseString, length, source.buffer(), source.valueStart(pair), source.pairEnd(pair));
+    }
+    sources[0] = null;
+    sources[1] = null;
+
+    Mac mac = macs.get();
+    mac.update(baseString, 0, length);
+    byte[] signature = scratch.signature;
+    byte[] encodedSignature = scratch.encodedSignature;
+    try {
+      mac.doFinal(signature, 0);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Failed to sign request.", e);
+    }
+    int signatureLength = Base64.getEncoder().encode(signature, encodedSignature);
+
+    StringBuilder header = scratch.header;
+    header.setLength(0);
+    header.append("OAuth oauth_consumer_key=\"").append(encodedConsumerKey).append("\", oauth_nonce=\"");
+    appendAscii(header, oauthParams, 1);
+    header.append("\", oauth_signature=\"");
+    for (int i = 0; i < signatureLength; i++) {
+      char c = (char) encodedSignature[i];
+      if (c == '+') {
+        header.append("%2B");
+      } else if (c == '/') {
+        header.append("%2F");
+      } else if (c == '=') {
+        header.append("%3D");
+      } else {
+        header.append(c);
+      }
+    }
+    header.append("\", oauth_signature_method=\"").append(SIGNATURE_METHOD).append("\", oauth_timestamp=\"");
+    appendAscii(header, oauthParams, 3);
+    header.append("\", oauth_version=\"").append(VERSION).append('"');
+    return header.toString();
+  }
+
+  /**
+   * @return The scheme, authority, and path of the URI, with a lowercase
+   *   scheme and host and without the default port, encoded for the signature
+   *   base string. Constant per resource, so transports may cache it.
+   */
+  static byte[] baseUri(URI uri) {
+    String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+    int port = uri.getPort();
+    StringBuilder normalized = new StringBuilder(64).append(scheme).append("://").append(uri.getHost().toLowerCase(Locale.ROOT));
+    if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+      normalized.append(':').append(port);
+    }
+    String path = uri.getRawPath();
+    normalized.append(path == null || path.isEmpty() ? "/" : path);
+    return FormEncoder.encode(normalized.toString()).getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private Mac createMac() {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA1");
+      mac.init(signingKey);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new MollomConfigurationException("Failed to sign request.", e);
+    }
+  }
+
+  /**
+   * Sorts the pairs of all sources by name, then by value, into the order of
+   * the scratch, as source index (high 8 bits) and pair index.
+   *
+   * @return The number of pairs.
+   */
+  private static int sort(Scratch scratch, FormEncoder[] sources) {
+    int pairCount = 0;
+    for (FormEncoder source : sources) {
+      pairCount += source.pairCount();
+    }
+    if (pairCount > scratch.order.length) {
+      scratch.order = new int[Math.max(pairCount, scratch.order.length * 2)];
+    }
+    int[] order = scratch.order;
+    int sorted = 0;
+    for (int s = 0; s < sources.length; s++) {
+      for (int pair = 0; pair < sources[s].pairCount(); pair++) {
+        // Insertion sort; requests have a few dozen parameters at most.
+        int ref = (s << 24) | pair;
+        int i = sorted++;
+        while (i > 0 && compare(sources, order[i - 1], ref) > 0) {
+          order[i] = order[i - 1];
+          i--;
+        }
+        order[i] = ref;
+      }
+    }
+    return pairCount;
+  }
+
+  private static int compare(FormEncoder[] sources, int refA, int refB) {
+    return FormEncoder.compare(sources[refA >>> 24], refA & 0xFFFFFF, sources[refB >>> 24], refB & 0xFFFFFF);
+  }
+
+  private static int write(byte[] out, int offset, byte[] bytes) {
+    System.arraycopy(bytes, 0, out, offset, bytes.length);
+    return offset + bytes.length;
+  }
+
+  /**
+   * Writes already encoded bytes encoded once more; only the percent sign is
+   * not unreserved.
+   */
+  private static int writeEncoded(byte[] out, int offset, byte[] encoded, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (encoded[i] == '%') {
+        offset = write(out, offset, ENCODED_PERCENT);
+      } else {
+        out[offset++] = encoded[i];
+      }
+    }
+    return offset;
+  }
+
+  private static void appendAscii(StringBuilder out, FormEncoder params, int pair) {
+    byte[] buffer = params.buffer();
+    for (int i = params.valueStart(pair); i < params.pairEnd(pair); i++) {
+      out.append((char) buffer[i]);
+    }
+  }
+
+  /**
+   * Buffers of a thread, reused by every request it signs.
+   */
+  private static class Scratch {
+    final FormEncoder oauthParams = new FormEncoder();
+    final FormEncoder[] sources = new FormEncoder[3];
+    final StringBuilder nonce = new StringBuilder(16);
+    final StringBuilder timestamp = new StringBuilder(16);
+    final StringBuilder header = new StringBuilder(256);
+    final byte[] signature = new byte[20];
+    final byte[] encodedSignature = new byte[28];
+    int[] order = new int[64];
+    byte[] baseString = new byte[4096];
+  }
+}
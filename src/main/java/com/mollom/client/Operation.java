@@ -0,0 +1,49 @@
+package com.mollom.client;
+
+/**
+ * Denotes a type of request to the Mollom service.
+ *
+ * @see MollomClientBuilder#withRetryPolicy(Operation, RetryPolicy)
+ */
+public enum Operation {
+
+  /**
+   * checkContent(), markAsStored(), and markAsDeleted().
+   */
+  CHECK_CONTENT,
+
+  /**
+   * createCaptcha(); not retried by default.
+   */
+  CREATE_CAPTCHA,
+
+  /**
+   * checkCaptcha().
+   */
+  CHECK_CAPTCHA,
+
+  /**
+   * sendFeedback().
+   */
+  SEND_FEEDBACK,
+
+  /**
+   * saveBlacklistEntry() and saveWhitelistEntry().
+   */
+  SAVE_ENTRY,
+
+  /**
+   * deleteBlacklistEntry() and deleteWhitelistEntry().
+   */
+  DELETE_ENTRY,
+
+  /**
+   * getBlacklistEntry() and getWhitelistEntry().
+   */
+  GET_ENTRY,
+
+  /**
+   * listBlacklistEntries(), listWhitelistEntries(), and the entry iterators.
+   */
+  LIST_ENTRIES;
+}
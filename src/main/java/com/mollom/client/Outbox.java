@@ -0,0 +1,543 @@
+package com.mollom.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Durable journal of mutations (feedback, stored and deleted content) that
+ * must reach Mollom eventually.
+ *
+ * Every mutation is appended to a memory-mapped segment file before it is
+ * sent, and acknowledged by an appended ack record after Mollom accepted or
+ * rejected it. Mutations that could not be sent because Mollom was unreachable
+ * are released to a single replay thread, which resends them in order once
+ * Mollom is reachable again; after a restart, all unacknowledged mutations
+ * are replayed. The mapped segments are forced to disk in batches, at most
+ * every sync interval.
+ *
+ * Segments are deleted from the oldest one on, once all of their mutations
+ * were acknowledged; acks are never deleted before the mutations they refer
+ * to.
+ *
+ * Record format: length (int), CRC32 of the payload (int), payload. Payload:
+ * type (byte), sequence (long), timestamp (long), and for mutations the key,
+ * operation, path, and parameters. A length of 0 marks the end of a segment.
+ */
+class Outbox {
+  private final static Logger logger = Logger.getLogger("com.mollom.client.Outbox");
+
+  private static final byte MUTATION = 1;
+  private static final byte ACK = 2;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final Pattern SEGMENT_NAME = Pattern.compile("outbox-(\\d+)\\.log");
+
+  private static final long INITIAL_REPLAY_BACKOFF = 1000;
+  private static final long MAX_REPLAY_BACKOFF = 60000;
+
+  /**
+   * A journaled mutation.
+   */
+  static class Mutation {
+    final long sequence;
+    final long timestamp;
+    // Mutations with an equal key supersede each other; null if none.
+    final String key;
+    final Operation operation;
+    final String path;
+    final Map<String, List<String>> params;
+    Segment segment;
+
+    Mutation(long sequence, long timestamp, String key, Operation operation, String path,
+        Map<String, List<String>> params) {
+      this.sequence = sequence;
+      this.timestamp = timestamp;
+      this.key = key;
+      this.operation = operation;
+      this.path = path;
+      this.params = params;
+    }
+  }
+
+  /**
+   * Sends replayed mutations to Mollom.
+   */
+  interface Sender {
+    void send(Mutation mutation) throws MollomException;
+  }
+
+  private static class Segment {
+    final File file;
+    final int number;
+    // Null once the segment is no longer appended to.
+    MappedByteBuffer buffer;
+    int unackedCount;
+
+    Segment(File file, int number) {
+      this.file = file;
+      this.number = number;
+    }
+  }
+
+  /**
+   * The mutations of a key.
+   */
+  private static class KeyState {
+    long latestSequence;
+    int unackedCount;
+  }
+
+  private final File directory;
+  private final int segmentSize;
+
+  private final Object lock = new Object();
+  // Oldest first; the last segment is appended to. Guarded by lock.
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+  // Unacknowledged mutations by sequence; guarded by lock.
+  private final TreeMap<Long, Mutation> unacked = new TreeMap<>();
+  // Unacknowledged mutations to be sent by the replay thread; guarded by lock.
+  private final TreeMap<Long, Mutation> replayable = new TreeMap<>();
+  // Keys with unacknowledged mutations; guarded by lock.
+  private final Map<String, KeyState> keys = new HashMap<>();
+  private long nextSequence = 1;
+  private boolean dirty;
+  private long replayedCount;
+
+  private final ScheduledExecutorService syncer;
+  private Thread replayer;
+  private volatile boolean closed;
+
+  /**
+   * Opens the journal in the given directory, and recovers all mutations that
+   * were not acknowledged yet.
+   *
+   * @param segmentSize The size (bytes) of a segment file.
+   * @param syncInterval The maximum time (ms) after which appended records are
+   *   forced to disk.
+   */
+  Outbox(File directory, int segmentSize, int syncInterval) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Failed to create outbox directory " + directory + ".");
+    }
+    recover();
+    replayable.putAll(unacked);
+    roll(0);
+    compact();
+
+    syncer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("mollom-outbox-sync"));
+    syncer.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Starts replaying released and recovered mutations.
+   */
+  void start(final Sender sender) {
+    replayer = new DaemonThreadFactory("mollom-outbox-replay").newThread(() -> replay(sender));
+    replayer.start();
+  }
+
+  /**
+   * Appends a mutation to the journal.
+   *
+   * @return The sequence of the mutation, or -1 if it could not be written.
+   */
+  long append(String key, Operation operation, String path, Map<String, List<String>> params) {
+    synchronized (lock) {
+      if (closed) {
+        return -1;
+      }
+      Mutation mutation = new Mutation(nextSequence, System.currentTimeMillis(), key, operation, path,
+          copy(params));
+      try {
+        mutation.segment = write(encode(MUTATION, mutation.sequence, mutation.timestamp, mutation));
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to append to outbox; the mutation is not durable.", e);
+        return -1;
+      }
+      nextSequence++;
+      track(mutation);
+      return mutation.sequence;
+    }
+  }
+
+  /**
+   * Marks a mutation as done; it is neither replayed nor recovered.
+   */
+  void acknowledge(long sequence) {
+    synchronized (lock) {
+      Mutation mutation = unacked.remove(sequence);
+      if (mutation == null) {
+        return;
+      }
+      replayable.remove(sequence);
+      untrack(mutation);
+      if (!closed) {
+        try {
+          write(encode(ACK, sequence, System.currentTimeMillis(), null));
+        } catch (IOException e) {
+          // The mutation is sent again after a restart.
+          logger.log(Level.WARNING, "Failed to append to outbox.", e);
+        }
+        compact();
+      }
+    }
+  }
+
+  /**
+   * Hands a mutation that could not be sent over to the replay thread.
+   */
+  void release(long sequence) {
+    synchronized (lock) {
+      Mutation mutation = unacked.get(sequence);
+      if (mutation != null) {
+        replayable.put(sequence, mutation);
+        lock.notifyAll();
+      }
+    }
+  }
+
+  OutboxStatistics getStatistics() {
+    synchronized (lock) {
+      long oldestAge = unacked.isEmpty() ? 0 : System.currentTimeMillis() - unacked.firstEntry().getValue().timestamp;
+      long diskSize = 0;
+      for (Segment segment : segments) {
+        diskSize += segment.file.length();
+      }
+      return new OutboxStatistics(unacked.size(), replayable.size(), Math.max(0, oldestAge), replayedCount,
+          segments.size(), diskSize);
+    }
+  }
+
+  /**
+   * Stops replaying and forces all records to disk; unacknowledged mutations
+   * are recovered when the outbox is opened again.
+   */
+  void close() {
+    synchronized (lock) {
+      closed = true;
+      lock.notifyAll();
+    }
+    if (replayer != null) {
+      replayer.interrupt();
+      try {
+        replayer.join(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    syncer.shutdownNow();
+    synchronized (lock) {
+      for (Segment segment : segments) {
+        if (segment.buffer != null) {
+          segment.buffer.force();
+          segment.buffer = null;
+        }
+      }
+    }
+  }
+
+  private void replay(Sender sender) {
+    long backoff = INITIAL_REPLAY_BACKOFF;
+    while (true) {
+      Mutation mutation;
+      synchronized (lock) {
+        while (!closed && replayable.isEmpty()) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        if (closed) {
+          return;
+        }
+        mutation = replayable.firstEntry().getValue();
+      }
+      if (isSuperseded(mutation)) {
+        acknowledge(mutation.sequence);
+        continue;
+      }
+      try {
+        sender.send(mutation);
+        acknowledge(mutation.sequence);
+        synchronized (lock) {
+          replayedCount++;
+        }
+        backoff = INITIAL_REPLAY_BACKOFF;
+      } catch (MollomNoResponseException e) {
+        // Mollom is still unreachable; retry the same mutation to keep the order.
+        if (closed) {
+          return;
+        }
+        try {
+          Thread.sleep(backoff);
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+        backoff = Math.min(backoff * 2, MAX_REPLAY_BACKOFF);
+      } catch (MollomException | RuntimeException e) {
+        logger.log(Level.WARNING, "Mollom service rejected replayed mutation; dropping it.", e);
+        acknowledge(mutation.sequence);
+      }
+    }
+  }
+
+  /**
+   * @return Whether a later mutation with the same key was journaled; e.g.,
+   *   content that was deleted after it was marked as stored.
+   */
+  private boolean isSuperseded(Mutation mutation) {
+    if (mutation.key == null) {
+      return false;
+    }
+    synchronized (lock) {
+      KeyState state = keys.get(mutation.key);
+      return state != null && state.latestSequence > mutation.sequence;
+    }
+  }
+
+  /**
+   * Counts an unacknowledged mutation; must be called with the lock held.
+   */
+  private void track(Mutation mutation) {
+    mutation.segment.unackedCount++;
+    unacked.put(mutation.sequence, mutation);
+    if (mutation.key != null) {
+      KeyState state = keys.get(mutation.key);
+      if (state == null) {
+        state = new KeyState();
+        keys.put(mutation.key, state);
+      }
+      state.latestSequence = Math.max(state.latestSequence, mutation.sequence);
+      state.unackedCount++;
+    }
+  }
+
+  /**
+   * Uncounts an acknowledged mutation; must be called with the lock held.
+   *
+   * The latest sequence of a key is kept while older mutations of the key are
+   * unacknowledged, so that they are not replayed after the latest one.
+   */
+  private void untrack(Mutation mutation) {
+    mutation.segment.unackedCount--;
+    if (mutation.key != null) {
+      KeyState state = keys.get(mutation.key);
+      if (--state.unackedCount == 0) {
+        keys.remove(mutation.key);
+      }
+    }
+  }
+
+  private void sync() {
+    MappedByteBuffer buffer;
+    synchronized (lock) {
+      if (!dirty || closed) {
+        return;
+      }
+      dirty = false;
+      buffer = segments.getLast().buffer;
+    }
+    buffer.force();
+  }
+
+  /**
+   * Writes a record to the current segment; must be called with the lock
+   * held.
+   *
+   * @return The segment the record was written to.
+   */
+  private Segment write(byte[] payload) throws IOException {
+    Segment segment = segments.getLast();
+    if (segment.buffer.remaining() < RECORD_HEADER_SIZE + payload.length + 4) {
+      segment.buffer.force();
+      segment.buffer = null;
+      roll(payload.length);
+      segment = segments.getLast();
+    }
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    segment.buffer.putInt(payload.length);
+    segment.buffer.putInt((int) crc.getValue());
+    segment.buffer.put(payload);
+    dirty = true;
+    return segment;
+  }
+
+  /**
+   * Starts a new segment that fits at least a record of the given size.
+   */
+  private void roll(int payloadSize) throws IOException {
+    int number = segments.isEmpty() ? 1 : segments.getLast().number + 1;
+    Segment segment = new Segment(new File(directory, String.format("outbox-%010d.log", number)), number);
+    int size = Math.max(segmentSize, RECORD_HEADER_SIZE + payloadSize + 4);
+    try (RandomAccessFile file = new RandomAccessFile(segment.file, "rw");
+        FileChannel channel = file.getChannel()) {
+      // The mapping stays valid after the channel is closed.
+      segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    segments.addLast(segment);
+  }
+
+  /**
+   * Deletes the oldest segments while all of their mutations are acknowledged;
+   * must be called with the lock held.
+   */
+  private void compact() {
+    while (segments.size() > 1 && segments.getFirst().unackedCount == 0) {
+      Segment segment = segments.removeFirst();
+      if (!segment.file.delete()) {
+        logger.log(Level.WARNING, "Failed to delete outbox segment " + segment.file + ".");
+      }
+    }
+  }
+
+  /**
+   * Reads all segments, and collects the mutations that were not
+   * acknowledged.
+   */
+  private void recover() throws IOException {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      throw new IOException("Failed to list outbox directory " + directory + ".");
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      Matcher matcher = SEGMENT_NAME.matcher(file.getName());
+      if (!matcher.matches()) {
+        continue;
+      }
+      Segment segment = new Segment(file, Integer.parseInt(matcher.group(1)));
+      segments.addLast(segment);
+      ByteBuffer buffer;
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+          FileChannel channel = raf.getChannel()) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+          break;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+          // Torn write before a crash; nothing after it was acknowledged.
+          logger.log(Level.WARNING, "Ignoring corrupt record in outbox segment " + file + ".");
+          break;
+        }
+        decode(payload, segment);
+      }
+    }
+  }
+
+  private void decode(byte[] payload, Segment segment) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    byte type = in.readByte();
+    long sequence = in.readLong();
+    long timestamp = in.readLong();
+    nextSequence = Math.max(nextSequence, sequence + 1);
+    if (type == ACK) {
+      Mutation mutation = unacked.remove(sequence);
+      if (mutation != null) {
+        untrack(mutation);
+      }
+      return;
+    }
+    String key = in.readBoolean() ? readString(in) : null;
+    Operation operation = Operation.valueOf(readString(in));
+    String path = readString(in);
+    int paramCount = in.readInt();
+    Map<String, List<String>> params = new LinkedHashMap<>();
+    for (int i = 0; i < paramCount; i++) {
+      String name = readString(in);
+      int valueCount = in.readInt();
+      List<String> values = new ArrayList<>(valueCount);
+      for (int j = 0; j < valueCount; j++) {
+        values.add(readString(in));
+      }
+      params.put(name, values);
+    }
+    Mutation mutation = new Mutation(sequence, timestamp, key, operation, path, params);
+    mutation.segment = segment;
+    track(mutation);
+  }
+
+  private static byte[] encode(byte type, long sequence, long timestamp, Mutation mutation) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(type);
+    out.writeLong(sequence);
+    out.writeLong(timestamp);
+    if (mutation != null) {
+      out.writeBoolean(mutation.key != null);
+      if (mutation.key != null) {
+        writeString(out, mutation.key);
+      }
+      writeString(out, mutation.operation.name());
+      writeString(out, mutation.path);
+      out.writeInt(mutation.params.size());
+      for (Map.Entry<String, List<String>> param : mutation.params.entrySet()) {
+        writeString(out, param.getKey());
+        out.writeInt(param.getValue().size());
+        for (String value : param.getValue()) {
+          writeString(out, value);
+        }
+      }
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  // DataOutput.writeUTF() is limited to 64 KB.
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static Map<String, List<String>> copy(Map<String, List<String>> params) {
+    Map<String, List<String>> copy = new LinkedHashMap<>();
+    if (params != null) {
+      for (Map.Entry<String, List<String>> param : params.entrySet()) {
+        copy.put(param.getKey(), new ArrayList<>(param.getValue()));
+      }
+    }
+    return copy;
+  }
+}
@@ -0,0 +1,76 @@
+package com.mollom.client;
+
+/**
+ * Snapshot of the statistics of the outbox.
+ *
+ * @see MollomClient#getOutboxStatistics()
+ */
+public class OutboxStatistics {
+  private final int backlog;
+  private final int pendingReplay;
+  private final long oldestAge;
+  private final long replayedCount;
+  private final int segmentCount;
+  private final long diskSize;
+
+  OutboxStatistics(int backlog, int pendingReplay, long oldestAge, long replayedCount, int segmentCount,
+      long diskSize) {
+    this.backlog = backlog;
+    this.pendingReplay = pendingReplay;
+    this.oldestAge = oldestAge;
+    this.replayedCount = replayedCount;
+    this.segmentCount = segmentCount;
+    this.diskSize = diskSize;
+  }
+
+  /**
+   * @return The number of journaled mutations that Mollom did not acknowledge
+   *   yet, including the ones being sent or queued.
+   */
+  public int getBacklog() {
+    return backlog;
+  }
+
+  /**
+   * @return The number of mutations waiting to be replayed, because Mollom was
+   *   unreachable or the client was restarted.
+   */
+  public int getPendingReplay() {
+    return pendingReplay;
+  }
+
+  /**
+   * @return The age (ms) of the oldest unacknowledged mutation; 0 if there is
+   *   none.
+   */
+  public long getOldestAge() {
+    return oldestAge;
+  }
+
+  /**
+   * @return The number of mutations that were replayed successfully.
+   */
+  public long getReplayedCount() {
+    return replayedCount;
+  }
+
+  /**
+   * @return The number of segment files on disk.
+   */
+  public int getSegmentCount() {
+    return segmentCount;
+  }
+
+  /**
+   * @return The total size (bytes) of the segment files on disk.
+   */
+  public long getDiskSize() {
+    return diskSize;
+  }
+
+  @Override
+  public String toString() {
+    return "OutboxStatistics[backlog=" + backlog + ", pendingReplay=" + pendingReplay + ", oldestAge=" + oldestAge
+        + ", replayedCount=" + replayedCount + ", segmentCount=" + segmentCount + ", diskSize=" + diskSize + "]";
+  }
+}
@@ -0,0 +1,32 @@
+package com.mollom.client;
+
+/**
+ * Denotes what happens to a notification that is queued while the notification
+ * queue is full.
+ *
+ * @see MollomClientBuilder#withNotificationQueueOverflowPolicy(OverflowPolicy)
+ */
+public enum OverflowPolicy {
+
+  /**
+   * The caller waits until the queue has room (backpressure). Default behavior.
+   */
+  BLOCK,
+
+  /**
+   * The new notification is dropped.
+   */
+  DROP_NEWEST,
+
+  /**
+   * The oldest queued notification is dropped to make room for the new one.
+   */
+  DROP_OLDEST,
+
+  /**
+   * The notification is sent synchronously on the calling thread, like the
+   * non-queued methods; if a notification of the same content is being sent,
+   * the caller waits for it first.
+   */
+  CALLER_RUNS;
+}
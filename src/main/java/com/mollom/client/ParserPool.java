@@ -0,0 +1,59 @@
+package com.mollom.client;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded, lock-free pool of non-thread-safe parser instances.
+ *
+ * Parsers (JAXB Unmarshallers, XML parsers) are expensive to create, but must
+ * not be used by multiple threads at the same time. A parser is borrowed for
+ * the duration of a single parse and returned afterwards. If the pool is
+ * empty, a new parser is created; if the pool is full, a returned parser is
+ * discarded. The pool therefore never blocks.
+ */
+class ParserPool<T> {
+  private final Callable<T> factory;
+  private final int maxIdle;
+
+  private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger idleCount = new AtomicInteger();
+
+  /**
+   * @param factory Creates a new parser instance.
+   * @param maxIdle Maximum number of idle parsers kept for reuse.
+   */
+  ParserPool(Callable<T> factory, int maxIdle) {
+    this.factory = factory;
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * Borrows a parser from the pool; it must be returned with release().
+   */
+  T acquire() {
+    T parser = idle.poll();
+    if (parser != null) {
+      idleCount.decrementAndGet();
+      return parser;
+    }
+    try {
+      return factory.call();
+    } catch (Exception e) {
+      throw new MollomConfigurationException("Failed to create XML parser.", e);
+    }
+  }
+
+  /**
+   * Returns a borrowed parser to the pool.
+   */
+  void release(T parser) {
+    if (idleCount.incrementAndGet() <= maxIdle) {
+      idle.offer(parser);
+    } else {
+      idleCount.decrementAndGet();
+    }
+  }
+}
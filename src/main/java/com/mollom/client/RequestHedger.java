@@ -0,0 +1,199 @@
+package com.mollom.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends hedged requests: if a request is outstanding for longer than a
+ * percentile of the observed latencies, a second, identical request is sent,
+ * and the first response wins.
+ *
+ * Hedging cuts the tail latency caused by occasional slow connections, at the
+ * cost of a few duplicate requests; it must only be used for idempotent
+ * requests. The losing request is aborted, so that it releases its connection
+ * at once.
+ *
+ * The first request is sent on the calling thread; hedge requests are sent on
+ * threads of the hedger, never on the executor of the client, so that callers
+ * running on a bounded executor cannot starve their own hedges.
+ */
+class RequestHedger {
+  private final LatencyTracker latencyTracker;
+  // The maximum time (ms) of an attempt with the configured timeouts; 0 if
+  // unbounded.
+  private final int attemptTimeout;
+  // Sends a hedge request once its delay elapsed.
+  private final ScheduledThreadPoolExecutor timer;
+  private final ExecutorService hedgeExecutor;
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong hedgeCount = new AtomicLong();
+  private final AtomicLong hedgeWinCount = new AtomicLong();
+
+  /**
+   * @param percentile The latency percentile after which a hedge request is
+   *   sent; e.g., 95.
+   * @param attemptTimeout The maximum time (ms) of a request with the
+   *   configured timeouts, or 0 if unbounded.
+   */
+  RequestHedger(double percentile, int attemptTimeout) {
+    this.latencyTracker = new LatencyTracker(percentile);
+    this.attemptTimeout = attemptTimeout;
+    this.timer = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("mollom-hedge-timer"));
+    this.timer.setRemoveOnCancelPolicy(true);
+    this.hedgeExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("mollom-hedge"));
+  }
+
+  /**
+   * Sends a request, and a hedge request if the first one is slow.
+   *
+   * @see Transport#send(String, String, Map, Map, int)
+   */
+  TransportResponse send(Transport transport, String method, String path, Map<String, List<String>> queryParams,
+      Map<String, List<String>> formParams, int timeout) throws IOException {
+    requestCount.incrementAndGet();
+    long hedgeDelay = latencyTracker.getPercentileLatency();
+    if (hedgeDelay < 0) {
+      // Not enough latencies observed yet.
+      long startTime = System.nanoTime();
+      TransportResponse response = transport.send(method, path, queryParams, formParams, timeout);
+      latencyTracker.record(System.nanoTime() - startTime);
+      return response;
+    }
+
+    Race race = new Race();
+    ScheduledFuture<?> hedgeTask;
+    try {
+      hedgeTask = timer.schedule(() -> hedge(race, transport, method, path, queryParams, formParams, timeout),
+          hedgeDelay, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      // Closed; send without a hedge.
+      hedgeTask = null;
+    }
+
+    TransportResponse response;
+    long startTime = System.nanoTime();
+    try {
+      response = transport.send(method, path, queryParams, formParams, timeout, race.primaryAbort);
+    } catch (IOException e) {
+      if (race.decided.get()) {
+        // Aborted, since the hedge won.
+        return awaitHedge(race, timeout, e);
+      }
+      if (hedgeTask == null || hedgeTask.cancel(false)) {
+        throw e;
+      }
+      // The hedge was sent already, and may still succeed.
+      return awaitHedge(race, timeout, e);
+    }
+    latencyTracker.record(System.nanoTime() - startTime);
+    if (race.decided.compareAndSet(false, true)) {
+      if (hedgeTask != null) {
+        hedgeTask.cancel(false);
+      }
+      race.hedgeAbort.abort();
+      return response;
+    }
+    // The hedge won at the same time.
+    response.close();
+    return awaitHedge(race, timeout, null);
+  }
+
+  HedgingStatistics getStatistics() {
+    long hedgeDelay = latencyTracker.getPercentileLatency();
+    return new HedgingStatistics(requestCount.get(), hedgeCount.get(), hedgeWinCount.get(),
+        hedgeDelay < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(hedgeDelay));
+  }
+
+  /**
+   * Stops sending hedge requests; called when the client is destroyed.
+   */
+  void close() {
+    timer.shutdownNow();
+    hedgeExecutor.shutdownNow();
+  }
+
+  /**
+   * Sends the hedge request, unless the first request completed already; runs
+   * on the timer.
+   */
+  private void hedge(final Race race, final Transport transport, final String method, final String path,
+      final Map<String, List<String>> queryParams, final Map<String, List<String>> formParams, final int timeout) {
+    if (race.decided.get()) {
+      return;
+    }
+    try {
+      hedgeExecutor.execute(() -> {
+        hedgeCount.incrementAndGet();
+        long startTime = System.nanoTime();
+        try {
+          TransportResponse response = transport.send(method, path, queryParams, formParams, timeout, race.hedgeAbort);
+          latencyTracker.record(System.nanoTime() - startTime);
+          if (race.decided.compareAndSet(false, true)) {
+            hedgeWinCount.incrementAndGet();
+            race.hedge.complete(response);
+            race.primaryAbort.abort();
+          } else {
+            response.close();
+            race.hedge.cancel(false);
+          }
+        } catch (Throwable e) {
+          race.hedge.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      race.hedge.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Waits for the response of the hedge request, at most for the timeout of an
+   * attempt; the hedge is aborted if it does not complete in time.
+   *
+   * @param primaryFailure The failure of the first request, thrown if the
+   *   hedge fails as well; or null.
+   */
+  private TransportResponse awaitHedge(Race race, int timeout, IOException primaryFailure) throws IOException {
+    int maxWait = timeout > 0 ? timeout : attemptTimeout;
+    try {
+      return maxWait > 0 ? race.hedge.get(maxWait, TimeUnit.MILLISECONDS) : race.hedge.get();
+    } catch (TimeoutException e) {
+      race.hedgeAbort.abort();
+      throw primaryFailure != null ? primaryFailure : new IOException("Hedge request to Mollom service timed out.");
+    } catch (InterruptedException e) {
+      race.hedgeAbort.abort();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Request to Mollom service was interrupted.");
+    } catch (ExecutionException e) {
+      if (primaryFailure != null) {
+        throw primaryFailure;
+      }
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    }
+  }
+
+  /**
+   * The first request and its hedge; the first successful response decides.
+   */
+  private static class Race {
+    final AtomicBoolean decided = new AtomicBoolean();
+    final AbortHandle primaryAbort = new AbortHandle();
+    final AbortHandle hedgeAbort = new AbortHandle();
+    // Completed with the response of the hedge if it won, or with its failure.
+    final CompletableFuture<TransportResponse> hedge = new CompletableFuture<>();
+  }
+}
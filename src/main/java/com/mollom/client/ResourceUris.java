@@ -0,0 +1,84 @@
+package com.mollom.client;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves resource paths against the API root of the Mollom service, caching
+ * the URI of each path and its form in the OAuth signature base string.
+ *
+ * Most requests go to a handful of paths (content, captcha, site/publicKey);
+ * rechecks of content go to a path per content, so the cache is bounded and
+ * simply cleared once full.
+ *
+ * Thread-safe.
+ */
+class ResourceUris {
+  private static final int MAX_SIZE = 256;
+
+  private final URI rootUri;
+  private final ConcurrentMap<String, Resource> resources = new ConcurrentHashMap<>();
+
+  /**
+   * @param rootUri The API root of the Mollom service; must end with a slash.
+   */
+  ResourceUris(URI rootUri) {
+    this.rootUri = rootUri;
+  }
+
+  /**
+   * @param path The resource path, relative to the API root; e.g., content/123.
+   *   IDs in the path are raw; they are percent-encoded here.
+   */
+  Resource get(String path) {
+    Resource resource = resources.get(path);
+    if (resource == null) {
+      URI uri = rootUri.resolve(encodePath(path));
+      resource = new Resource(uri, OAuthSigner.baseUri(uri));
+      if (resources.size() >= MAX_SIZE) {
+        resources.clear();
+      }
+      resources.put(path, resource);
+    }
+    return resource;
+  }
+
+  /**
+   * Percent-encodes each segment of the given path according to RFC 3986, like
+   * Jersey's WebResource.path(); e.g., an entry ID with a space or a colon.
+   */
+  static String encodePath(String path) {
+    int i = 0;
+    while (i < path.length() && isUnreservedOrSlash(path.charAt(i))) {
+      i++;
+    }
+    if (i == path.length()) {
+      return path;
+    }
+    StringBuilder encoded = new StringBuilder(path.length() + 16);
+    int start = 0;
+    int end;
+    while ((end = path.indexOf('/', start)) != -1) {
+      encoded.append(FormEncoder.encode(path.substring(start, end))).append('/');
+      start = end + 1;
+    }
+    return encoded.append(FormEncoder.encode(path.substring(start))).toString();
+  }
+
+  private static boolean isUnreservedOrSlash(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+        || c == '-' || c == '.' || c == '_' || c == '~' || c == '/';
+  }
+
+  static class Resource {
+    final URI uri;
+    // The encoded URI, as signed by the OAuthSigner.
+    final byte[] signatureBaseUri;
+
+    Resource(URI uri, byte[] signatureBaseUri) {
+      this.uri = uri;
+      this.signatureBaseUri = signatureBaseUri;
+    }
+  }
+}
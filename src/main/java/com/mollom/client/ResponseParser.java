@@ -0,0 +1,199 @@
+package com.mollom.client;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parses Mollom API responses into entity objects.
+ *
+ * Responses are decoded in a single pass straight from the response stream;
+ * the <response> envelope is skipped with StAX and the body elements are
+ * unmarshalled by JAXB from the same stream reader.
+ *
+ * Thread-safe: Unmarshallers are not, so each parse borrows its own instance
+ * from a pool. The pool is backed by a single JAXBContext, which is
+ * thread-safe and shared by all MollomClient instances.
+ */
+class ResponseParser {
+  private static final JAXBContext jaxbContext;
+  private static final XMLInputFactory inputFactory;
+
+  static {
+    try {
+      jaxbContext = JAXBContext.newInstance(Content.class, Captcha.class, BlacklistEntry.class, WhitelistEntry.class);
+    } catch (JAXBException e) {
+      throw new MollomConfigurationException("Failed to initialize JAXB context.", e);
+    }
+    inputFactory = XMLInputFactory.newInstance();
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+  }
+
+  // Element depth of the body in <response><bodyTag>.
+  private static final int BODY_DEPTH = 2;
+  // Element depth of list items in <response><list><bodyTag>.
+  private static final int LIST_ITEM_DEPTH = 3;
+
+  private final ParserPool<Unmarshaller> unmarshallers;
+
+  ResponseParser() {
+    // Keep enough idle parsers for all threads that are able to parse at the
+    // same time; more are created (and discarded) on demand.
+    int maxIdle = Runtime.getRuntime().availableProcessors() * 2;
+    unmarshallers = new ParserPool<>(jaxbContext::createUnmarshaller, maxIdle);
+  }
+
+  /**
+   * Parses an object out of a response body.
+   *
+   * Expects XML in the format of:
+   * <response>
+   *  <code>200</code>
+   *  <bodyTag>...</bodyTag>
+   * </response>
+   *
+   * @return JAXB unmarshalled expectedType object from the response.
+   *
+   * @throws MollomUnexpectedResponseException
+   *   Unable to parse the response from the Mollom server. Usually this means
+   *   there is a version mismatch between the client library and the Mollom API.
+   */
+  <T> T parseBody(InputStream xml, String bodyTag, Class<T> expectedType) throws MollomUnexpectedResponseException {
+    List<T> bodies = parse(xml, bodyTag, BODY_DEPTH, expectedType, true).getItems();
+    if (bodies.isEmpty()) {
+      throw new MollomUnexpectedResponseException("Missing <" + bodyTag + "> in response from Mollom server.");
+    }
+    return bodies.get(0);
+  }
+
+  /**
+   * Parses a list of objects out of a response body.
+   *
+   * Expects XML in the format of:
+   * <response>
+   *   <code>200</code>
+   *   <list>
+   *     <bodyTag>...</bodyTag>
+   *     ...
+   *   </list>
+   * </response>
+   *
+   * @return List of JAXB unmarshalled expectedType objects from the response.
+   *
+   * @throws MollomUnexpectedResponseException
+   *   Unable to parse the response from the Mollom server. Usually this means
+   *   there is a version mismatch between the client library and the Mollom API.
+   */
+  <T> List<T> parseList(InputStream xml, String bodyTag, Class<T> expectedType) throws MollomUnexpectedResponseException {
+    return parsePage(xml, bodyTag, expectedType).getItems();
+  }
+
+  /**
+   * Parses a page of a list of objects out of a response body.
+   *
+   * Expects XML in the format of:
+   * <response>
+   *   <code>200</code>
+   *   <list>
+   *     <bodyTag>...</bodyTag>
+   *     ...
+   *   </list>
+   *   <listCount>...</listCount>
+   *   <listOffset>...</listOffset>
+   *   <listTotal>...</listTotal>
+   * </response>
+   *
+   * @return The JAXB unmarshalled expectedType objects from the response,
+   *   including the list response parameters.
+   *
+   * @throws MollomUnexpectedResponseException
+   *   Unable to parse the response from the Mollom server. Usually this means
+   *   there is a version mismatch between the client library and the Mollom API.
+   *
+   * @see http://mollom.com/api#response-list
+   */
+  <T> ListPage<T> parsePage(InputStream xml, String bodyTag, Class<T> expectedType) throws MollomUnexpectedResponseException {
+    return parse(xml, bodyTag, LIST_ITEM_DEPTH, expectedType, false);
+  }
+
+  /**
+   * Unmarshals all bodyTag elements at the given element depth.
+   *
+   * @param first Whether to stop after the first matching element.
+   */
+  private <T> ListPage<T> parse(InputStream xml, String bodyTag, int bodyDepth, Class<T> expectedType, boolean first)
+      throws MollomUnexpectedResponseException {
+    Unmarshaller unmarshaller = unmarshallers.acquire();
+    XMLStreamReader reader = null;
+    try {
+      reader = inputFactory.createXMLStreamReader(xml);
+      List<T> list = new ArrayList<>();
+      int listCount = -1;
+      int listOffset = -1;
+      int listTotal = -1;
+      int depth = 0;
+      int event = reader.getEventType();
+      while (event != XMLStreamConstants.END_DOCUMENT) {
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+          if (depth == bodyDepth && bodyTag.equals(reader.getLocalName())) {
+            list.add(unmarshaller.unmarshal(reader, expectedType).getValue());
+            if (first) {
+              break;
+            }
+            // JAXB consumed the whole element and positioned the reader on the
+            // event after its end tag, which has not been processed yet.
+            depth--;
+            event = reader.getEventType();
+            continue;
+          }
+          if (depth == BODY_DEPTH) {
+            String name = reader.getLocalName();
+            if ("listCount".equals(name)) {
+              listCount = parseInt(reader);
+              depth--;
+            } else if ("listOffset".equals(name)) {
+              listOffset = parseInt(reader);
+              depth--;
+            } else if ("listTotal".equals(name)) {
+              listTotal = parseInt(reader);
+              depth--;
+            }
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+        event = reader.next();
+      }
+      return new ListPage<>(list, listCount, listOffset, listTotal);
+    } catch (XMLStreamException | JAXBException | NumberFormatException e) {
+      throw new MollomUnexpectedResponseException("Issue parsing response from Mollom server.", e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // Nothing left to do.
+        }
+      }
+      unmarshallers.release(unmarshaller);
+    }
+  }
+
+  /**
+   * Reads the integer text of the current element; leaves the reader on its
+   * end tag.
+   */
+  private static int parseInt(XMLStreamReader reader) throws XMLStreamException {
+    return Integer.parseInt(reader.getElementText().trim());
+  }
+}
@@ -0,0 +1,42 @@
+package com.mollom.client;
+
+/**
+ * Limits the rate of retries of all requests of a client (token bucket).
+ *
+ * Every retry takes a token; tokens are refilled at a constant rate up to the
+ * capacity of the bucket. If the bucket is empty, failed requests are not
+ * retried, so that retries cannot multiply the load on an overloaded service.
+ */
+class RetryBudget {
+  private final int capacity;
+  private final double tokensPerNano;
+
+  // Guarded by this.
+  private double tokens;
+  private long refilledAt;
+
+  /**
+   * @param capacity The maximum number of retries in a burst.
+   * @param retriesPerSecond The sustained rate of retries.
+   */
+  RetryBudget(int capacity, int retriesPerSecond) {
+    this.capacity = capacity;
+    this.tokensPerNano = retriesPerSecond / 1e9;
+    this.tokens = capacity;
+    this.refilledAt = System.nanoTime();
+  }
+
+  /**
+   * @return Whether a retry may be attempted.
+   */
+  synchronized boolean tryAcquire() {
+    long now = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+    refilledAt = now;
+    if (tokens < 1) {
+      return false;
+    }
+    tokens--;
+    return true;
+  }
+}
@@ -0,0 +1,115 @@
+package com.mollom.client;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed request to Mollom is retried.
+ *
+ * Retries are delayed by an exponential backoff with full jitter: the n-th
+ * retry waits a random time between 0 and min(maxBackoff, initialBackoff * 2^n)
+ * (ms), so that clients do not retry in lockstep during outages.
+ *
+ * Instances are immutable; the with*() methods return modified copies.
+ *
+ * @see MollomClientBuilder#withRetryPolicy(RetryPolicy)
+ */
+public final class RetryPolicy {
+  private static final RetryPolicy NONE = new RetryPolicy(0, 0, 0, false);
+
+  private final int maxRetries;
+  private final int initialBackoff;
+  private final int maxBackoff;
+  private final boolean retryServerErrors;
+
+  private RetryPolicy(int maxRetries, int initialBackoff, int maxBackoff, boolean retryServerErrors) {
+    this.maxRetries = maxRetries;
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+    this.retryServerErrors = retryServerErrors;
+  }
+
+  /**
+   * @return A policy that never retries.
+   */
+  public static RetryPolicy none() {
+    return NONE;
+  }
+
+  /**
+   * @return A policy that retries requests that could not reach Mollom up to
+   *   the given number of times, with a backoff of 50 to 1000 ms.
+   */
+  public static RetryPolicy retries(int maxRetries) {
+    return new RetryPolicy(0, 50, 1000, false).withMaxRetries(maxRetries);
+  }
+
+  /**
+   * Sets the maximum number of retries of a request.
+   */
+  public RetryPolicy withMaxRetries(int maxRetries) {
+    if (maxRetries < 0) {
+      throw new MollomConfigurationException("Property `maxRetries` must be greater than or equal to 0.");
+    }
+    return new RetryPolicy(maxRetries, initialBackoff, maxBackoff, retryServerErrors);
+  }
+
+  /**
+   * Sets the backoff before retries.
+   *
+   * @param initialBackoff The maximum delay (ms) before the first retry.
+   * @param maxBackoff The maximum delay (ms) before any retry.
+   */
+  public RetryPolicy withBackoff(int initialBackoff, int maxBackoff) {
+    if (initialBackoff < 0) {
+      throw new MollomConfigurationException("Property `initialBackoff` must be greater than or equal to 0.");
+    }
+    if (maxBackoff < initialBackoff) {
+      throw new MollomConfigurationException("Property `maxBackoff` must be greater than or equal to `initialBackoff`.");
+    }
+    return new RetryPolicy(maxRetries, initialBackoff, maxBackoff, retryServerErrors);
+  }
+
+  /**
+   * Sets whether requests that Mollom answered with a server error (5xx) are
+   * retried. By default, a MollomUnexpectedResponseException is thrown.
+   */
+  public RetryPolicy withServerErrorRetries(boolean retryServerErrors) {
+    return new RetryPolicy(maxRetries, initialBackoff, maxBackoff, retryServerErrors);
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  public int getInitialBackoff() {
+    return initialBackoff;
+  }
+
+  public int getMaxBackoff() {
+    return maxBackoff;
+  }
+
+  public boolean isRetryServerErrors() {
+    return retryServerErrors;
+  }
+
+  /**
+   * @param retryAttemptNumber The number of the retry, starting at 1.
+   *
+   * @return The delay (ms) before the retry.
+   */
+  long getBackoff(int retryAttemptNumber) {
+    if (maxBackoff == 0) {
+      return 0;
+    }
+    // Cap the exponent to avoid overflows.
+    long ceiling = Math.min(maxBackoff, (long) initialBackoff << Math.min(retryAttemptNumber - 1, 30));
+    return ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+  @Override
+  public String toString() {
+    return "RetryPolicy[maxRetries=" + maxRetries + ", initialBackoff=" + initialBackoff + ", maxBackoff="
+        + maxBackoff + ", retryServerErrors=" + retryServerErrors + "]";
+  }
+}
@@ -0,0 +1,54 @@
+package com.mollom.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends signed requests to the Mollom service.
+ *
+ * Implementations are bound to the API root of the Mollom service, sign all
+ * requests with the site's OAuth credentials, and must be thread-safe.
+ */
+interface Transport {
+
+  /**
+   * Sends a request to the Mollom service.
+   *
+   * Response status codes are not interpreted.
+   *
+   * @param method The HTTP method; GET or POST.
+   * @param path The resource path, relative to the API root; e.g., content/123
+   * @param queryParams The query parameters, or null.
+   * @param formParams The form parameters of a POST request, or null.
+   * @param timeout The maximum time (ms) to connect and to wait for the
+   *   response, if shorter than the configured timeouts; or 0 to use the
+   *   configured timeouts.
+   *
+   * @throws IOException If the Mollom service could not be contacted.
+   */
+  TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+      Map<String, List<String>> formParams, int timeout) throws IOException;
+
+  /**
+   * Sends a request to the Mollom service that may be aborted from another
+   * thread.
+   *
+   * Aborting the request fails it with an IOException and releases its
+   * connection. Transports that cannot abort requests send them like
+   * send(String, String, Map, Map, int), and ignore the abort handle.
+   *
+   * @param abort Aborts the request.
+   *
+   * @see #send(String, String, Map, Map, int)
+   */
+  default TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+      Map<String, List<String>> formParams, int timeout, AbortHandle abort) throws IOException {
+    return send(method, path, queryParams, formParams, timeout);
+  }
+
+  /**
+   * Releases all connections and other resources of the transport.
+   */
+  void close();
+}
@@ -0,0 +1,33 @@
+package com.mollom.client;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Scanner;
+
+/**
+ * Response of the Mollom service to a request sent by a Transport.
+ *
+ * The response must be closed to release its connection.
+ */
+abstract class TransportResponse implements Closeable {
+
+  abstract int getStatus();
+
+  /**
+   * @return The unbuffered response body.
+   */
+  abstract InputStream getBody();
+
+  /**
+   * @return The response body as a string; e.g., for error messages.
+   */
+  String getBodyAsString() {
+    try (Scanner scanner = new Scanner(getBody(), "UTF-8")) {
+      scanner.useDelimiter("\\A");
+      return scanner.hasNext() ? scanner.next() : "";
+    }
+  }
+
+  @Override
+  public abstract void close();
+}
@@ -0,0 +1,21 @@
+package com.mollom.client;
+
+/**
+ * Denotes the HTTP implementation used to send requests to Mollom.
+ */
+public enum TransportType {
+
+  /**
+   * Jersey client; either on top of the JDK HttpURLConnection, or on top of a
+   * pool of Apache HttpClient connections if connection pooling is enabled.
+   * Default behavior.
+   */
+  JERSEY,
+
+  /**
+   * JDK HttpClient (java.net.http), which multiplexes concurrent requests over
+   * a single HTTP/2 connection. Requires Java 11 or later. HTTP/2 needs an
+   * https endpoint; see MollomClientBuilder.withEndpoint().
+   */
+  JDK_HTTP_CLIENT;
+}
@@ -0,0 +1,144 @@
+package com.mollom.client;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remembers the last successful verification of the API keys and the site
+ * configuration in a local file, so that clients restarted within the time to
+ * live skip the verification request.
+ *
+ * The file holds a SHA-256 hash of the endpoint, the API keys, and the site
+ * parameters sent to Mollom, and the time of the verification; the keys
+ * themselves are not stored. Any change of the configuration changes the hash,
+ * and is verified again.
+ *
+ * The file is replaced atomically, so it may be shared by clients of multiple
+ * processes.
+ */
+class VerificationCache {
+  private final static Logger logger = Logger.getLogger("com.mollom.client.VerificationCache");
+  private static final String CONFIG_HASH = "configHash";
+  private static final String VERIFIED_AT = "verifiedAt";
+
+  private final File file;
+  private final long timeToLive;
+
+  /**
+   * @param timeToLive The time (ms) after which a verification expires.
+   */
+  VerificationCache(File file, long timeToLive) {
+    this.file = file;
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * @return The hash of the given site configuration, in hex.
+   */
+  static String hash(URI rootUri, String publicKey, String privateKey, Map<String, List<String>> siteParams) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new MollomConfigurationException("Failed to hash site configuration.", e);
+    }
+    update(digest, rootUri.toString());
+    update(digest, publicKey);
+    update(digest, privateKey);
+    // Parameter maps are not ordered.
+    for (Map.Entry<String, List<String>> param : new TreeMap<>(siteParams).entrySet()) {
+      update(digest, param.getKey());
+      for (String value : param.getValue()) {
+        update(digest, value);
+      }
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * @return Whether the given configuration was verified within the time to
+   *   live; false if the file is missing or unreadable.
+   */
+  boolean isVerified(String configHash) {
+    if (!file.isFile()) {
+      return false;
+    }
+    Properties properties = new Properties();
+    try (InputStream in = new FileInputStream(file)) {
+      properties.load(in);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to read verification cache " + file + ".", e);
+      return false;
+    }
+    if (!configHash.equals(properties.getProperty(CONFIG_HASH))) {
+      return false;
+    }
+    long verifiedAt;
+    try {
+      verifiedAt = Long.parseLong(properties.getProperty(VERIFIED_AT, ""));
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    long age = System.currentTimeMillis() - verifiedAt;
+    // A verification in the future means the clock was turned back.
+    return age >= 0 && age < timeToLive;
+  }
+
+  /**
+   * Records a successful verification of the given configuration now. Failures
+   * are logged; the next client only verifies again.
+   */
+  void store(String configHash) {
+    Properties properties = new Properties();
+    properties.setProperty(CONFIG_HASH, configHash);
+    properties.setProperty(VERIFIED_AT, Long.toString(System.currentTimeMillis()));
+    File directory = file.getAbsoluteFile().getParentFile();
+    File temporaryFile = null;
+    try {
+      if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Failed to create directory " + directory + ".");
+      }
+      temporaryFile = File.createTempFile(file.getName(), ".tmp", directory);
+      try (OutputStream out = new FileOutputStream(temporaryFile)) {
+        properties.store(out, "Mollom API key verification");
+      }
+      try {
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to write verification cache " + file + ".", e);
+      if (temporaryFile != null) {
+        temporaryFile.delete();
+      }
+    }
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(StandardCharsets.UTF_8));
+    // Separates the values, so that their boundaries are part of the hash.
+    digest.update((byte) 0);
+  }
+}
@@ -0,0 +1,150 @@
+package com.mollom.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport based on the JDK HttpClient (java.net.http), which multiplexes
+ * concurrent requests over HTTP/2 connections.
+ *
+ * HTTP/2 is negotiated with the Mollom service over TLS (ALPN), so it needs an
+ * https endpoint. Against an http:// endpoint, the HttpClient only tries to
+ * upgrade each connection to cleartext HTTP/2 (h2c). Requests fall back to
+ * HTTP/1.1 with persistent connections otherwise.
+ */
+class JdkHttpTransport implements Transport {
+  private final HttpClient httpClient;
+  private final ResourceUris resourceUris;
+  private final Duration readTimeout;
+  private final OAuthSigner signer;
+
+  /**
+   * @param resourceUris The resources of the Mollom service.
+   * @param signer Signs all requests with the site's OAuth credentials.
+   * @param connectionTimeout The connection timeout (ms), or 0 for none.
+   * @param readTimeout The response timeout (ms), or 0 for none.
+   * @param executor The executor for asynchronous tasks of the HttpClient, or
+   *   null for the default executor.
+   */
+  JdkHttpTransport(ResourceUris resourceUris, OAuthSigner signer, int connectionTimeout, int readTimeout,
+      Executor executor) {
+    HttpClient.Builder builder = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2);
+    if (connectionTimeout > 0) {
+      builder.connectTimeout(Duration.ofMillis(connectionTimeout));
+    }
+    if (executor != null) {
+      builder.executor(executor);
+    }
+    this.httpClient = builder.build();
+    this.resourceUris = resourceUris;
+    this.readTimeout = readTimeout > 0 ? Duration.ofMillis(readTimeout) : null;
+    this.signer = signer;
+  }
+
+  @Override
+  public TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+      Map<String, List<String>> formParams, int timeout) throws IOException {
+    return send(method, path, queryParams, formParams, timeout, null);
+  }
+
+  /**
+   * Aborting a request cancels its exchange; before Java 16, the exchange
+   * still completes in the background, but the caller returns at once.
+   */
+  @Override
+  public TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+      Map<String, List<String>> formParams, int timeout, AbortHandle abort) throws IOException {
+    ResourceUris.Resource resourceUri = resourceUris.get(path);
+    FormEncoder query = FormEncoder.forQuery().addAll(queryParams);
+    FormEncoder body = FormEncoder.forBody().addAll(formParams);
+    String authorization = signer.sign(method, resourceUri.signatureBaseUri, query, body);
+    URI uri = resourceUri.uri;
+    if (query.pairCount() > 0) {
+      uri = URI.create(uri + "?" + query);
+    }
+    HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+        .header("Accept", "application/xml")
+        .header("Content-Type", "application/x-www-form-urlencoded")
+        .header("Authorization", authorization);
+    if (timeout > 0 && (readTimeout == null || timeout < readTimeout.toMillis())) {
+      request.timeout(Duration.ofMillis(timeout));
+    } else if (readTimeout != null) {
+      request.timeout(readTimeout);
+    }
+    if (formParams != null) {
+      request.method(method, HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()));
+    } else {
+      request.method(method, HttpRequest.BodyPublishers.noBody());
+    }
+
+    if (abort == null) {
+      try {
+        return new Response(httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Request to Mollom service was interrupted.");
+      }
+    }
+
+    CompletableFuture<HttpResponse<InputStream>> exchange =
+        httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+    abort.onAbort(() -> exchange.cancel(true));
+    try {
+      return new Response(exchange.get());
+    } catch (CancellationException e) {
+      throw new IOException("Request to Mollom service was aborted.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+    } catch (InterruptedException e) {
+      exchange.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Request to Mollom service was interrupted.");
+    }
+  }
+
+  @Override
+  public void close() {
+    // The HttpClient releases its connections once it is unreachable.
+  }
+
+  private static class Response extends TransportResponse {
+    private final HttpResponse<InputStream> response;
+
+    Response(HttpResponse<InputStream> response) {
+      this.response = response;
+    }
+
+    @Override
+    int getStatus() {
+      return response.statusCode();
+    }
+
+    @Override
+    InputStream getBody() {
+      return response.body();
+    }
+
+    @Override
+    public void close() {
+      try {
+        response.body().close();
+      } catch (IOException e) {
+        // Nothing left to release.
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.mollom.client;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks a stream of contents with backpressure, as a
+ * java.util.concurrent.Flow.Processor; e.g., to moderate submissions consumed
+ * from a message queue.
+ *
+ * Subscribe the processor to a publisher of contents, and subscribe a single
+ * subscriber of results to the processor. Contents are requested from the
+ * publisher only while fewer than maxInFlight contents are being checked or
+ * waiting for demand of the subscriber, so that a slow Mollom endpoint or a
+ * slow subscriber throttle the publisher.
+ *
+ * Each content is checked like by MollomClient.checkContent(), and emitted as
+ * a ContentCheckResult: a check that failed with a MollomException, or was
+ * rejected by the executor of the client, is emitted as a failed result
+ * instead of failing the stream. Errors of the publisher
+ * and unexpected exceptions fail the stream immediately.
+ *
+ * Requires Java 11 or later; the class is contained in the
+ * META-INF/versions/11 directory of the library.
+ */
+public class ModerationProcessor implements Flow.Processor<Content, ContentCheckResult> {
+  private final ModerationPipeline pipeline;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  /**
+   * Creates a processor that emits results in the order of the contents.
+   *
+   * @see #ModerationProcessor(MollomClient, int, boolean)
+   */
+  public ModerationProcessor(MollomClient client, int maxInFlight) {
+    this(client, maxInFlight, true);
+  }
+
+  /**
+   * @param client The client that checks the contents; checks run on its
+   *   executor.
+   * @param maxInFlight The maximum number of contents being checked or waiting
+   *   to be emitted; at least 1.
+   * @param ordered Whether results are emitted in the order of the contents.
+   *   Otherwise, results are emitted as soon as their check completes, so that
+   *   a slow check does not hold back the results of later contents.
+   */
+  public ModerationProcessor(MollomClient client, int maxInFlight, boolean ordered) {
+    this.pipeline = new ModerationPipeline(client, maxInFlight, ordered);
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super ContentCheckResult> subscriber) {
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long count) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("ModerationProcessor supports only one subscriber."));
+      return;
+    }
+    Flow.Subscription subscription = new Flow.Subscription() {
+      @Override
+      public void request(long count) {
+        pipeline.request(count);
+      }
+
+      @Override
+      public void cancel() {
+        pipeline.cancel();
+      }
+    };
+    ModerationPipeline.Downstream downstream = new ModerationPipeline.Downstream() {
+      @Override
+      public void onNext(ContentCheckResult result) {
+        subscriber.onNext(result);
+      }
+
+      @Override
+      public void onError(Throwable error) {
+        subscriber.onError(error);
+      }
+
+      @Override
+      public void onComplete() {
+        subscriber.onComplete();
+      }
+    };
+    // onSubscribe must precede all other signals; the pipeline does not
+    // signal a subscriber before it is attached.
+    subscriber.onSubscribe(subscription);
+    pipeline.attach(downstream);
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    pipeline.onSubscribe(new ModerationPipeline.Upstream() {
+      @Override
+      public void request(long count) {
+        subscription.request(count);
+      }
+
+      @Override
+      public void cancel() {
+        subscription.cancel();
+      }
+    });
+  }
+
+  @Override
+  public void onNext(Content content) {
+    pipeline.onNext(content);
+  }
+
+  @Override
+  public void onError(Throwable error) {
+    pipeline.onError(error);
+  }
+
+  @Override
+  public void onComplete() {
+    pipeline.onComplete();
+  }
+}
@@ -0,0 +1,110 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncRequestTest {
+  private MollomStubServer server;
+  private ExecutorService executor;
+  private MollomClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MollomStubServer().start();
+    executor = Executors.newSingleThreadExecutor();
+  }
+
+  @After
+  public void tearDown() {
+    if (client != null) {
+      client.destroy();
+    }
+    executor.shutdownNow();
+    server.close();
+  }
+
+  private MollomClient build(RetryPolicy retryPolicy) {
+    return MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withRetryPolicy(retryPolicy)
+        .withExecutor(executor)
+        .build("publicKey", "privateKey");
+  }
+
+  /**
+   * @return The cause of the failure of the given future.
+   */
+  private static Throwable failure(Future<?> future) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail("Expected the request to fail.");
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  @Test
+  public void completesWithResult() throws Exception {
+    client = build(RetryPolicy.none());
+    Content content = new Content();
+    content.setPostBody("Buy spam now");
+    assertEquals("spam", client.checkContentAsync(content).get(10, TimeUnit.SECONDS).getSpamClassification());
+  }
+
+  @Test
+  public void failsWithMollomExceptions() throws Exception {
+    client = build(RetryPolicy.retries(1).withBackoff(0, 0));
+    assertTrue(failure(client.getBlacklistEntryAsync("unknown")) instanceof MollomRequestException);
+
+    server.withServerErrorRate(1);
+    assertTrue(failure(client.getBlacklistEntryAsync("1")) instanceof MollomUnexpectedResponseException);
+
+    server.withServerErrorRate(0).withConnectionResetRate(1);
+    assertTrue(failure(client.getBlacklistEntryAsync("1")) instanceof MollomNoResponseException);
+  }
+
+  @Test
+  public void failsWhenExecutorRejects() throws Exception {
+    client = build(RetryPolicy.none());
+    executor.shutdown();
+    CompletableFuture<BlacklistEntry> result = client.getBlacklistEntryAsync("1");
+    assertTrue(failure(result) instanceof RejectedExecutionException);
+  }
+
+  @Test
+  public void cancelInterruptsRetryBackoff() throws Exception {
+    client = build(RetryPolicy.retries(5).withBackoff(10000, 10000));
+    server.withConnectionResetRate(1);
+    long requestCount = server.getRequestCount();
+    CompletableFuture<BlacklistEntry> result = client.getBlacklistEntryAsync("1");
+    while (server.getRequestCount() == requestCount) {
+      Thread.sleep(10);
+    }
+    // Let the failed attempt back off.
+    Thread.sleep(100);
+    assertTrue(result.cancel(true));
+
+    // The only thread of the executor is released at once, instead of after
+    // the backoff and the remaining retries.
+    Future<?> next = executor.submit(() -> {
+    });
+    next.get(1, TimeUnit.SECONDS);
+    long cancelledRequestCount = server.getRequestCount();
+    Thread.sleep(200);
+    assertEquals(cancelledRequestCount, server.getRequestCount());
+  }
+}
@@ -0,0 +1,99 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class BlacklistMatcherTest {
+
+  private static BlacklistEntry entry(String value, Context context, BlacklistMatchPrecision match) {
+    BlacklistEntry entry = new BlacklistEntry();
+    entry.setValue(value);
+    entry.setContext(context);
+    entry.setMatch(match);
+    return entry;
+  }
+
+  private static Content content(String postTitle, String postBody) {
+    Content content = new Content();
+    content.setPostTitle(postTitle);
+    content.setPostBody(postBody);
+    return content;
+  }
+
+  @Test
+  public void emptyBlacklist() {
+    BlacklistMatcher matcher = new BlacklistMatcher(Collections.<BlacklistEntry>emptyList());
+    assertNull(matcher.match(content("viagra", "viagra")));
+  }
+
+  @Test
+  public void containsIgnoringCase() {
+    BlacklistEntry viagra = entry("viagra", Context.ALLFIELDS, BlacklistMatchPrecision.CONTAINS);
+    BlacklistMatcher matcher = new BlacklistMatcher(Arrays.asList(viagra));
+    assertSame(viagra, matcher.match(content("Cheap VIAGRAs", null)));
+    assertSame(viagra, matcher.match(content(null, "buy cheapviagra now")));
+    assertNull(matcher.match(content("Hello", "world")));
+  }
+
+  @Test
+  public void exactRequiresWordBoundaries() {
+    BlacklistEntry casino = entry("casino", Context.ALLFIELDS, BlacklistMatchPrecision.EXACT);
+    BlacklistMatcher matcher = new BlacklistMatcher(Arrays.asList(casino));
+    assertSame(casino, matcher.match(content(null, "Visit our casino!")));
+    assertSame(casino, matcher.match(content(null, "casino")));
+    assertNull(matcher.match(content(null, "Visit our casinos")));
+    assertNull(matcher.match(content(null, "onlinecasino")));
+  }
+
+  @Test
+  public void overlappingPatterns() {
+    BlacklistEntry she = entry("she", Context.ALLFIELDS, BlacklistMatchPrecision.EXACT);
+    BlacklistEntry hers = entry("hers", Context.ALLFIELDS, BlacklistMatchPrecision.CONTAINS);
+    BlacklistEntry his = entry("his", Context.ALLFIELDS, BlacklistMatchPrecision.CONTAINS);
+    BlacklistMatcher matcher = new BlacklistMatcher(Arrays.asList(she, hers, his));
+    assertSame(hers, matcher.match(content(null, "ushers")));
+    assertSame(his, matcher.match(content(null, "this")));
+    assertSame(she, matcher.match(content(null, "but she said")));
+  }
+
+  @Test
+  public void contexts() {
+    BlacklistEntry title = entry("deal", Context.POSTTITLE, BlacklistMatchPrecision.CONTAINS);
+    BlacklistEntry author = entry("spammer", Context.AUTHORNAME, BlacklistMatchPrecision.CONTAINS);
+    BlacklistMatcher matcher = new BlacklistMatcher(Arrays.asList(title, author));
+    assertNull(matcher.match(content("Hello", "a great deal")));
+    assertSame(title, matcher.match(content("Great deal", null)));
+
+    Content content = content(null, "spammer");
+    assertNull(matcher.match(content));
+    content.setAuthorName("Spammer");
+    assertSame(author, matcher.match(content));
+  }
+
+  @Test
+  public void links() {
+    BlacklistEntry domain = entry("example.com", Context.LINKS, BlacklistMatchPrecision.CONTAINS);
+    BlacklistMatcher matcher = new BlacklistMatcher(Arrays.asList(domain));
+    assertNull(matcher.match(content(null, "I like example.com")));
+    assertSame(domain, matcher.match(content(null, "See <a href=\"http://www.example.com/x\">here</a>")));
+
+    Content content = content(null, null);
+    content.setAuthorUrl("https://example.com");
+    assertSame(domain, matcher.match(content));
+    assertEquals(Arrays.asList("http://a.b/c", "www.d.e"), BlacklistMatcher.extractLinks("x http://a.b/c y www.d.e"));
+  }
+
+  @Test
+  public void disabledEntriesDoNotMatch() {
+    BlacklistEntry viagra = entry("viagra", Context.ALLFIELDS, BlacklistMatchPrecision.CONTAINS);
+    viagra.disable();
+    BlacklistMatcher matcher = new BlacklistMatcher(Arrays.asList(viagra));
+    assertNull(matcher.match(content("viagra", null)));
+  }
+}
@@ -0,0 +1,95 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+  private final List<String> transitions = new ArrayList<>();
+
+  private CircuitBreaker circuitBreaker(int openDuration) {
+    return new CircuitBreaker(4, 50, 1000, 100, openDuration, new CircuitBreakerListener() {
+      @Override
+      public void onStateTransition(CircuitBreakerState fromState, CircuitBreakerState toState) {
+        transitions.add(fromState + "->" + toState);
+      }
+    });
+  }
+
+  private static void call(CircuitBreaker circuitBreaker, boolean success) {
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.record(success, 0);
+  }
+
+  @Test
+  public void opensWhenFailureRateIsReached() {
+    CircuitBreaker circuitBreaker = circuitBreaker(60000);
+    call(circuitBreaker, false);
+    call(circuitBreaker, false);
+    call(circuitBreaker, true);
+    // The window is not full yet.
+    assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+    call(circuitBreaker, true);
+    assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void slidingWindowForgetsOldFailures() {
+    CircuitBreaker circuitBreaker = circuitBreaker(60000);
+    call(circuitBreaker, false);
+    for (int i = 0; i < 10; i++) {
+      call(circuitBreaker, true);
+    }
+    call(circuitBreaker, false);
+    assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+  }
+
+  @Test
+  public void opensWhenSlowCallRateIsReached() {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(2, 100, 10, 100, 60000, null);
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.record(true, 20000000L);
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.record(true, 20000000L);
+    assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+  }
+
+  @Test
+  public void halfOpenTrialCalls() throws Exception {
+    CircuitBreaker circuitBreaker = circuitBreaker(1);
+    for (int i = 0; i < 4; i++) {
+      call(circuitBreaker, false);
+    }
+    Thread.sleep(5);
+
+    // A failed trial call opens the breaker again.
+    call(circuitBreaker, false);
+    assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+    Thread.sleep(5);
+
+    // Only a limited number of trial calls is permitted at once.
+    assertTrue(circuitBreaker.tryAcquire());
+    assertTrue(circuitBreaker.tryAcquire());
+    assertTrue(circuitBreaker.tryAcquire());
+    assertFalse(circuitBreaker.tryAcquire());
+    circuitBreaker.record(true, 0);
+    circuitBreaker.record(true, 0);
+    circuitBreaker.record(true, 0);
+    assertEquals(CircuitBreakerState.CLOSED, circuitBreaker.getState());
+
+    List<String> expected = new ArrayList<>();
+    expected.add("CLOSED->OPEN");
+    expected.add("OPEN->HALF_OPEN");
+    expected.add("HALF_OPEN->OPEN");
+    expected.add("OPEN->HALF_OPEN");
+    expected.add("HALF_OPEN->CLOSED");
+    assertEquals(expected, transitions);
+  }
+}
@@ -0,0 +1,98 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ClassificationCacheTest {
+
+  private static Content content(String postBody) {
+    Content content = new Content();
+    content.setPostBody(postBody);
+    content.setAuthorMail("John@Example.com");
+    return content;
+  }
+
+  @Test
+  public void fingerprintIgnoresWhitespaceAndMailCase() {
+    Content content = content("Hello  world ");
+    Content resubmitted = content(" Hello\nworld");
+    resubmitted.setAuthorMail("john@example.com");
+    assertEquals(ContentFingerprint.of(content), ContentFingerprint.of(resubmitted));
+  }
+
+  @Test
+  public void fingerprintDependsOnChecks() {
+    Content content = content("Hello world");
+    Content other = content("Hello world");
+    other.setChecks(Check.SPAM, Check.QUALITY);
+    assertFalse(ContentFingerprint.of(content).equals(ContentFingerprint.of(other)));
+    other.setChecks(Check.SPAM);
+    other.setStrictness(Strictness.STRICT);
+    assertFalse(ContentFingerprint.of(content).equals(ContentFingerprint.of(other)));
+  }
+
+  @Test
+  public void leastRecentlyUsedEviction() {
+    ClassificationCache cache = new ClassificationCache(2, 60000);
+    ContentFingerprint a = ContentFingerprint.of(content("a"));
+    ContentFingerprint b = ContentFingerprint.of(content("b"));
+    ContentFingerprint c = ContentFingerprint.of(content("c"));
+    Content classification = new Content();
+    cache.put(a, classification);
+    cache.put(b, classification);
+    assertSame(classification, cache.get(a));
+    cache.put(c, classification);
+
+    assertSame(classification, cache.get(a));
+    assertNull(cache.get(b));
+    assertSame(classification, cache.get(c));
+
+    CacheStatistics statistics = cache.getStatistics();
+    assertEquals(3, statistics.getHitCount());
+    assertEquals(1, statistics.getMissCount());
+    assertEquals(1, statistics.getEvictionCount());
+    assertEquals(2, statistics.getSize());
+  }
+
+  @Test
+  public void expiry() throws Exception {
+    ClassificationCache cache = new ClassificationCache(10, 1);
+    ContentFingerprint a = ContentFingerprint.of(content("a"));
+    cache.put(a, new Content());
+    Thread.sleep(5);
+    assertNull(cache.get(a));
+    assertEquals(0, cache.getStatistics().getSize());
+  }
+
+  @Test
+  public void cacheHitHasNoContentId() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    try {
+      MollomClient client = MollomClientBuilder.create()
+          .withEndpoint(server.getEndpoint())
+          .withClassificationCache(10, 60000)
+          .build("publicKey", "privateKey");
+      try {
+        Content content = content("Hello world");
+        client.checkContent(content);
+        Content resubmitted = content("Hello world");
+        client.checkContent(resubmitted);
+
+        // One site verification and one content check.
+        assertEquals(2, server.getRequestCount());
+        assertNotNull(content.getId());
+        assertNull(resubmitted.getId());
+        assertEquals(content.getSpamClassification(), resubmitted.getSpamClassification());
+      } finally {
+        client.destroy();
+      }
+    } finally {
+      server.close();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+  private static Content content(String postBody) {
+    Content content = new Content();
+    content.setPostBody(postBody);
+    return content;
+  }
+
+  @Test
+  public void sequentialRequestsReuseConnection() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withConnectionPooling(true)
+        .build("publicKey", "privateKey");
+    try {
+      for (int i = 0; i < 10; i++) {
+        client.checkContent(content("ham " + i));
+      }
+      // The verification and all checks used the same connection.
+      assertEquals(11, server.getRequestCount());
+      assertEquals(1, server.getConnectionCount());
+
+      ConnectionPoolStatistics statistics = client.getConnectionPoolStatistics();
+      assertEquals(0, statistics.getLeased());
+      assertEquals(1, statistics.getAvailable());
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+
+  @Test
+  public void limitsConnectionsPerRoute() throws Exception {
+    final int callers = 6;
+    MollomStubServer server = new MollomStubServer().start();
+    final MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withConnectionPooling(true)
+        .withMaxConnections(10)
+        .withMaxConnectionsPerRoute(2)
+        .withReadTimeout(5000)
+        .build("publicKey", "privateKey");
+    ExecutorService threads = Executors.newFixedThreadPool(callers);
+    try {
+      server.withLatency(MollomStubServer.fixedLatency(200));
+      List<Future<?>> results = new ArrayList<>();
+      for (int i = 0; i < callers; i++) {
+        final Content content = content("ham " + i);
+        results.add(threads.submit(() -> {
+          client.checkContent(content);
+          return null;
+        }));
+      }
+
+      // Wait until the requests queue up for the two connections.
+      ConnectionPoolStatistics statistics = client.getConnectionPoolStatistics();
+      long timeout = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (statistics.getPending() == 0 && System.nanoTime() < timeout) {
+        Thread.sleep(10);
+        statistics = client.getConnectionPoolStatistics();
+      }
+      assertEquals(2, statistics.getLeased());
+      assertTrue(statistics.getPending() > 0);
+      assertEquals(10, statistics.getMax());
+
+      for (Future<?> result : results) {
+        result.get(10, TimeUnit.SECONDS);
+      }
+      assertEquals(1 + callers, server.getRequestCount());
+      assertEquals(2, server.getConnectionCount());
+    } finally {
+      threads.shutdownNow();
+      client.destroy();
+      server.close();
+    }
+  }
+}
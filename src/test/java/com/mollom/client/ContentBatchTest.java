@@ -0,0 +1,58 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ContentBatchTest {
+
+  @Test
+  public void checksAllContentsDespiteFailures() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withRetries(0)
+        .build("publicKey", "privateKey");
+    try {
+      List<Content> contents = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        Content content = new Content();
+        content.setPostTitle(i % 2 == 0 ? "ham" : "spam");
+        contents.add(content);
+      }
+      // Rechecks of an unknown resource fail with a 404.
+      contents.get(7).setId("unknown/resource");
+
+      final AtomicInteger completed = new AtomicInteger();
+      List<ContentCheckResult> results = client.checkContents(contents, 4,
+          (result, completedCount, totalCount) -> {
+            assertEquals(20, totalCount);
+            completed.incrementAndGet();
+          });
+
+      assertEquals(20, completed.get());
+      assertEquals(20, results.size());
+      for (int i = 0; i < results.size(); i++) {
+        ContentCheckResult result = results.get(i);
+        assertSame(contents.get(i), result.getContent());
+        if (i == 7) {
+          assertFalse(result.isSuccess());
+          assertTrue(result.getException() instanceof MollomRequestException);
+        } else {
+          assertTrue(result.isSuccess());
+          assertEquals(i % 2 == 0, result.getContent().isHam());
+        }
+      }
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+}
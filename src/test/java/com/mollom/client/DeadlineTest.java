@@ -0,0 +1,106 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class DeadlineTest {
+
+  /**
+   * Fails every request after waiting for its timeout.
+   */
+  private static class TimingOutTransport implements Transport {
+    final List<Integer> timeouts = new ArrayList<>();
+
+    @Override
+    public TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+        Map<String, List<String>> formParams, int timeout) throws IOException {
+      timeouts.add(timeout);
+      try {
+        Thread.sleep(timeout);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      throw new IOException("Read timed out");
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  @Test
+  public void deadlineSpansAllRetries() throws Exception {
+    Map<Operation, RetryPolicy> retryPolicies = new EnumMap<>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      retryPolicies.put(operation, RetryPolicy.retries(100).withBackoff(0, 0));
+    }
+    TimingOutTransport transport = new TimingOutTransport();
+    ClientOptions options = new ClientOptions();
+    options.transport = transport;
+    options.publicKey = "publicKey";
+    options.retryPolicies = retryPolicies;
+    MollomClient client = new MollomClient(options);
+    try {
+      long startTime = System.nanoTime();
+      try {
+        client.withDeadline(Deadline.after(100, TimeUnit.MILLISECONDS)).getBlacklistEntry("1");
+        fail();
+      } catch (MollomDeadlineExceededException e) {
+        // Expected.
+      }
+      assertTrue(System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(1000));
+      assertTrue(transport.timeouts.get(0) <= 100);
+      assertTrue(transport.timeouts.size() < 100);
+    } finally {
+      client.destroy();
+    }
+  }
+
+  @Test
+  public void deadlineLimitsReadsOfPooledConnections() throws Exception {
+    final AtomicInteger responses = new AtomicInteger();
+    // Answers the site verification at once and every later request after 2s.
+    MollomStubServer server = new MollomStubServer()
+        .withLatency(random -> responses.getAndIncrement() == 0 ? 0 : 2000)
+        .start();
+    try {
+      MollomClient client = MollomClientBuilder.create()
+          .withEndpoint(server.getEndpoint())
+          .withConnectionPooling(true)
+          .withReadTimeout(5000)
+          .build("publicKey", "privateKey");
+      try {
+        long startTime = System.nanoTime();
+        try {
+          client.withDeadline(Deadline.after(200, TimeUnit.MILLISECONDS)).getBlacklistEntry("1");
+          fail();
+        } catch (MollomDeadlineExceededException e) {
+          // Expected.
+        }
+        assertTrue(System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(1000));
+      } finally {
+        client.destroy();
+      }
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  public void expiredDeadline() {
+    Deadline deadline = Deadline.after(-1, TimeUnit.SECONDS);
+    assertTrue(deadline.isExpired());
+    assertEquals(0, deadline.timeRemaining(TimeUnit.NANOSECONDS));
+  }
+}
@@ -0,0 +1,157 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+
+public class EntryIteratorTest {
+
+  /**
+   * Serves pages of the entries 0 to size - 1, and records the requested
+   * offsets.
+   */
+  private static class ListFetcher implements EntryIterator.PageFetcher<Integer> {
+    final List<Integer> offsets = new ArrayList<>();
+    final int size;
+    final boolean reportTotal;
+
+    ListFetcher(int size, boolean reportTotal) {
+      this.size = size;
+      this.reportTotal = reportTotal;
+    }
+
+    @Override
+    public ListPage<Integer> fetch(int offset, int count) {
+      offsets.add(offset);
+      List<Integer> items = new ArrayList<>();
+      for (int i = offset; i < Math.min(offset + count, size); i++) {
+        items.add(i);
+      }
+      return new ListPage<>(items, items.size(), offset, reportTotal ? size : -1);
+    }
+  }
+
+  private static List<Integer> consume(EntryIterator<Integer> iterator) throws MollomException {
+    List<Integer> items = new ArrayList<>();
+    while (iterator.hasNext()) {
+      items.add(iterator.next());
+    }
+    return items;
+  }
+
+  @Test
+  public void lastPageFromTotal() throws Exception {
+    ListFetcher fetcher = new ListFetcher(7, true);
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6), consume(new EntryIterator<>(fetcher, 3, null)));
+    assertEquals(Arrays.asList(0, 3, 6), fetcher.offsets);
+
+    // No empty page is requested after a full last page.
+    fetcher = new ListFetcher(6, true);
+    assertEquals(6, consume(new EntryIterator<>(fetcher, 3, null)).size());
+    assertEquals(Arrays.asList(0, 3), fetcher.offsets);
+  }
+
+  @Test
+  public void lastPageFromShortPage() throws Exception {
+    ListFetcher fetcher = new ListFetcher(7, false);
+    assertEquals(7, consume(new EntryIterator<>(fetcher, 3, null)).size());
+    assertEquals(Arrays.asList(0, 3, 6), fetcher.offsets);
+
+    // Without a total, only an empty page ends a list of full pages.
+    fetcher = new ListFetcher(6, false);
+    assertEquals(6, consume(new EntryIterator<>(fetcher, 3, null)).size());
+    assertEquals(Arrays.asList(0, 3, 6), fetcher.offsets);
+  }
+
+  @Test
+  public void prefetchesNextPage() throws Exception {
+    Executor direct = Runnable::run;
+    ListFetcher fetcher = new ListFetcher(7, true);
+    EntryIterator<Integer> iterator = new EntryIterator<>(fetcher, 3, direct);
+    assertEquals(Integer.valueOf(0), iterator.next());
+    // The second page was requested with the first.
+    assertEquals(Arrays.asList(0, 3), fetcher.offsets);
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), consume(iterator));
+    // Each page is requested once; none after the last page.
+    assertEquals(Arrays.asList(0, 3, 6), fetcher.offsets);
+  }
+
+  @Test
+  public void closeCancelsPrefetch() throws Exception {
+    final Queue<Runnable> tasks = new ArrayDeque<>();
+    ListFetcher fetcher = new ListFetcher(7, true);
+    EntryIterator<Integer> iterator = new EntryIterator<>(fetcher, 3, tasks::add);
+    assertEquals(Integer.valueOf(0), iterator.next());
+    assertEquals(1, tasks.size());
+
+    iterator.close();
+    assertFalse(iterator.hasNext());
+    tasks.remove().run();
+    assertEquals(Arrays.asList(0), fetcher.offsets);
+  }
+
+  @Test
+  public void iteratesBlacklist() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .build("publicKey", "privateKey");
+    try {
+      List<String> values = new ArrayList<>();
+      for (int i = 0; i < 7; i++) {
+        BlacklistEntry entry = new BlacklistEntry();
+        entry.setValue("value" + i);
+        client.saveBlacklistEntry(entry);
+        values.add(entry.getValue());
+      }
+
+      for (boolean prefetch : new boolean[] {false, true}) {
+        long requestCount = server.getRequestCount();
+        EntryIterator<BlacklistEntry> iterator = client.iterateBlacklistEntries(3, prefetch);
+        assertEquals(7, iterator.getTotal());
+        List<String> iterated = new ArrayList<>();
+        while (iterator.hasNext()) {
+          iterated.add(iterator.next().getValue());
+        }
+        assertEquals(values, iterated);
+        // Pages at offsets 0, 3, and 6.
+        assertEquals(requestCount + 3, server.getRequestCount());
+      }
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+
+  @Test
+  public void closeStopsIteration() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .build("publicKey", "privateKey");
+    try {
+      for (int i = 0; i < 4; i++) {
+        BlacklistEntry entry = new BlacklistEntry();
+        entry.setValue("value" + i);
+        client.saveBlacklistEntry(entry);
+      }
+      EntryIterator<BlacklistEntry> iterator = client.iterateBlacklistEntries(2, true);
+      assertTrue(iterator.hasNext());
+      iterator.next();
+      iterator.close();
+      assertFalse(iterator.hasNext());
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class FallbackClassifierTest {
+  private final FallbackClassifier classifier = new FallbackClassifier();
+
+  @Test
+  public void classifiesByHoneypotAndLinks() {
+    Content content = new Content();
+    content.setPostBody("Thanks for the great article, it helped me a lot.");
+    classifier.classify(content, null, null);
+    assertEquals("ham", content.getSpamClassification());
+    assertEquals("fallback", content.getReason());
+
+    content.setPostBody("Cheap pills http://example.com/a https://www.example.com/b www.example.com/c");
+    classifier.classify(content, null, null);
+    assertEquals("spam", content.getSpamClassification());
+
+    content.setPostBody("Thanks for the great article, see also my post at http://example.com/post about it.");
+    classifier.classify(content, null, null);
+    assertEquals("unsure", content.getSpamClassification());
+    content.setAllowUnsure(false);
+    classifier.classify(content, null, null);
+    assertEquals("ham", content.getSpamClassification());
+
+    content.setHoneypot("filled by a bot");
+    classifier.classify(content, null, null);
+    assertEquals("spam", content.getSpamClassification());
+  }
+
+  @Test
+  public void considersAuthorRate() {
+    Content content = new Content();
+    content.setAuthorIp("192.0.2.1");
+    content.setPostBody("Thanks for the great article, see also my post at http://example.com/post about it.");
+    for (int i = 0; i < 6; i++) {
+      classifier.recordPost(content);
+    }
+    classifier.classify(content, null, null);
+    assertEquals("spam", content.getSpamClassification());
+
+    content.setAuthorIp("192.0.2.2");
+    classifier.classify(content, null, null);
+    assertEquals("unsure", content.getSpamClassification());
+  }
+
+  @Test
+  public void considersLocalLists() {
+    BlacklistEntry blacklistEntry = new BlacklistEntry();
+    blacklistEntry.setId("1");
+    blacklistEntry.setValue("pills");
+    LocalBlacklist blacklist = new LocalBlacklist();
+    blacklist.replaceAll(Collections.singletonList(blacklistEntry));
+
+    Content content = new Content();
+    content.setPostBody("Cheap pills");
+    classifier.classify(content, blacklist, null);
+    assertEquals("spam", content.getSpamClassification());
+    assertEquals(1.0, content.getSpamScore(), 0.0);
+  }
+
+  @Test
+  public void classifiesLocallyWhenMollomIsUnreachable() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withRetries(0)
+        .withFallbackClassifier(true)
+        .build("publicKey", "privateKey");
+    try {
+      server.withConnectionResetRate(1);
+      Content content = new Content();
+      content.setPostBody("Thanks for the great article.");
+      client.checkContent(content);
+      assertEquals("ham", content.getSpamClassification());
+      assertEquals("fallback", content.getReason());
+      assertEquals(null, content.getId());
+      assertEquals(1, client.getMetrics().getFallbackCount());
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class FormEncoderTest {
+
+  @Test
+  public void encodesContentParams() {
+    Content content = new Content();
+    content.setAuthorOpenIds(new String[] { "http://a.example.com/", "http://b.example.com/" });
+    content.setPostBody("Gr\u00fc\u00dfe & ~ 100%");
+    content.setChecks(Check.SPAM, Check.PROFANITY);
+    content.setAllowUnsure(false);
+
+    assertEquals("authorOpenid=http%3A%2F%2Fa.example.com%2F%20http%3A%2F%2Fb.example.com%2F"
+        + "&postBody=Gr%C3%BC%C3%9Fe%20%26%20~%20100%25&checks=spam&checks=profanity&unsure=0",
+        FormEncoder.forBody().addAll(MollomClient.contentParams(content)).toString());
+  }
+
+  @Test
+  public void reusesBufferOfThread() {
+    Map<String, List<String>> params = new LinkedHashMap<>();
+    params.put("checks", Arrays.asList("spam", "quality"));
+    params.put("postTitle", Collections.singletonList("Hello"));
+
+    FormEncoder encoder = FormEncoder.forBody().addAll(params);
+    assertEquals("checks=spam&checks=quality&postTitle=Hello", encoder.toString());
+    assertEquals(3, encoder.pairCount());
+    byte[] buffer = encoder.buffer();
+
+    FormEncoder reused = FormEncoder.forBody().add("count", "10");
+    assertEquals("count=10", reused.toString());
+    assertEquals(buffer, reused.buffer());
+  }
+}
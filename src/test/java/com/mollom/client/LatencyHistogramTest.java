@@ -0,0 +1,35 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void bucketsCoverLatencyWithinPrecision() {
+    for (long micros = 0; micros < 1L << 36; micros = micros * 3 / 2 + 1) {
+      int index = LatencyHistogram.indexOf(micros);
+      assertTrue(LatencyHistogram.highestValueOf(index) >= micros);
+      assertTrue(index == 0 || LatencyHistogram.highestValueOf(index - 1) < micros);
+      // Relative precision of the bucket.
+      assertTrue(LatencyHistogram.highestValueOf(index) - micros <= micros / 32 + 1);
+    }
+  }
+
+  @Test
+  public void snapshotReportsPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1000000L);
+    }
+    LatencySnapshot snapshot = histogram.getSnapshot();
+    assertEquals(100, snapshot.getCount());
+    assertEquals(50.5, snapshot.getMean(), 0.01);
+    assertEquals(50, snapshot.getP50(), 50 * 0.04);
+    assertEquals(95, snapshot.getP95(), 95 * 0.04);
+    assertEquals(99, snapshot.getP99(), 99 * 0.04);
+    assertEquals(100, snapshot.getMax(), 0.01);
+  }
+}
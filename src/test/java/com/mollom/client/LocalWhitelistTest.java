@@ -0,0 +1,106 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class LocalWhitelistTest {
+
+  private static WhitelistEntry entry(String id, Context context, String value) {
+    WhitelistEntry entry = new WhitelistEntry();
+    entry.setId(id);
+    entry.setContext(context);
+    entry.setValue(value);
+    return entry;
+  }
+
+  private static Content byAuthor(String name, String mail) {
+    Content content = new Content();
+    content.setAuthorName(name);
+    content.setAuthorMail(mail);
+    return content;
+  }
+
+  @Test
+  public void matchesByContextIgnoringCase() {
+    LocalWhitelist whitelist = new LocalWhitelist();
+    whitelist.replaceAll(Arrays.asList(entry("1", Context.AUTHORNAME, "Alice")));
+
+    assertNotNull(whitelist.match(byAuthor("ALICE", null)));
+    // Only values of the entry's context match.
+    assertNull(whitelist.match(byAuthor("Bob", "alice")));
+    assertNull(whitelist.match(byAuthor(null, null)));
+  }
+
+  @Test
+  public void skipsDisabledEntries() {
+    WhitelistEntry disabled = entry("1", Context.AUTHORMAIL, "alice@example.com");
+    disabled.disable();
+    LocalWhitelist whitelist = new LocalWhitelist();
+    whitelist.replaceAll(Arrays.asList(disabled));
+    assertNull(whitelist.match(byAuthor(null, "alice@example.com")));
+
+    disabled.enable();
+    whitelist.put(disabled);
+    assertNotNull(whitelist.match(byAuthor(null, "alice@example.com")));
+  }
+
+  @Test
+  public void putAndRemoveUpdateMirror() {
+    LocalWhitelist whitelist = new LocalWhitelist();
+    WhitelistEntry entry = entry("1", Context.AUTHORNAME, "Alice");
+    whitelist.put(entry);
+    // The mirror keeps a copy of the saved entry.
+    entry.setValue("Bob");
+    assertNotNull(whitelist.match(byAuthor("Alice", null)));
+    assertNull(whitelist.match(byAuthor("Bob", null)));
+
+    // Saving an entry again replaces its previous value.
+    whitelist.put(entry);
+    assertNull(whitelist.match(byAuthor("Alice", null)));
+    assertNotNull(whitelist.match(byAuthor("Bob", null)));
+
+    whitelist.remove(entry);
+    assertNull(whitelist.match(byAuthor("Bob", null)));
+  }
+
+  @Test
+  public void whitelistedAuthorIsNotCheckedRemotely() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withLocalWhitelist(true)
+        .build("publicKey", "privateKey");
+    try {
+      WhitelistEntry entry = new WhitelistEntry();
+      entry.setContext(Context.AUTHORNAME);
+      entry.setValue("Alice");
+      client.saveWhitelistEntry(entry);
+
+      long requestCount = server.getRequestCount();
+      Content content = byAuthor("alice", null);
+      content.setPostBody("Buy spam now");
+      client.checkContent(content);
+      assertEquals("whitelist", content.getReason());
+      assertEquals("ham", content.getSpamClassification());
+      assertEquals(requestCount, server.getRequestCount());
+
+      client.deleteWhitelistEntry(entry);
+      requestCount = server.getRequestCount();
+      content = byAuthor("alice", null);
+      content.setPostBody("Buy spam now");
+      client.checkContent(content);
+      assertNotEquals("whitelist", content.getReason());
+      assertEquals("spam", content.getSpamClassification());
+      assertEquals(requestCount + 1, server.getRequestCount());
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class ModerationPipelineTest {
+  private static final Object COMPLETE = new Object();
+
+  @Test
+  public void emitsResultsInOrderWithinDemand() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withRetries(0)
+        .build("publicKey", "privateKey");
+    try {
+      final AtomicLong requested = new AtomicLong();
+      final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+      ModerationPipeline pipeline = new ModerationPipeline(client, 4, true);
+      pipeline.attach(recorder(signals));
+      pipeline.onSubscribe(upstream(requested));
+      assertEquals(4, requested.get());
+
+      List<Content> contents = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        Content content = new Content();
+        content.setPostTitle(i % 2 == 0 ? "ham" : "spam");
+        contents.add(content);
+      }
+      // Rechecks of an unknown resource fail with a 404.
+      contents.get(1).setId("unknown/resource");
+      for (int i = 0; i < 4; i++) {
+        pipeline.onNext(contents.get(i));
+      }
+      // Without downstream demand, no results are emitted, and no further
+      // contents are requested.
+      assertNull(signals.poll(200, TimeUnit.MILLISECONDS));
+      assertEquals(4, requested.get());
+
+      pipeline.request(Long.MAX_VALUE);
+      for (int i = 0; i < 4; i++) {
+        ContentCheckResult result = (ContentCheckResult) signals.poll(5, TimeUnit.SECONDS);
+        assertSame(contents.get(i), result.getContent());
+        assertEquals(i != 1, result.isSuccess());
+      }
+      assertNull(signals.poll());
+      assertEquals(8, requested.get());
+
+      pipeline.onNext(contents.get(4));
+      pipeline.onNext(contents.get(5));
+      pipeline.onComplete();
+      assertTrue(((ContentCheckResult) signals.poll(5, TimeUnit.SECONDS)).getContent().isHam());
+      assertTrue(((ContentCheckResult) signals.poll(5, TimeUnit.SECONDS)).getContent().isSpam());
+      assertSame(COMPLETE, signals.poll(5, TimeUnit.SECONDS));
+      assertNull(signals.poll(100, TimeUnit.MILLISECONDS));
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+
+  @Test
+  public void rejectedCheckDoesNotFailStream() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withExecutor(command -> {
+          throw new RejectedExecutionException("Queue full");
+        })
+        .build("publicKey", "privateKey");
+    try {
+      BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+      ModerationPipeline pipeline = new ModerationPipeline(client, 4, false);
+      pipeline.attach(recorder(signals));
+      pipeline.onSubscribe(upstream(new AtomicLong()));
+      pipeline.request(Long.MAX_VALUE);
+      pipeline.onNext(new Content());
+      pipeline.onNext(new Content());
+      pipeline.onComplete();
+      for (int i = 0; i < 2; i++) {
+        ContentCheckResult result = (ContentCheckResult) signals.poll(5, TimeUnit.SECONDS);
+        assertTrue(result.getException() instanceof MollomNoResponseException);
+      }
+      assertSame(COMPLETE, signals.poll(5, TimeUnit.SECONDS));
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+
+  /**
+   * @return A downstream that adds all signals to the given queue.
+   */
+  private static ModerationPipeline.Downstream recorder(final BlockingQueue<Object> signals) {
+    return new ModerationPipeline.Downstream() {
+      @Override
+      public void onNext(ContentCheckResult result) {
+        signals.add(result);
+      }
+
+      @Override
+      public void onError(Throwable error) {
+        signals.add(error);
+      }
+
+      @Override
+      public void onComplete() {
+        signals.add(COMPLETE);
+      }
+    };
+  }
+
+  /**
+   * @return An upstream that counts the requested contents.
+   */
+  private static ModerationPipeline.Upstream upstream(final AtomicLong requested) {
+    return new ModerationPipeline.Upstream() {
+      @Override
+      public void request(long count) {
+        requested.addAndGet(count);
+      }
+
+      @Override
+      public void cancel() {
+      }
+    };
+  }
+}
@@ -0,0 +1,590 @@
+package com.mollom.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded stub of the Mollom REST API, to test and load-test integrations
+ * without contacting Mollom.
+ *
+ * Implements the v1 resources used by MollomClient with the semantics of the
+ * dev.mollom.com testing endpoint:
+ * - checkContent() classifies content containing the literal string "spam" as
+ *   spam, "ham" as ham, and everything else as unsure.
+ * - checkCaptcha() only accepts "correct" for image CAPTCHAs and "demo" for
+ *   audio CAPTCHAs as the correct solution.
+ * - Blacklist and whitelist entries are kept in memory.
+ * All API keys are accepted; requests are only required to be OAuth signed.
+ *
+ * Latency and faults are configurable, to measure throughput and resilience:
+ *
+ *   MollomStubServer server = new MollomStubServer()
+ *       .withLatency(MollomStubServer.logNormalLatency(20, 200))
+ *       .withServerErrorRate(0.01)
+ *       .withConnectionResetRate(0.001)
+ *       .start();
+ *   MollomClient client = MollomClientBuilder.create()
+ *       .withEndpoint(server.getEndpoint())
+ *       .build("publicKey", "privateKey");
+ *
+ * Available to other projects in the test-jar of this library.
+ */
+public class MollomStubServer implements Closeable {
+
+  /**
+   * Distribution of the time the stub server takes to respond.
+   */
+  public interface LatencyDistribution {
+    /**
+     * @return The delay (ms) of the next response.
+     */
+    long nextDelay(Random random);
+  }
+
+  private final Map<String, String> captchaTypes = new ConcurrentHashMap<>();
+  // Entries by list path (e.g., "blacklist/publicKey") and entry ID.
+  private final Map<String, Map<String, Map<String, String>>> lists = new ConcurrentHashMap<>();
+  private final AtomicLong nextId = new AtomicLong(1);
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong connectionCount = new AtomicLong();
+
+  private volatile LatencyDistribution latency = noLatency();
+  private volatile double serverErrorRate;
+  private volatile double connectionResetRate;
+
+  private ServerSocket serverSocket;
+  private ExecutorService connectionExecutor;
+  private volatile boolean running;
+
+  /**
+   * @return Responses without delay.
+   */
+  public static LatencyDistribution noLatency() {
+    return random -> 0;
+  }
+
+  /**
+   * @return Responses delayed by the given time (ms).
+   */
+  public static LatencyDistribution fixedLatency(final long delay) {
+    return random -> delay;
+  }
+
+  /**
+   * @return Responses delayed uniformly between the given times (ms).
+   */
+  public static LatencyDistribution uniformLatency(final long minDelay, final long maxDelay) {
+    return random -> minDelay + (long) (random.nextDouble() * (maxDelay - minDelay));
+  }
+
+  /**
+   * @return Responses delayed log-normally, like typical service latencies,
+   *   with the given median and 99th percentile (ms).
+   */
+  public static LatencyDistribution logNormalLatency(long median, long p99) {
+    final double mu = Math.log(median);
+    // The 99th percentile of the standard normal distribution.
+    final double sigma = (Math.log(p99) - mu) / 2.326;
+    return random -> Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+  }
+
+  /**
+   * Sets the latency of responses.
+   *
+   * Default value: no latency
+   */
+  public MollomStubServer withLatency(LatencyDistribution latency) {
+    this.latency = latency;
+    return this;
+  }
+
+  /**
+   * Sets the fraction of requests that fail with 503 Service Unavailable.
+   *
+   * Default value: 0
+   */
+  public MollomStubServer withServerErrorRate(double serverErrorRate) {
+    this.serverErrorRate = serverErrorRate;
+    return this;
+  }
+
+  /**
+   * Sets the fraction of requests whose connection is reset without a
+   * response.
+   *
+   * Default value: 0
+   */
+  public MollomStubServer withConnectionResetRate(double connectionResetRate) {
+    this.connectionResetRate = connectionResetRate;
+    return this;
+  }
+
+  /**
+   * Starts the server on a free port of the loopback interface.
+   */
+  public MollomStubServer start() throws IOException {
+    serverSocket = new ServerSocket();
+    serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+    connectionExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("mollom-stub-server"));
+    running = true;
+    connectionExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        accept();
+      }
+    });
+    return this;
+  }
+
+  /**
+   * @return The endpoint to configure with MollomClientBuilder.withEndpoint().
+   */
+  public URI getEndpoint() {
+    return URI.create("http://" + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort() + "/");
+  }
+
+  /**
+   * @return The number of requests received, including failed requests.
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * @return The number of connections accepted; e.g., to verify that clients
+   *   reuse persistent connections.
+   */
+  public long getConnectionCount() {
+    return connectionCount.get();
+  }
+
+  /**
+   * Stops the server and closes all connections.
+   */
+  @Override
+  public void close() {
+    running = false;
+    try {
+      serverSocket.close();
+    } catch (IOException e) {
+      // Nothing left to do.
+    }
+    connectionExecutor.shutdownNow();
+  }
+
+  private void accept() {
+    while (running) {
+      final Socket socket;
+      try {
+        socket = serverSocket.accept();
+      } catch (IOException e) {
+        // The server was closed.
+        return;
+      }
+      connectionCount.incrementAndGet();
+      connectionExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          serve(socket);
+        }
+      });
+    }
+  }
+
+  /**
+   * Serves the persistent HTTP/1.1 connection of a client.
+   */
+  private void serve(Socket socket) {
+    try (Socket connection = socket) {
+      connection.setTcpNoDelay(true);
+      InputStream in = new BufferedInputStream(connection.getInputStream());
+      OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+      while (running) {
+        String requestLine = readLine(in);
+        if (requestLine == null || requestLine.isEmpty()) {
+          return;
+        }
+        String[] request = requestLine.split(" ");
+        if (request.length != 3) {
+          return;
+        }
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+          int colon = line.indexOf(':');
+          if (colon > 0) {
+            headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+          }
+        }
+        if (line == null) {
+          return;
+        }
+        if ("100-continue".equalsIgnoreCase(headers.get("expect"))) {
+          out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+          out.flush();
+        }
+        byte[] body = readBody(in, headers);
+        requestCount.incrementAndGet();
+
+        Random random = ThreadLocalRandom.current();
+        if (random.nextDouble() < connectionResetRate) {
+          // Close with a TCP RST instead of a FIN.
+          connection.setSoLinger(true, 0);
+          return;
+        }
+        long delay = latency.nextDelay(random);
+        if (delay > 0) {
+          Thread.sleep(delay);
+        }
+        Response response;
+        if (random.nextDouble() < serverErrorRate) {
+          response = error(503, "Service unavailable.");
+        } else {
+          response = handle(request[0], request[1], headers, new String(body, StandardCharsets.ISO_8859_1));
+        }
+        boolean keepAlive = !"close".equalsIgnoreCase(headers.get("connection")) && "HTTP/1.1".equals(request[2]);
+        write(out, response, keepAlive);
+        if (!keepAlive) {
+          return;
+        }
+      }
+    } catch (IOException e) {
+      // The connection was closed by the client.
+    } catch (InterruptedException e) {
+      // The server was closed.
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private Response handle(String method, String target, Map<String, String> headers, String body) {
+    String authorization = headers.get("authorization");
+    if (authorization == null || !authorization.contains("oauth_signature")) {
+      return error(401, "Missing OAuth signature.");
+    }
+    int queryStart = target.indexOf('?');
+    String path = queryStart < 0 ? target : target.substring(0, queryStart);
+    Map<String, String> params = new HashMap<>();
+    if (queryStart >= 0) {
+      decodeParams(target.substring(queryStart + 1), params);
+    }
+    decodeParams(body, params);
+
+    // Strip the API version; e.g., /v1/content/123 becomes [content, 123].
+    List<String> segments = new ArrayList<>();
+    for (String segment : path.split("/")) {
+      if (!segment.isEmpty()) {
+        segments.add(segment);
+      }
+    }
+    if (segments.size() < 2) {
+      return error(404, "Unknown resource.");
+    }
+    segments = segments.subList(1, segments.size());
+    String resource = segments.get(0);
+    boolean post = "POST".equals(method);
+
+    if (resource.equals("site") && segments.size() == 2 && post) {
+      return ok("<site><id>" + escape(segments.get(1)) + "</id><publicKey>" + escape(segments.get(1)) + "</publicKey></site>");
+    }
+    if (resource.equals("content") && segments.size() <= 2 && post) {
+      return checkContent(segments.size() == 2 ? segments.get(1) : null, params);
+    }
+    if (resource.equals("captcha") && segments.size() == 1 && post) {
+      return createCaptcha(params);
+    }
+    if (resource.equals("captcha") && segments.size() == 2 && post) {
+      return checkCaptcha(segments.get(1), params);
+    }
+    if (resource.equals("feedback") && segments.size() == 1 && post) {
+      return ok("");
+    }
+    if ((resource.equals("blacklist") || resource.equals("whitelist")) && segments.size() >= 2) {
+      return handleList(method, resource + "/" + segments.get(1), segments.subList(2, segments.size()), params);
+    }
+    return error(404, "Unknown resource.");
+  }
+
+  private Response checkContent(String id, Map<String, String> params) {
+    if (id == null) {
+      id = "stub" + nextId.getAndIncrement();
+    }
+    String text = nullToEmpty(params.get("postTitle")) + " " + nullToEmpty(params.get("postBody"));
+    String classification;
+    double score;
+    if (text.contains("spam")) {
+      classification = "spam";
+      score = 1.0;
+    } else if (text.contains("ham")) {
+      classification = "ham";
+      score = 0.0;
+    } else {
+      classification = "unsure";
+      score = 0.5;
+    }
+    return ok("<content><id>" + escape(id) + "</id>"
+        + "<spamScore>" + score + "</spamScore>"
+        + "<spamClassification>" + classification + "</spamClassification>"
+        + "<profanityScore>0.0</profanityScore>"
+        + "<qualityScore>0.5</qualityScore>"
+        + "<languages><language><languageCode>en</languageCode><languageScore>1.0</languageScore></language></languages>"
+        + "<reason>" + classification + "</reason>"
+        + "</content>");
+  }
+
+  private Response createCaptcha(Map<String, String> params) {
+    String id = "stub" + nextId.getAndIncrement();
+    String type = "audio".equals(params.get("type")) ? "audio" : "image";
+    captchaTypes.put(id, type);
+    String url = getEndpoint().resolve("captcha/" + id + ("audio".equals(type) ? ".mp3" : ".png")).toString();
+    return ok("<captcha><id>" + id + "</id><url>" + escape(url) + "</url></captcha>");
+  }
+
+  private Response checkCaptcha(String id, Map<String, String> params) {
+    String type = captchaTypes.get(id);
+    if (type == null) {
+      return error(404, "Unknown CAPTCHA.");
+    }
+    String solution = "audio".equals(type) ? "demo" : "correct";
+    boolean solved = solution.equals(params.get("solution"));
+    return ok("<captcha><id>" + escape(id) + "</id><solved>" + (solved ? 1 : 0) + "</solved>"
+        + "<reason>" + (solved ? "" : "incorrect") + "</reason></captcha>");
+  }
+
+  /**
+   * Handles the resources of a blacklist or whitelist.
+   *
+   * @param segments The path segments after the public key.
+   */
+  private Response handleList(String method, String listPath, List<String> segments, Map<String, String> params) {
+    Map<String, Map<String, String>> entries = lists.get(listPath);
+    if (entries == null) {
+      lists.putIfAbsent(listPath, Collections.synchronizedMap(new LinkedHashMap<String, Map<String, String>>()));
+      entries = lists.get(listPath);
+    }
+    boolean post = "POST".equals(method);
+
+    if (segments.isEmpty() && !post) {
+      List<Map<String, String>> page;
+      synchronized (entries) {
+        page = new ArrayList<>(entries.values());
+      }
+      int total = page.size();
+      int offset = Math.min(parseInt(params.get("offset"), 0), total);
+      int count = Math.min(parseInt(params.get("count"), total), total - offset);
+      StringBuilder xml = new StringBuilder("<list>");
+      for (Map<String, String> entry : page.subList(offset, offset + count)) {
+        appendEntry(xml, entry);
+      }
+      xml.append("</list><listCount>").append(count).append("</listCount><listOffset>").append(offset)
+          .append("</listOffset><listTotal>").append(total).append("</listTotal>");
+      return ok(xml.toString());
+    }
+    if (segments.isEmpty() && post) {
+      Map<String, String> entry = new LinkedHashMap<>();
+      String id = Long.toString(nextId.getAndIncrement());
+      entry.put("id", id);
+      entry.put("created", Long.toString(System.currentTimeMillis() / 1000));
+      entry.putAll(params);
+      entries.put(id, entry);
+      return okEntry(entry);
+    }
+
+    Map<String, String> entry = entries.get(segments.get(0));
+    if (entry == null) {
+      return error(404, "Unknown entry.");
+    }
+    if (segments.size() == 1 && !post) {
+      return okEntry(entry);
+    }
+    if (segments.size() == 1 && post) {
+      synchronized (entry) {
+        entry.putAll(params);
+      }
+      return okEntry(entry);
+    }
+    if (segments.size() == 2 && segments.get(1).equals("delete") && post) {
+      entries.remove(segments.get(0));
+      return ok("");
+    }
+    return error(404, "Unknown resource.");
+  }
+
+  private Response okEntry(Map<String, String> entry) {
+    StringBuilder xml = new StringBuilder();
+    appendEntry(xml, entry);
+    return ok(xml.toString());
+  }
+
+  private static void appendEntry(StringBuilder xml, Map<String, String> entry) {
+    xml.append("<entry>");
+    synchronized (entry) {
+      for (Map.Entry<String, String> field : entry.entrySet()) {
+        xml.append('<').append(field.getKey()).append('>').append(escape(field.getValue()))
+            .append("</").append(field.getKey()).append('>');
+      }
+    }
+    xml.append("</entry>");
+  }
+
+  private static Response ok(String body) {
+    return new Response(200, "<?xml version=\"1.0\"?>\n<response><code>200</code>" + body + "</response>\n");
+  }
+
+  private static Response error(int status, String message) {
+    return new Response(status, "<?xml version=\"1.0\"?>\n<response><code>" + status + "</code><message>"
+        + escape(message) + "</message></response>\n");
+  }
+
+  private static void write(OutputStream out, Response response, boolean keepAlive) throws IOException {
+    byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+    String head = "HTTP/1.1 " + response.status + " " + reasonPhrase(response.status) + "\r\n"
+        + "Content-Type: application/xml; charset=UTF-8\r\n"
+        + "Content-Length: " + body.length + "\r\n"
+        + (keepAlive ? "" : "Connection: close\r\n")
+        + "\r\n";
+    out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+    out.write(body);
+    out.flush();
+  }
+
+  private static String reasonPhrase(int status) {
+    switch (status) {
+      case 200:
+        return "OK";
+      case 401:
+        return "Unauthorized";
+      case 404:
+        return "Not Found";
+      case 503:
+        return "Service Unavailable";
+      default:
+        return "Error";
+    }
+  }
+
+  /**
+   * @return The next line of the request head, without line terminator, or
+   *   null at the end of the stream.
+   */
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int b;
+    while ((b = in.read()) != -1) {
+      if (b == '\n') {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+          line.setLength(length - 1);
+        }
+        return line.toString();
+      }
+      line.append((char) b);
+    }
+    return line.length() > 0 ? line.toString() : null;
+  }
+
+  private static byte[] readBody(InputStream in, Map<String, String> headers) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+      String chunkSize;
+      while ((chunkSize = readLine(in)) != null) {
+        int semicolon = chunkSize.indexOf(';');
+        int size = Integer.parseInt((semicolon < 0 ? chunkSize : chunkSize.substring(0, semicolon)).trim(), 16);
+        if (size == 0) {
+          // Skip the trailers.
+          String trailer;
+          while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+            // Ignore.
+          }
+          break;
+        }
+        copy(in, body, size);
+        readLine(in);
+      }
+    } else if (headers.containsKey("content-length")) {
+      copy(in, body, Integer.parseInt(headers.get("content-length")));
+    }
+    return body.toByteArray();
+  }
+
+  private static void copy(InputStream in, ByteArrayOutputStream out, int length) throws IOException {
+    byte[] buffer = new byte[Math.min(length, 8192)];
+    while (length > 0) {
+      int read = in.read(buffer, 0, Math.min(length, buffer.length));
+      if (read == -1) {
+        throw new IOException("Unexpected end of request body.");
+      }
+      out.write(buffer, 0, read);
+      length -= read;
+    }
+  }
+
+  /**
+   * Decodes URL-encoded parameters; only the first value of each parameter is
+   * kept.
+   */
+  private static void decodeParams(String encoded, Map<String, String> params) {
+    if (encoded.isEmpty()) {
+      return;
+    }
+    try {
+      for (String param : encoded.split("&")) {
+        int equals = param.indexOf('=');
+        String name = URLDecoder.decode(equals < 0 ? param : param.substring(0, equals), "UTF-8");
+        String value = equals < 0 ? "" : URLDecoder.decode(param.substring(equals + 1), "UTF-8");
+        if (!params.containsKey(name)) {
+          params.put(name, value);
+        }
+      }
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static int parseInt(String value, int defaultValue) {
+    return value != null ? Integer.parseInt(value) : defaultValue;
+  }
+
+  private static String nullToEmpty(String value) {
+    return value != null ? value : "";
+  }
+
+  private static String escape(String value) {
+    return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+  }
+
+  private static class Response {
+    private final int status;
+    private final String body;
+
+    Response(int status, String body) {
+      this.status = status;
+      this.body = body;
+    }
+  }
+}
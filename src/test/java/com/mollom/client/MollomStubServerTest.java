@@ -0,0 +1,112 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MollomStubServerTest {
+  private MollomStubServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MollomStubServer().start();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  private MollomClient createClient() {
+    return MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withRetries(0)
+        .build("publicKey", "privateKey");
+  }
+
+  @Test
+  public void classifiesLikeTestingEndpoint() throws Exception {
+    MollomClient client = createClient();
+    try {
+      Content spam = new Content();
+      spam.setPostBody("Buy spam now");
+      client.checkContent(spam);
+      assertEquals("spam", spam.getSpamClassification());
+
+      Content ham = new Content();
+      ham.setPostTitle("ham");
+      client.checkContent(ham);
+      assertEquals("ham", ham.getSpamClassification());
+
+      Captcha captcha = client.createCaptcha(CaptchaType.IMAGE, false);
+      captcha.setSolution("correct");
+      client.checkCaptcha(captcha);
+      assertTrue(captcha.isSolved());
+    } finally {
+      client.destroy();
+    }
+  }
+
+  @Test
+  public void keepsBlacklistEntries() throws Exception {
+    MollomClient client = createClient();
+    try {
+      BlacklistEntry entry = new BlacklistEntry();
+      entry.setValue("viagra");
+      client.saveBlacklistEntry(entry);
+      List<BlacklistEntry> entries = client.listBlacklistEntries();
+      assertEquals(1, entries.size());
+      assertEquals("viagra", entries.get(0).getValue());
+
+      client.deleteBlacklistEntry(entries.get(0));
+      assertTrue(client.listBlacklistEntries().isEmpty());
+    } finally {
+      client.destroy();
+    }
+  }
+
+  @Test
+  public void injectsFaults() throws Exception {
+    MollomClient client = createClient();
+    try {
+      server.withServerErrorRate(1);
+      try {
+        client.checkContent(new Content());
+        fail();
+      } catch (MollomUnexpectedResponseException e) {
+        // Expected.
+      }
+      server.withServerErrorRate(0).withConnectionResetRate(1);
+      try {
+        client.checkContent(new Content());
+        fail();
+      } catch (MollomNoResponseException e) {
+        // Expected.
+      }
+      assertFalse(server.getRequestCount() < 3);
+    } finally {
+      client.destroy();
+    }
+  }
+
+  @Test
+  public void encodesEntryIds() throws Exception {
+    assertEquals("blacklist/publicKey/a%20b%3Ac", ResourceUris.encodePath("blacklist/publicKey/a b:c"));
+    MollomClient client = createClient();
+    try {
+      client.getBlacklistEntry("a b");
+      fail("Expected unknown entry.");
+    } catch (MollomRequestException e) {
+      // Expected; the ID was sent.
+    } finally {
+      client.destroy();
+    }
+  }
+}
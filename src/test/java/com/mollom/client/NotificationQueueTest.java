@@ -0,0 +1,95 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class NotificationQueueTest {
+
+  @Test
+  public void coalescesQueuedNotificationsOfSameKey() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final List<String> sent = new CopyOnWriteArrayList<>();
+    NotificationQueue queue = new NotificationQueue(10, 1, OverflowPolicy.BLOCK);
+    // Occupy the single worker, so that the next notifications stay queued.
+    queue.offer("blocker", () -> await(blocked));
+    queue.offer("content/1", () -> sent.add("stored 1"));
+    queue.offer("content/2", () -> sent.add("stored 2"));
+    queue.offer("content/1", () -> sent.add("deleted 1"));
+    blocked.countDown();
+    queue.shutdown(5000);
+
+    assertEquals(2, sent.size());
+    assertEquals("deleted 1", sent.get(0));
+    assertEquals("stored 2", sent.get(1));
+    NotificationQueueStatistics statistics = queue.getStatistics();
+    assertEquals(4, statistics.getSentCount() + statistics.getCoalescedCount());
+    assertEquals(1, statistics.getCoalescedCount());
+  }
+
+  @Test
+  public void appliesOverflowPolicy() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final List<String> sent = new CopyOnWriteArrayList<>();
+    NotificationQueue queue = new NotificationQueue(1, 1, OverflowPolicy.DROP_NEWEST);
+    queue.offer(null, () -> await(blocked));
+    // Wait until the worker took the blocker off the queue.
+    while (queue.getStatistics().getInFlight() == 0) {
+      Thread.sleep(1);
+    }
+    assertTrue(queue.offer(null, () -> sent.add("first")));
+    assertFalse(queue.offer(null, () -> sent.add("second")));
+    blocked.countDown();
+    queue.shutdown(5000);
+
+    assertEquals(1, sent.size());
+    assertEquals(1, queue.getStatistics().getDroppedCount());
+  }
+
+  @Test
+  public void callerRunsAfterNotificationOfSameKey() throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final List<String> sent = new CopyOnWriteArrayList<>();
+    final NotificationQueue queue = new NotificationQueue(1, 1, OverflowPolicy.CALLER_RUNS);
+    queue.offer("content/1", () -> {
+      await(blocked);
+      sent.add("stored 1");
+    });
+    while (queue.getStatistics().getInFlight() == 0) {
+      Thread.sleep(1);
+    }
+    // Fill the queue, so that the next notification runs on the caller.
+    queue.offer("content/2", () -> sent.add("stored 2"));
+    Thread caller = new Thread(() -> queue.offer("content/1", () -> sent.add("deleted 1")));
+    caller.start();
+    Thread.sleep(50);
+    assertTrue(sent.isEmpty());
+    blocked.countDown();
+    caller.join(5000);
+    queue.shutdown(5000);
+
+    assertEquals(3, sent.size());
+    assertTrue(sent.indexOf("stored 1") < sent.indexOf("deleted 1"));
+  }
+
+  @Test
+  public void dropsNotificationsAfterShutdown() {
+    NotificationQueue queue = new NotificationQueue(1, 1, OverflowPolicy.BLOCK);
+    queue.shutdown(0);
+    assertFalse(queue.offer(null, () -> { }));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.sun.jersey.oauth.signature.OAuthParameters;
+import com.sun.jersey.oauth.signature.OAuthRequest;
+import com.sun.jersey.oauth.signature.OAuthSecrets;
+import com.sun.jersey.oauth.signature.OAuthSignature;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class OAuthSignerTest {
+  private static final Pattern SIGNATURE = Pattern.compile("oauth_signature=\"([^\"]+)\"");
+
+  @Test
+  public void signsLikeJersey() throws Exception {
+    Map<String, List<String>> formParams = new LinkedHashMap<>();
+    formParams.put("postTitle", Collections.singletonList("Hello, world & \"friends\""));
+    formParams.put("postBody", Collections.singletonList("Gr\u00fc\u00dfe \u2603 100% ~tilde* + plus"));
+    formParams.put("checks", Arrays.asList("spam", "profanity"));
+    formParams.put("a-b", Collections.singletonList("sorted before a"));
+    formParams.put("a", Collections.singletonList("x"));
+    Map<String, List<String>> queryParams = Collections.singletonMap("count", Collections.singletonList("10"));
+
+    assertSignature("POST", "http://rest.mollom.com/v1/content", null, formParams);
+    assertSignature("GET", "https://REST.mollom.com:443/v1/blacklist/publicKey", queryParams, null);
+    assertSignature("POST", "http://localhost:8080/v1/site/publicKey", queryParams, formParams);
+  }
+
+  @Test
+  public void encodesSupplementaryCharacters() {
+    // Jersey 1.16 encodes characters outside the BMP as "??".
+    assertEquals("%F0%9F%98%80%20%3F", FormEncoder.encode("\uD83D\uDE00 \uD83D"));
+  }
+
+  @Test
+  public void usesUniqueNonces() {
+    OAuthSigner signer = new OAuthSigner("publicKey", "privateKey");
+    URI uri = URI.create("http://rest.mollom.com/v1/content");
+    assertNotEquals(signer.sign("POST", uri, null, null), signer.sign("POST", uri, null, null));
+  }
+
+  private static void assertSignature(final String method, String uri, final Map<String, List<String>> queryParams,
+      final Map<String, List<String>> formParams) throws Exception {
+    String header = new OAuthSigner("public Key", "private&Key").sign(method, URI.create(uri), queryParams,
+        formParams, "nonce", 1400000000);
+
+    final URL url = new URL(uri);
+    final List<String> headers = new ArrayList<>();
+    OAuthRequest request = new OAuthRequest() {
+      @Override
+      public String getRequestMethod() {
+        return method;
+      }
+
+      @Override
+      public URL getRequestURL() {
+        return url;
+      }
+
+      @Override
+      public Set<String> getParameterNames() {
+        Set<String> names = new LinkedHashSet<>();
+        if (queryParams != null) {
+          names.addAll(queryParams.keySet());
+        }
+        if (formParams != null) {
+          names.addAll(formParams.keySet());
+        }
+        return names;
+      }
+
+      @Override
+      public List<String> getParameterValues(String name) {
+        List<String> values = new ArrayList<>();
+        if (queryParams != null && queryParams.containsKey(name)) {
+          values.addAll(queryParams.get(name));
+        }
+        if (formParams != null && formParams.containsKey(name)) {
+          values.addAll(formParams.get(name));
+        }
+        return values;
+      }
+
+      @Override
+      public List<String> getHeaderValues(String name) {
+        return null;
+      }
+
+      @Override
+      public void addHeaderValue(String name, String value) {
+        headers.add(value);
+      }
+    };
+    OAuthParameters params = new OAuthParameters()
+        .signatureMethod("HMAC-SHA1")
+        .consumerKey("public Key")
+        .version("1.0")
+        .nonce("nonce")
+        .timestamp("1400000000");
+    OAuthSignature.sign(request, params, new OAuthSecrets().consumerSecret("private&Key"));
+
+    assertEquals(signatureOf(headers.get(0)), signatureOf(header));
+  }
+
+  private static String signatureOf(String header) {
+    Matcher matcher = SIGNATURE.matcher(header);
+    if (!matcher.find()) {
+      throw new AssertionError("No signature in " + header);
+    }
+    return matcher.group(1);
+  }
+}
@@ -0,0 +1,113 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutboxTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void replaysUnacknowledgedMutationsAfterReopen() throws Exception {
+    File directory = folder.newFolder();
+    Outbox outbox = new Outbox(directory, 4096, 10);
+    long first = outbox.append(null, Operation.SEND_FEEDBACK, "feedback", params("reason", "spam"));
+    outbox.append("content/1", Operation.CHECK_CONTENT, "content/1", params("stored", "1"));
+    outbox.append("content/1", Operation.CHECK_CONTENT, "content/1", params("stored", "0"));
+    outbox.append(null, Operation.SEND_FEEDBACK, "feedback", params("reason", "profanity"));
+    outbox.acknowledge(first);
+    outbox.close();
+
+    final List<String> replayed = new CopyOnWriteArrayList<>();
+    outbox = new Outbox(directory, 4096, 10);
+    assertEquals(3, outbox.getStatistics().getBacklog());
+    outbox.start(mutation -> replayed.add(mutation.path + " " + mutation.params));
+    awaitBacklog(outbox, 0);
+    outbox.close();
+
+    // The superseded stored state of content 1 is skipped.
+    assertEquals(2, replayed.size());
+    assertEquals("content/1 {stored=[0]}", replayed.get(0));
+    assertEquals("feedback {reason=[profanity]}", replayed.get(1));
+  }
+
+  @Test
+  public void deletesAcknowledgedSegments() throws Exception {
+    Outbox outbox = new Outbox(folder.newFolder(), 4096, 10);
+    StringBuilder postBody = new StringBuilder();
+    while (postBody.length() < 1000) {
+      postBody.append("Lorem ipsum dolor sit amet. ");
+    }
+    long[] sequences = new long[20];
+    for (int i = 0; i < sequences.length; i++) {
+      sequences[i] = outbox.append(null, Operation.CHECK_CONTENT, "content", params("postBody", postBody.toString()));
+    }
+    assertEquals(sequences.length, outbox.getStatistics().getBacklog());
+    assertTrue(outbox.getStatistics().getSegmentCount() > 2);
+
+    for (int i = 0; i < sequences.length - 1; i++) {
+      outbox.acknowledge(sequences[i]);
+    }
+    OutboxStatistics statistics = outbox.getStatistics();
+    assertEquals(1, statistics.getBacklog());
+    // Only the segment of the last mutation, and the segment of the acks.
+    assertTrue(statistics.getSegmentCount() <= 2);
+
+    outbox.acknowledge(sequences[sequences.length - 1]);
+    assertEquals(1, outbox.getStatistics().getSegmentCount());
+    outbox.close();
+  }
+
+  @Test
+  public void replaysNotificationsWhenMollomIsReachableAgain() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withRetries(0)
+        .withOutbox(folder.newFolder())
+        .build("publicKey", "privateKey");
+    try {
+      Content content = new Content();
+      content.setPostTitle("ham");
+      client.checkContent(content);
+
+      server.withConnectionResetRate(1);
+      // Returns normally; the notification is journaled.
+      client.markAsStored(content);
+      client.sendFeedback(content, FeedbackReason.SPAM);
+      assertEquals(2, client.getOutboxStatistics().getBacklog());
+
+      server.withConnectionResetRate(0);
+      long deadline = System.currentTimeMillis() + 10000;
+      while (client.getOutboxStatistics().getBacklog() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertEquals(0, client.getOutboxStatistics().getBacklog());
+      assertEquals(2, client.getOutboxStatistics().getReplayedCount());
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+
+  private static Map<String, List<String>> params(String name, String value) {
+    return Collections.singletonMap(name, Collections.singletonList(value));
+  }
+
+  private static void awaitBacklog(Outbox outbox, int backlog) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (outbox.getStatistics().getBacklog() > backlog && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+  }
+}
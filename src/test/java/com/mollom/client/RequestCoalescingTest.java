@@ -0,0 +1,66 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RequestCoalescingTest {
+
+  @Test
+  public void concurrentEqualChecksShareOneRequest() throws Exception {
+    final int callers = 8;
+    MollomStubServer server = new MollomStubServer()
+        .withLatency(MollomStubServer.fixedLatency(300))
+        .start();
+    ExecutorService threads = Executors.newFixedThreadPool(callers);
+    try {
+      final MollomClient client = MollomClientBuilder.create()
+          .withEndpoint(server.getEndpoint())
+          .withRequestCoalescing(true)
+          .build("publicKey", "privateKey");
+      try {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Content>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+          final Content content = new Content();
+          content.setPostBody("Buy cheap watches");
+          // Posted from different IP addresses.
+          content.setAuthorIp("10.0.0." + (i + 1));
+          results.add(threads.submit(() -> {
+            start.await();
+            client.checkContent(content);
+            return content;
+          }));
+        }
+        start.countDown();
+
+        int withId = 0;
+        for (Future<Content> result : results) {
+          Content content = result.get(10, TimeUnit.SECONDS);
+          assertNotNull(content.getSpamClassification());
+          if (content.getId() != null) {
+            withId++;
+          }
+        }
+        // One site verification and one content check.
+        assertEquals(2, server.getRequestCount());
+        // Only the caller that sent the request gets the content ID.
+        assertEquals(1, withId);
+      } finally {
+        client.destroy();
+      }
+    } finally {
+      threads.shutdownNow();
+      server.close();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RequestHedgerTest {
+
+  private static class StubResponse extends TransportResponse {
+    final int request;
+    volatile boolean closed;
+
+    StubResponse(int request) {
+      this.request = request;
+    }
+
+    @Override
+    int getStatus() {
+      return 200;
+    }
+
+    @Override
+    InputStream getBody() {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  /**
+   * Answers requests after the given latencies (ms), in turn; an aborted
+   * request fails at once.
+   */
+  private static class StubTransport implements Transport {
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger aborted = new AtomicInteger();
+    private final int[] latencies;
+
+    StubTransport(int... latencies) {
+      this.latencies = latencies;
+    }
+
+    @Override
+    public TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+        Map<String, List<String>> formParams, int timeout) throws IOException {
+      int request = requests.getAndIncrement();
+      try {
+        Thread.sleep(latencies[Math.min(request, latencies.length - 1)]);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      return new StubResponse(request);
+    }
+
+    @Override
+    public TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+        Map<String, List<String>> formParams, int timeout, AbortHandle abort) throws IOException {
+      final Thread thread = Thread.currentThread();
+      abort.onAbort(() -> {
+        aborted.incrementAndGet();
+        thread.interrupt();
+      });
+      return send(method, path, queryParams, formParams, timeout);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  @Test
+  public void hedgeWinsOverSlowRequest() throws Exception {
+    RequestHedger hedger = new RequestHedger(95, 0);
+    try {
+      StubTransport fast = new StubTransport(20);
+      for (int i = 0; i < 32; i++) {
+        hedger.send(fast, "GET", "blacklist", null, null, 0).close();
+      }
+      assertEquals(0, hedger.getStatistics().getHedgeCount());
+
+      StubTransport slowThenFast = new StubTransport(5000, 20);
+      long startTime = System.nanoTime();
+      StubResponse response = (StubResponse) hedger.send(slowThenFast, "GET", "blacklist", null, null, 0);
+      assertEquals(1, response.request);
+      // The slow request was aborted instead of running to completion.
+      assertEquals(1, slowThenFast.aborted.get());
+      assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) < 2000);
+      // The interrupt of the abort was consumed by the transport.
+      assertTrue(!Thread.interrupted());
+
+      HedgingStatistics statistics = hedger.getStatistics();
+      assertEquals(33, statistics.getRequestCount());
+      assertEquals(1, statistics.getHedgeCount());
+      assertEquals(1, statistics.getHedgeWinCount());
+      assertTrue(statistics.getHedgeDelay() >= 0);
+    } finally {
+      hedger.close();
+    }
+  }
+
+  @Test
+  public void hedgesOnBoundedExecutor() throws Exception {
+    MollomStubServer server = new MollomStubServer()
+        .withLatency(MollomStubServer.fixedLatency(200))
+        .start();
+    // A single thread, which sends the first request of each call.
+    ExecutorService executor = Executors.newFixedThreadPool(1);
+    try {
+      MollomClient client = MollomClientBuilder.create()
+          .withEndpoint(server.getEndpoint())
+          .withExecutor(executor)
+          .withHedging(50)
+          .build("publicKey", "privateKey");
+      try {
+        BlacklistEntry entry = new BlacklistEntry();
+        entry.setValue("cheap watches");
+        client.saveBlacklistEntry(entry);
+        for (int i = 0; i < 40; i++) {
+          assertNotNull(client.getBlacklistEntryAsync(entry.getId()).get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(client.getHedgingStatistics().getHedgeCount() > 0);
+      } finally {
+        client.destroy();
+      }
+    } finally {
+      executor.shutdownNow();
+      server.close();
+    }
+  }
+}
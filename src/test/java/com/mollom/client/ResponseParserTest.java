@@ -0,0 +1,117 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ResponseParserTest {
+
+  static String contentResponse(String id, String spamClassification) {
+    return "<?xml version=\"1.0\"?>"
+        + "<response>"
+        + "<code>200</code>"
+        + "<content>"
+        + "<id>" + id + "</id>"
+        + "<spamScore>1.0</spamScore>"
+        + "<spamClassification>" + spamClassification + "</spamClassification>"
+        + "<reason>some reason</reason>"
+        + "<languages><language><languageCode>en</languageCode><languageScore>0.95</languageScore></language></languages>"
+        + "<postTitle>Title</postTitle>"
+        + "<postBody>Body</postBody>"
+        + "</content>"
+        + "</response>";
+  }
+
+  static String blacklistResponse(int count) {
+    StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><response><code>200</code><list>");
+    for (int i = 0; i < count; i++) {
+      xml.append("<entry><id>").append(i).append("</id><created>1370000000</created><status>1</status>")
+          .append("<value>value").append(i).append("</value><reason>spam</reason>")
+          .append("<context>allFields</context><match>contains</match></entry>");
+    }
+    return xml.append("</list></response>").toString();
+  }
+
+  static InputStream stream(String xml) {
+    return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void parseBody() throws Exception {
+    ResponseParser parser = new ResponseParser();
+    Content content = parser.parseBody(stream(contentResponse("abc", "spam")), "content", Content.class);
+    assertEquals("abc", content.getId());
+    assertEquals("spam", content.getSpamClassification());
+    assertEquals(1.0, content.getSpamScore(), 0);
+    assertEquals("en", content.getLanguages()[0].getLanguageCode());
+  }
+
+  @Test
+  public void parseList() throws Exception {
+    ResponseParser parser = new ResponseParser();
+    List<BlacklistEntry> entries = parser.parseList(stream(blacklistResponse(3)), "entry", BlacklistEntry.class);
+    assertEquals(3, entries.size());
+    assertEquals("2", entries.get(2).getId());
+    assertEquals("value2", entries.get(2).getValue());
+    assertEquals(Context.ALLFIELDS, entries.get(2).getContext());
+  }
+
+  @Test
+  public void parsePage() throws Exception {
+    String xml = blacklistResponse(2).replace("</list>", "</list><listCount>2</listCount><listOffset>10</listOffset><listTotal>12</listTotal>");
+    ListPage<BlacklistEntry> page = new ResponseParser().parsePage(stream(xml), "entry", BlacklistEntry.class);
+    assertEquals(2, page.getItems().size());
+    assertEquals(2, page.getCount());
+    assertEquals(10, page.getOffset());
+    assertEquals(12, page.getTotal());
+  }
+
+  @Test(expected = MollomUnexpectedResponseException.class)
+  public void parseMissingBody() throws Exception {
+    new ResponseParser().parseBody(stream("<response><code>200</code></response>"), "content", Content.class);
+  }
+
+  @Test(expected = MollomUnexpectedResponseException.class)
+  public void parseMalformed() throws Exception {
+    new ResponseParser().parseBody(stream("<response><content>"), "content", Content.class);
+  }
+
+  @Test
+  public void parseConcurrently() throws Exception {
+    final ResponseParser parser = new ResponseParser();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 8; thread++) {
+        final String classification = thread % 2 == 0 ? "ham" : "spam";
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < 500; i++) {
+              String id = classification + i;
+              Content content = parser.parseBody(stream(contentResponse(id, classification)), "content", Content.class);
+              assertEquals(id, content.getId());
+              assertEquals(classification, content.getSpamClassification());
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
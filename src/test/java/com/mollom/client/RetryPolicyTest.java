@@ -0,0 +1,85 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void backoffIsBoundedByExponentialCeiling() {
+    RetryPolicy retryPolicy = RetryPolicy.retries(5).withBackoff(100, 300);
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(retryPolicy.getBackoff(1) <= 100);
+      assertTrue(retryPolicy.getBackoff(2) <= 200);
+      assertTrue(retryPolicy.getBackoff(3) <= 300);
+      assertTrue(retryPolicy.getBackoff(40) <= 300);
+      assertTrue(retryPolicy.getBackoff(40) >= 0);
+    }
+    assertEquals(0, RetryPolicy.none().getBackoff(1));
+  }
+
+  @Test
+  public void copiesAreIndependent() {
+    RetryPolicy retryPolicy = RetryPolicy.retries(2);
+    RetryPolicy serverErrors = retryPolicy.withServerErrorRetries(true).withMaxRetries(3);
+    assertFalse(retryPolicy.isRetryServerErrors());
+    assertEquals(2, retryPolicy.getMaxRetries());
+    assertTrue(serverErrors.isRetryServerErrors());
+    assertEquals(3, serverErrors.getMaxRetries());
+  }
+
+  @Test
+  public void retryBudgetLimitsBursts() {
+    RetryBudget retryBudget = new RetryBudget(2, 0);
+    assertTrue(retryBudget.tryAcquire());
+    assertTrue(retryBudget.tryAcquire());
+    assertFalse(retryBudget.tryAcquire());
+  }
+
+  @Test
+  public void captchasAreNotRetriedByDefault() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    try {
+      MollomClientBuilder builder = MollomClientBuilder.create()
+          .withEndpoint(server.getEndpoint())
+          .withRetryPolicy(RetryPolicy.retries(2).withBackoff(0, 0));
+      MollomClient client = builder.build("publicKey", "privateKey");
+      server.withConnectionResetRate(1);
+      try {
+        long requestCount = server.getRequestCount();
+        try {
+          client.createCaptcha(CaptchaType.IMAGE, false);
+          fail("Expected the CAPTCHA request to fail.");
+        } catch (MollomNoResponseException e) {
+          // Expected.
+        }
+        assertEquals(requestCount + 1, server.getRequestCount());
+      } finally {
+        client.destroy();
+      }
+
+      server.withConnectionResetRate(0);
+      client = builder.withRetryPolicy(Operation.CREATE_CAPTCHA, RetryPolicy.retries(1).withBackoff(0, 0))
+          .build("publicKey", "privateKey");
+      server.withConnectionResetRate(1);
+      try {
+        long requestCount = server.getRequestCount();
+        try {
+          client.createCaptcha(CaptchaType.IMAGE, false);
+          fail("Expected the CAPTCHA request to fail.");
+        } catch (MollomNoResponseException e) {
+          // Expected.
+        }
+        assertEquals(requestCount + 2, server.getRequestCount());
+      } finally {
+        client.destroy();
+      }
+    } finally {
+      server.close();
+    }
+  }
+}
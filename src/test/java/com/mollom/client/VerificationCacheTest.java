@@ -0,0 +1,133 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VerificationCacheTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void skipsVerificationWithinTimeToLive() throws Exception {
+    File file = new File(folder.getRoot(), "verification.properties");
+    MollomStubServer server = new MollomStubServer().start();
+    try {
+      MollomClientBuilder builder = MollomClientBuilder.create()
+          .withEndpoint(server.getEndpoint())
+          .withVerificationCache(file, 60000);
+      builder.build("publicKey", "privateKey").destroy();
+      assertEquals(1, server.getRequestCount());
+
+      builder.build("publicKey", "privateKey").destroy();
+      assertEquals(1, server.getRequestCount());
+
+      // A changed site configuration is verified again.
+      builder.withPlatformName("Test").build("publicKey", "privateKey").destroy();
+      assertEquals(2, server.getRequestCount());
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  public void defersVerification() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    try {
+      MollomClient client = MollomClientBuilder.create()
+          .withEndpoint(server.getEndpoint())
+          .withDeferredVerification(true)
+          .build("publicKey", "privateKey");
+      client.getVerification().get(5, TimeUnit.SECONDS);
+      assertEquals(1, server.getRequestCount());
+      client.destroy();
+
+      // Server errors are retried until Mollom answers.
+      server.withServerErrorRate(1);
+      client = MollomClientBuilder.create()
+          .withEndpoint(server.getEndpoint())
+          .withDeferredVerification(true)
+          .build("publicKey", "privateKey");
+      try {
+        Thread.sleep(200);
+        assertFalse(client.getVerification().isDone());
+        server.withServerErrorRate(0);
+        client.getVerification().get(10, TimeUnit.SECONDS);
+      } finally {
+        client.destroy();
+      }
+
+      // The stub answers unknown resources with 404, like invalid keys.
+      client = MollomClientBuilder.create()
+          .withEndpoint(server.getEndpoint())
+          .withDeferredVerification(true)
+          .build("invalid/publicKey", "privateKey");
+      try {
+        client.getVerification().get(5, TimeUnit.SECONDS);
+        fail("Expected verification to fail.");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof MollomConfigurationException);
+      } finally {
+        client.destroy();
+      }
+    } finally {
+      server.close();
+    }
+  }
+
+  @Test
+  public void limitsRetriesOfServerErrors() throws Exception {
+    ClientOptions options = new ClientOptions();
+    options.transport = new Transport() {
+      @Override
+      public TransportResponse send(String method, String path, Map<String, List<String>> queryParams,
+          Map<String, List<String>> formParams, int timeout) throws IOException {
+        throw new IOException("Not connected.");
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    options.publicKey = "publicKey";
+    options.retryPolicies = new EnumMap<>(Operation.class);
+    options.verification = new CompletableFuture<>();
+    MollomClient client = new MollomClient(options);
+    try {
+      final AtomicInteger attempts = new AtomicInteger();
+      client.verifyInBackground(() -> {
+        // Mollom is unreachable at first; I/O failures are retried without
+        // limit.
+        if (attempts.incrementAndGet() <= 5) {
+          throw new MollomNoResponseException("Failed to contact Mollom service.");
+        }
+        throw new MollomUnexpectedResponseException("Mollom service answered the verification with status 503.");
+      }, RetryPolicy.none().withBackoff(1, 1), RetryPolicy.retries(3).withBackoff(1, 1));
+      try {
+        client.getVerification().get(5, TimeUnit.SECONDS);
+        fail("Expected verification to fail.");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof MollomUnexpectedResponseException);
+      }
+      // 5 failed attempts, 1 server error, and 3 retries.
+      assertEquals(9, attempts.get());
+    } finally {
+      client.destroy();
+    }
+  }
+}
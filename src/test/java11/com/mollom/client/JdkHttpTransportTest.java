@@ -0,0 +1,56 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JdkHttpTransportTest {
+  private MollomStubServer server;
+  private MollomClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new MollomStubServer().start();
+    client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withTransport(TransportType.JDK_HTTP_CLIENT)
+        .withRetries(0)
+        .build("publicKey", "privateKey");
+  }
+
+  @After
+  public void tearDown() {
+    client.destroy();
+    server.close();
+  }
+
+  @Test
+  public void roundTrip() throws Exception {
+    Content spam = new Content();
+    spam.setPostBody("Buy spam now");
+    client.checkContent(spam);
+    assertEquals("spam", spam.getSpamClassification());
+    assertNotNull(spam.getId());
+
+    BlacklistEntry entry = new BlacklistEntry();
+    entry.setValue("cheap watches");
+    client.saveBlacklistEntry(entry);
+    assertEquals("cheap watches", client.getBlacklistEntry(entry.getId()).getValue());
+    assertTrue(server.getRequestCount() >= 4);
+  }
+
+  @Test
+  public void reportsErrorStatus() throws Exception {
+    try {
+      client.getBlacklistEntry("unknown entry");
+      fail("Expected unknown entry.");
+    } catch (MollomRequestException e) {
+      // Expected.
+    }
+  }
+}
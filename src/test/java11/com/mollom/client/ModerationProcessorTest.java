@@ -0,0 +1,86 @@
+package com.mollom.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ModerationProcessorTest {
+  private static final Object SUBSCRIBED = new Object();
+  private static final Object COMPLETE = new Object();
+
+  /**
+   * Adds all signals to a queue, and requests all results on subscription.
+   */
+  private static class Recorder implements Flow.Subscriber<ContentCheckResult> {
+    final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      signals.add(SUBSCRIBED);
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(ContentCheckResult result) {
+      signals.add(result);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      signals.add(error);
+    }
+
+    @Override
+    public void onComplete() {
+      signals.add(COMPLETE);
+    }
+  }
+
+  @Test
+  public void checksPublishedContents() throws Exception {
+    MollomStubServer server = new MollomStubServer().start();
+    MollomClient client = MollomClientBuilder.create()
+        .withEndpoint(server.getEndpoint())
+        .withRetries(0)
+        .build("publicKey", "privateKey");
+    try (SubmissionPublisher<Content> publisher = new SubmissionPublisher<>()) {
+      ModerationProcessor processor = new ModerationProcessor(client, 4);
+      Recorder recorder = new Recorder();
+      processor.subscribe(recorder);
+      publisher.subscribe(processor);
+
+      // A second subscriber is rejected without affecting the first one.
+      Recorder second = new Recorder();
+      processor.subscribe(second);
+      assertSame(SUBSCRIBED, second.signals.poll(5, TimeUnit.SECONDS));
+      assertTrue(second.signals.poll(5, TimeUnit.SECONDS) instanceof IllegalStateException);
+
+      for (int i = 0; i < 10; i++) {
+        Content content = new Content();
+        content.setPostTitle(i % 2 == 0 ? "ham" : "spam");
+        publisher.submit(content);
+      }
+      publisher.close();
+
+      assertSame(SUBSCRIBED, recorder.signals.poll(5, TimeUnit.SECONDS));
+      for (int i = 0; i < 10; i++) {
+        ContentCheckResult result = (ContentCheckResult) recorder.signals.poll(5, TimeUnit.SECONDS);
+        assertTrue(result.isSuccess());
+        assertEquals(i % 2 == 0, result.getContent().isHam());
+      }
+      assertSame(COMPLETE, recorder.signals.poll(5, TimeUnit.SECONDS));
+      assertTrue(second.signals.isEmpty());
+    } finally {
+      client.destroy();
+      server.close();
+    }
+  }
+}